@@ -0,0 +1,30 @@
+package data;
+
+/**
+ * The statistics that can be computed for every bucket when resampling data.
+ */
+public enum Aggregate {
+    MEAN("Mean"),
+    MIN("Min"),
+    MAX("Max"),
+    SUM("Sum"),
+    COUNT("Count"),
+    STDDEV("Standard Deviation"),
+    LAST("Last");
+
+    private final String label;
+
+    Aggregate(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the aggregate as shown to the user.
+     *
+     * @return the label
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,107 @@
+package data;
+
+/**
+ * A period of consecutive samples that deviated from their usual values in the same direction, as found by an
+ * {@link AnomalyDetector}, such as an overconsumption.
+ */
+public final class Anomaly {
+
+    private final long start;
+    private final long end;
+    private final int samples;
+    private final long peakTime;
+    private final double peakValue;
+    private final double expected;
+    private final double score;
+
+    Anomaly(long start, long end, int samples, long peakTime, double peakValue, double expected, double score) {
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+        this.peakTime = peakTime;
+        this.peakValue = peakValue;
+        this.expected = expected;
+        this.score = score;
+    }
+
+    /**
+     * Gets the time of the first sample of the period.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the time of the last sample of the period.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the number of samples in the period.
+     *
+     * @return the number of samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the time of the sample that deviated the most.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getPeakTime() {
+        return peakTime;
+    }
+
+    /**
+     * Gets the value of the sample that deviated the most.
+     *
+     * @return the value
+     */
+    public double getPeakValue() {
+        return peakValue;
+    }
+
+    /**
+     * Gets the usual value at the time of the peak: the mean of the earlier samples at the same hour of the week.
+     *
+     * @return the expected value
+     */
+    public double getExpected() {
+        return expected;
+    }
+
+    /**
+     * Gets the deviation of the peak, in standard deviations of the earlier samples at the same hour of the week.
+     *
+     * @return the deviation, positive above the expected value and negative below it
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Tells whether the values were above their usual values, such as an overconsumption.
+     *
+     * @return true if the values were above, false if they were below
+     */
+    public boolean isAbove() {
+        return score > 0;
+    }
+
+    @Override
+    public String toString() {
+        return Timestamps.format(start) + " to " + Timestamps.format(end) + ": " + samples
+                + (samples == 1 ? " sample " : " samples ") + (isAbove() ? "above" : "below") + " usual, peak "
+                + String.format("%.2f", peakValue) + " at " + Timestamps.format(peakTime) + " (expected "
+                + String.format("%.2f", expected) + ", " + String.format("%.1f", Math.abs(score))
+                + " standard deviations)";
+    }
+}
@@ -0,0 +1,208 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the samples of a variable that deviate from its usual values, such as an overconsumption.
+ * <p>
+ * The usual value depends on the hour of the week: the detector keeps the count, mean and variance of the samples
+ * of each of the 168 hours of the week, updated with every sample, so each sample costs a constant amount of work
+ * and the detector a constant amount of memory. The mean and variance are weighted by the age of the samples: the
+ * weight of a sample halves every {@code memory * ln 2} seconds, so the usual values follow the seasons instead of
+ * averaging the whole history, whatever the sampling interval.
+ * <p>
+ * A sample is anomalous when it lies more than a threshold of standard deviations from the mean of the earlier
+ * samples of its hour, once that hour has seen enough samples. An anomalous sample enters the mean and variance
+ * clipped to the edge of that band: an overconsumption neither becomes the usual value nor widens the band much,
+ * while a lasting change of the usual values is still learned, a band width at a time.
+ * Consecutive anomalous samples in the same direction are reported as one {@link Anomaly}.
+ * <p>
+ * The detector remembers the last time it read, so it can be updated with every new version of a followed file
+ * (see {@link TailFollower}) and only reads the appended rows.
+ */
+public final class AnomalyDetector {
+
+    /** The default number of standard deviations from the mean beyond which a sample is anomalous. */
+    public static final double DEFAULT_THRESHOLD = 3.0;
+    /** The default number of samples an hour of the week must have seen before its samples are checked. */
+    public static final int DEFAULT_WARM_UP = 8;
+    /** The default memory of the usual values, in seconds: the time constant of their decay, about a season. */
+    public static final long DEFAULT_MEMORY = 12 * 7 * Timestamps.SECONDS_PER_DAY;
+
+    private static final int HOURS_PER_WEEK = 168;
+    /** 1970-01-05, the first Monday after the epoch, used to align weeks. */
+    private static final long FIRST_MONDAY = 4L * Timestamps.SECONDS_PER_DAY;
+
+    private final String variableName;
+    private final double threshold;
+    private final int warmUp;
+    private final double memory;
+    private final long[] counts = new long[HOURS_PER_WEEK];
+    private final double[] weights = new double[HOURS_PER_WEEK];
+    private final long[] updated = new long[HOURS_PER_WEEK];
+    private final double[] means = new double[HOURS_PER_WEEK];
+    private final double[] variances = new double[HOURS_PER_WEEK];
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a detector with the default threshold, warm-up and memory.
+     *
+     * @param variableName the name of the variable to check, which may be a derived variable
+     */
+    public AnomalyDetector(String variableName) {
+        this(variableName, DEFAULT_THRESHOLD, DEFAULT_WARM_UP, DEFAULT_MEMORY);
+    }
+
+    /**
+     * Creates a detector with the default memory.
+     *
+     * @param variableName the name of the variable to check, which may be a derived variable
+     * @param threshold    the number of standard deviations from the mean beyond which a sample is anomalous
+     * @param warmUp       the number of samples an hour of the week must have seen before its samples are checked
+     */
+    public AnomalyDetector(String variableName, double threshold, int warmUp) {
+        this(variableName, threshold, warmUp, DEFAULT_MEMORY);
+    }
+
+    /**
+     * Creates a detector.
+     *
+     * @param variableName the name of the variable to check, which may be a derived variable
+     * @param threshold    the number of standard deviations from the mean beyond which a sample is anomalous
+     * @param warmUp       the number of samples an hour of the week must have seen before its samples are checked
+     * @param memory       the time constant of the decay of the weight of the samples, in seconds
+     */
+    public AnomalyDetector(String variableName, double threshold, int warmUp, long memory) {
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("The threshold must be positive: " + threshold);
+        }
+        if (warmUp < 2) {
+            throw new IllegalArgumentException("The warm-up must be at least 2 samples: " + warmUp);
+        }
+        if (memory <= 0) {
+            throw new IllegalArgumentException("The memory must be positive: " + memory);
+        }
+        this.variableName = variableName;
+        this.threshold = threshold;
+        this.warmUp = warmUp;
+        this.memory = memory;
+    }
+
+    /**
+     * Gets the name of the variable checked.
+     *
+     * @return the name of the variable
+     */
+    public String getVariableName() {
+        return variableName;
+    }
+
+    /**
+     * Reads the samples of a container that are later than the last sample read, and reports the anomalies among
+     * them. A period of anomalous samples still running at the end of the container is reported, and continues
+     * as a new anomaly if the next samples read are still anomalous. Missing values (NaN) are skipped; the samples
+     * flagged by the quality checks of the file, such as a saturated meter, are read as they are and may be
+     * reported.
+     *
+     * @param data the data, typically a newer version of the data read before
+     * @return the anomalies found in the new samples, in order
+     */
+    public synchronized List<Anomaly> update(DataContainer data) {
+        DataContainer rows = lastTime == Long.MIN_VALUE ? data : data.filterByTimeRange(lastTime + 1, Long.MAX_VALUE);
+        List<Anomaly> anomalies = new ArrayList<>();
+        int count = rows.getNumberOfSamples();
+        if (count == 0) {
+            return anomalies;
+        }
+        long[] times = rows.getTimes();
+        double[] values = rows.getValues(variableName);
+
+        int runSamples = 0;
+        long runStart = 0L;
+        long runEnd = 0L;
+        long peakTime = 0L;
+        double peakValue = 0.0;
+        double peakExpected = 0.0;
+        double peakScore = 0.0;
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            if (value != value) {
+                continue;
+            }
+            int hour = hourOfWeek(times[i]);
+            long n = counts[hour];
+            double mean = means[hour];
+            double deviation = Math.sqrt(variances[hour]);
+            double score = 0.0;
+            if (n >= warmUp && deviation > 0) {
+                score = (value - mean) / deviation;
+            }
+
+            boolean anomalous = Math.abs(score) > threshold;
+            if (runSamples > 0 && (!anomalous || (score > 0) != (peakScore > 0))) {
+                anomalies.add(new Anomaly(runStart, runEnd, runSamples, peakTime, peakValue, peakExpected, peakScore));
+                runSamples = 0;
+            }
+            if (anomalous) {
+                if (runSamples == 0) {
+                    runStart = times[i];
+                }
+                if (runSamples == 0 || Math.abs(score) > Math.abs(peakScore)) {
+                    peakTime = times[i];
+                    peakValue = value;
+                    peakExpected = mean;
+                    peakScore = score;
+                }
+                runEnd = times[i];
+                runSamples++;
+            }
+
+            // the earlier samples decay with the time elapsed, then the sample, clipped to the band, weighs 1/weight
+            double weight = 1.0 + (n == 0 ? 0.0 : weights[hour] * Math.exp((updated[hour] - times[i]) / memory));
+            double learned = anomalous ? mean + Math.copySign(threshold * deviation, score) : value;
+            double delta = learned - mean;
+            double increment = delta / weight;
+            counts[hour] = n + 1;
+            weights[hour] = weight;
+            updated[hour] = times[i];
+            means[hour] = mean + increment;
+            variances[hour] = (1 - 1 / weight) * (variances[hour] + delta * increment);
+        }
+        if (runSamples > 0) {
+            anomalies.add(new Anomaly(runStart, runEnd, runSamples, peakTime, peakValue, peakExpected, peakScore));
+        }
+        lastTime = times[count - 1];
+        return anomalies;
+    }
+
+    /**
+     * Gets the usual value of the variable at a time: the mean of the samples read at the same hour of the week,
+     * weighted by their age, with the anomalies clipped.
+     *
+     * @param time the time, as epoch seconds (UTC)
+     * @return the mean, or NaN if no sample was read at that hour of the week
+     */
+    public synchronized double getExpected(long time) {
+        int hour = hourOfWeek(time);
+        return counts[hour] == 0 ? Double.NaN : means[hour];
+    }
+
+    /**
+     * Gets the standard deviation of the samples read at the same hour of the week as a time, weighted as the mean.
+     *
+     * @param time the time, as epoch seconds (UTC)
+     * @return the standard deviation, or NaN if fewer than 2 samples were read at that hour of the week
+     */
+    public synchronized double getStandardDeviation(long time) {
+        int hour = hourOfWeek(time);
+        return counts[hour] < 2 ? Double.NaN : Math.sqrt(variances[hour]);
+    }
+
+    /**
+     * Gets the hour of the week of a time, from 0 on Mondays at midnight UTC to 167.
+     */
+    private static int hourOfWeek(long time) {
+        return (int) (Math.floorMod(time - FIRST_MONDAY, 7L * Timestamps.SECONDS_PER_DAY) / Timestamps.SECONDS_PER_HOUR);
+    }
+}
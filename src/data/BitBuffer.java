@@ -0,0 +1,100 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of bits, written and read most significant bit first.
+ * Used by the compressed columns and time index.
+ */
+final class BitBuffer {
+
+    private long[] words = new long[16];
+    private long size;
+
+    /**
+     * Appends the low bits of a value.
+     *
+     * @param value the value whose low bits are written
+     * @param bits  the number of bits to write, from 0 to 64
+     */
+    void write(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        int index = (int) (size >>> 6);
+        if (index + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        long masked = bits == 64 ? value : value & ((1L << bits) - 1);
+        int free = 64 - (int) (size & 63);
+        if (bits <= free) {
+            words[index] |= masked << (free - bits);
+        } else {
+            words[index] |= masked >>> (bits - free);
+            words[index + 1] |= masked << (64 - (bits - free));
+        }
+        size += bits;
+    }
+
+    /**
+     * Gets the number of bits written.
+     *
+     * @return the size in bits
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Gets the written bits, trimmed to the words in use plus one so that reads never run past the array.
+     *
+     * @return the words holding the bits
+     */
+    long[] toWords() {
+        return Arrays.copyOf(words, (int) (size >>> 6) + 2);
+    }
+
+    /**
+     * Reads an unsigned value from the words of a bit buffer.
+     *
+     * @param words    the words returned by {@link #toWords()}
+     * @param position the position of the first bit
+     * @param bits     the number of bits to read, from 0 to 64
+     * @return the value
+     */
+    static long read(long[] words, long position, int bits) {
+        if (bits == 0) {
+            return 0L;
+        }
+        int index = (int) (position >>> 6);
+        int used = (int) (position & 63);
+        if (bits <= 64 - used) {
+            return (words[index] << used) >>> (64 - bits);
+        }
+        int rest = bits - (64 - used);
+        return ((words[index] << used) >>> (64 - bits)) | (words[index + 1] >>> (64 - rest));
+    }
+
+    /**
+     * Reads a two's complement value from the words of a bit buffer.
+     *
+     * @param words    the words returned by {@link #toWords()}
+     * @param position the position of the first bit
+     * @param bits     the number of bits to read, from 1 to 64
+     * @return the sign-extended value
+     */
+    static long readSigned(long[] words, long position, int bits) {
+        return (read(words, position, bits) << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * Reads a single bit from the words of a bit buffer.
+     *
+     * @param words    the words returned by {@link #toWords()}
+     * @param position the position of the bit
+     * @return true if the bit is set
+     */
+    static boolean bit(long[] words, long position) {
+        return (words[(int) (position >>> 6)] << position) < 0;
+    }
+}
@@ -0,0 +1,224 @@
+package data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of double values: a Java array, a buffer outside the garbage-collected heap or a compressed
+ * bit stream (see {@link ColumnStorage}). Values are read one by one with {@link #get(int)}, in bulk with
+ * {@link #copyTo(int, double[], int, int)} or in order with a {@link Reader}, which is the fast way to
+ * scan a compressed column.
+ */
+abstract class Column {
+
+    /**
+     * Reads the values of a column in order, from a starting row.
+     */
+    abstract static class Reader {
+        /**
+         * Reads the next value.
+         *
+         * @return the value
+         */
+        abstract double next();
+    }
+
+    /**
+     * Wraps an array in a column, without copying it.
+     *
+     * @param values the values
+     * @return the column
+     */
+    static Column of(double[] values) {
+        return new HeapColumn(values);
+    }
+
+    /**
+     * Allocates a column of zeros in a direct byte buffer.
+     *
+     * @param capacity the number of values
+     * @return the column
+     */
+    static Column direct(int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, 8)).order(ByteOrder.LITTLE_ENDIAN);
+        return new BufferColumn(buffer.asDoubleBuffer());
+    }
+
+    /**
+     * Wraps a buffer of doubles in a column, without copying it. The buffer may be a read-only memory mapping.
+     *
+     * @param values the values, from index 0 to the limit of the buffer
+     * @return the column
+     */
+    static Column of(DoubleBuffer values) {
+        return new BufferColumn(values);
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param index the row of the value
+     * @return the value
+     */
+    abstract double get(int index);
+
+    /**
+     * Creates a reader of the values of the column.
+     *
+     * @param from the row of the first value read
+     * @return the reader
+     */
+    abstract Reader reader(int from);
+
+    /**
+     * Sets a value.
+     *
+     * @param index the row of the value
+     * @param value the new value
+     * @throws java.nio.ReadOnlyBufferException if the column is a read-only mapping
+     * @throws UnsupportedOperationException if the column is compressed
+     */
+    abstract void set(int index, double value);
+
+    /**
+     * Gets the number of values the column can hold.
+     *
+     * @return the capacity
+     */
+    abstract int capacity();
+
+    /**
+     * Copies a range of values to an array.
+     *
+     * @param from             the first row to copy
+     * @param destination      the array to copy to
+     * @param destinationFrom  the first index written in the array
+     * @param length           the number of values to copy
+     */
+    abstract void copyTo(int from, double[] destination, int destinationFrom, int length);
+
+    /**
+     * Copies the column into a new writable column of the same kind, truncated or padded with zeros.
+     * A read-only mapping is copied into a direct buffer and a compressed column into an array.
+     *
+     * @param capacity the capacity of the new column
+     * @return the copy
+     */
+    abstract Column copyOf(int capacity);
+
+    /**
+     * Estimates the heap memory used by the column. Buffers outside the heap only count for their header.
+     *
+     * @return the estimated size in bytes
+     */
+    abstract long heapBytes();
+
+    private static final class HeapColumn extends Column {
+        private final double[] values;
+
+        HeapColumn(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        Reader reader(int from) {
+            return new Reader() {
+                private int index = from;
+
+                @Override
+                double next() {
+                    return values[index++];
+                }
+            };
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = value;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void copyTo(int from, double[] destination, int destinationFrom, int length) {
+            System.arraycopy(values, from, destination, destinationFrom, length);
+        }
+
+        @Override
+        Column copyOf(int capacity) {
+            return new HeapColumn(Arrays.copyOf(values, capacity));
+        }
+
+        @Override
+        long heapBytes() {
+            return 16L + 8L * values.length;
+        }
+    }
+
+    private static final class BufferColumn extends Column {
+        private final DoubleBuffer values;
+
+        BufferColumn(DoubleBuffer values) {
+            this.values = values;
+        }
+
+        @Override
+        double get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        Reader reader(int from) {
+            return new Reader() {
+                private int index = from;
+
+                @Override
+                double next() {
+                    return values.get(index++);
+                }
+            };
+        }
+
+        @Override
+        void set(int index, double value) {
+            values.put(index, value);
+        }
+
+        @Override
+        int capacity() {
+            return values.limit();
+        }
+
+        @Override
+        void copyTo(int from, double[] destination, int destinationFrom, int length) {
+            DoubleBuffer source = values.duplicate();
+            source.position(from);
+            source.get(destination, destinationFrom, length);
+        }
+
+        @Override
+        Column copyOf(int capacity) {
+            BufferColumn copy = (BufferColumn) direct(capacity);
+            DoubleBuffer source = values.duplicate();
+            source.position(0).limit(Math.min(capacity, values.limit()));
+            copy.values.put(source);
+            copy.values.clear();
+            return copy;
+        }
+
+        @Override
+        long heapBytes() {
+            return 64L;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the columns that were left out when a dataset was opened with a subset of its variables
+ * (see {@link DataContainer#open(String, ColumnStorage, Collection)}). A missing column is read on first use,
+ * from the snapshot of the CSV file if it is still valid, or else by parsing the CSV file again while skipping
+ * the columns that are already loaded. The loader is shared by a dataset and the containers filtered from it,
+ * so a column is only loaded once for all of them.
+ */
+final class ColumnLoader {
+
+    private static final Logger LOG = Logger.getLogger(ColumnLoader.class.getName());
+
+    private final String csvFileName;
+    private final ColumnStorage storage;
+    private final long lastModified;
+    private final long length;
+    private final int rows;
+    private final ConcurrentHashMap<String, Column> columns = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a loader for a dataset.
+     *
+     * @param csvFileName  the name of the CSV file the dataset was read from
+     * @param storage      where to keep the loaded columns
+     * @param lastModified the modification time of the file when the dataset was read
+     * @param length       the size of the file when the dataset was read
+     * @param rows         the number of rows of the dataset
+     */
+    ColumnLoader(String csvFileName, ColumnStorage storage, long lastModified, long length, int rows) {
+        this.csvFileName = csvFileName;
+        this.storage = storage;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.rows = rows;
+    }
+
+    /**
+     * Gets a column that was already loaded.
+     *
+     * @param variable the name of the variable
+     * @return the column, or null if it is not loaded
+     */
+    Column loaded(String variable) {
+        return columns.get(variable);
+    }
+
+    /**
+     * Loads the columns of the given variables that are not loaded yet, reading the file once for all of them.
+     *
+     * @param variables the variables of the file to load
+     * @return true if a column was loaded
+     * @throws UncheckedIOException if the file cannot be read or changed since the dataset was read
+     */
+    synchronized boolean load(Collection<String> variables) {
+        List<String> missing = new ArrayList<>();
+        for (String variable : variables) {
+            if (!columns.containsKey(variable) && !missing.contains(variable)) {
+                missing.add(variable);
+            }
+        }
+        if (missing.isEmpty()) {
+            return false;
+        }
+
+        File source = new File(csvFileName);
+        try {
+            checkUnchanged(source);
+            SnapshotFile.Content content = readSnapshot(source, missing);
+            List<String> variableNames;
+            Column[] values;
+            if (content != null && content.times.length == rows) {
+                variableNames = content.variableNames;
+                values = content.values;
+            } else {
+                ArrayList<String> header = new ArrayList<>();
+                CsvParser.Columns parsed = CsvParser.parseFileParallel(csvFileName, header,
+                        Runtime.getRuntime().availableProcessors(), missing);
+                checkUnchanged(source);
+                if (parsed.rows != rows) {
+                    throw new IOException("Expected " + rows + " rows but found " + parsed.rows);
+                }
+                variableNames = header;
+                values = new Column[parsed.values.length];
+                for (int v = 0; v < values.length; v++) {
+                    if (parsed.values[v] != null) {
+                        Column column = Column.of(parsed.values[v]);
+                        values[v] = storage == ColumnStorage.HEAP ? column : storage.copy(column, rows);
+                    }
+                }
+            }
+            for (int v = 0; v < values.length; v++) {
+                if (values[v] != null) {
+                    columns.put(variableNames.get(v), values[v]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load " + missing + " from " + csvFileName, e);
+        }
+        return true;
+    }
+
+    private void checkUnchanged(File source) throws IOException {
+        if (source.lastModified() != lastModified || source.length() != length) {
+            throw new IOException("The file changed since it was read");
+        }
+    }
+
+    private SnapshotFile.Content readSnapshot(File source, List<String> variables) {
+        try {
+            return SnapshotFile.read(DataContainer.snapshotPath(csvFileName), source, storage, variables);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable snapshot of " + csvFileName, e);
+            return null;
+        }
+    }
+}
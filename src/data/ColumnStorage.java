@@ -0,0 +1,93 @@
+package data;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Where the value columns of a dataset are kept.
+ * The backend used by {@link DataContainer#open(String)} is read from the {@value #PROPERTY} system property
+ * ("heap", "direct", "mapped" or "compressed") and defaults to {@link #HEAP}. The time index always stays
+ * on the heap; it is only compressed with {@link #COMPRESSED}.
+ */
+public enum ColumnStorage {
+    /** Java arrays on the garbage-collected heap. */
+    HEAP,
+    /** Direct byte buffers, allocated outside the garbage-collected heap. */
+    DIRECT,
+    /**
+     * Read-only memory mappings of the binary snapshot of the CSV file, paged in by the operating system.
+     * Columns that are created or grown afterwards are kept in direct byte buffers.
+     */
+    MAPPED,
+    /**
+     * Compressed bit streams on the heap: XOR-encoded values and a delta-of-delta encoded time index.
+     * Scanning the data decodes it on the fly, while reading a single row decodes up to a block of rows.
+     * Columns that are created or grown afterwards are kept in arrays.
+     */
+    COMPRESSED;
+
+    /** System property selecting the storage backend of {@link DataContainer#open(String)}. */
+    public static final String PROPERTY = "greener.storage";
+
+    private static final Logger LOG = Logger.getLogger(ColumnStorage.class.getName());
+
+    /**
+     * Gets the storage backend selected by the {@value #PROPERTY} system property.
+     *
+     * @return the selected backend, or {@link #HEAP} if the property is missing or invalid
+     */
+    public static ColumnStorage configured() {
+        String property = System.getProperty(PROPERTY);
+        if (property == null) {
+            return HEAP;
+        }
+        try {
+            return valueOf(property.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Ignoring invalid " + PROPERTY + ": " + property);
+            return HEAP;
+        }
+    }
+
+    /**
+     * Allocates a writable column of zeros in this storage.
+     *
+     * @param capacity the number of values
+     * @return the column
+     */
+    Column allocate(int capacity) {
+        return this == HEAP || this == COMPRESSED ? Column.of(new double[capacity]) : Column.direct(capacity);
+    }
+
+    /**
+     * Copies the first values of a column into a new column in this storage. The copy is writable
+     * unless this storage is {@link #COMPRESSED}.
+     *
+     * @param column the column to copy
+     * @param length the number of values to copy
+     * @return the copy
+     */
+    Column copy(Column column, int length) {
+        if (this == COMPRESSED) {
+            return CompressedColumn.encode(column, length);
+        }
+        Column copy = allocate(length);
+        Column.Reader reader = column.reader(0);
+        for (int i = 0; i < length; i++) {
+            copy.set(i, reader.next());
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the first rows of a time index into this storage: compressed for {@link #COMPRESSED},
+     * unchanged otherwise.
+     *
+     * @param times the time index
+     * @param rows  the number of rows in use
+     * @return the time index in this storage
+     */
+    TimeIndex copy(TimeIndex times, int rows) {
+        return this == COMPRESSED ? CompressedTimeIndex.encode(times, rows) : times;
+    }
+}
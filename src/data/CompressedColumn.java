@@ -0,0 +1,155 @@
+package data;
+
+/**
+ * A read-only column compressed with the XOR encoding of Gorilla (Pelkonen et al., VLDB 2015).
+ * Every value is XORed with the previous one: an unchanged value takes one bit, and a value that
+ * changes only in a few bits of its mantissa stores just those bits. Slowly varying sensor values
+ * and setpoints that stay constant for hours compress to a few bits per row.
+ * <p>
+ * The rows are encoded in blocks of {@value #BLOCK_SIZE}, each starting with a raw value, so a random
+ * read decodes at most one block; a {@link Column.Reader} decodes the rows in order at a few nanoseconds each.
+ */
+final class CompressedColumn extends Column {
+
+    /** Number of rows per independently decodable block. */
+    static final int BLOCK_SIZE = 1024;
+
+    private final long[] words;
+    private final long[] blockPositions;
+    private final int rows;
+
+    private CompressedColumn(long[] words, long[] blockPositions, int rows) {
+        this.words = words;
+        this.blockPositions = blockPositions;
+        this.rows = rows;
+    }
+
+    /**
+     * Compresses the first rows of a column.
+     *
+     * @param column the column to compress
+     * @param rows   the number of rows to compress
+     * @return the compressed column
+     */
+    static CompressedColumn encode(Column column, int rows) {
+        BitBuffer bits = new BitBuffer();
+        long[] blockPositions = new long[(rows + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        Column.Reader reader = column.reader(0);
+        long previous = 0L;
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 0; i < rows; i++) {
+            long value = Double.doubleToRawLongBits(reader.next());
+            if (i % BLOCK_SIZE == 0) {
+                blockPositions[i / BLOCK_SIZE] = bits.size();
+                bits.write(value, 64);
+                leading = -1;
+            } else {
+                long xor = value ^ previous;
+                if (xor == 0) {
+                    bits.write(0, 1);
+                } else {
+                    int valueLeading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                    int valueTrailing = Long.numberOfTrailingZeros(xor);
+                    if (leading >= 0 && valueLeading >= leading && valueTrailing >= trailing) {
+                        // the changed bits fit in the window of the previous value
+                        bits.write(0b10, 2);
+                        bits.write(xor >>> trailing, 64 - leading - trailing);
+                    } else {
+                        leading = valueLeading;
+                        trailing = valueTrailing;
+                        int length = 64 - leading - trailing;
+                        bits.write(0b11, 2);
+                        bits.write(leading, 5);
+                        bits.write(length - 1, 6);
+                        bits.write(xor >>> trailing, length);
+                    }
+                }
+            }
+            previous = value;
+        }
+        return new CompressedColumn(bits.toWords(), blockPositions, rows);
+    }
+
+    @Override
+    double get(int index) {
+        if (index < 0 || index >= rows) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rows);
+        }
+        return reader(index).next();
+    }
+
+    @Override
+    Column.Reader reader(int from) {
+        return new Reader(from);
+    }
+
+    @Override
+    void set(int index, double value) {
+        throw new UnsupportedOperationException("A compressed column cannot be modified");
+    }
+
+    @Override
+    int capacity() {
+        return rows;
+    }
+
+    @Override
+    void copyTo(int from, double[] destination, int destinationFrom, int length) {
+        Column.Reader reader = reader(from);
+        for (int i = 0; i < length; i++) {
+            destination[destinationFrom + i] = reader.next();
+        }
+    }
+
+    @Override
+    Column copyOf(int capacity) {
+        double[] values = new double[capacity];
+        copyTo(0, values, 0, Math.min(capacity, rows));
+        return Column.of(values);
+    }
+
+    @Override
+    long heapBytes() {
+        return 48L + 8L * words.length + 8L * blockPositions.length;
+    }
+
+    /**
+     * Decodes the rows in order. Starting in the middle of a block decodes the rows before it in the block.
+     */
+    private final class Reader extends Column.Reader {
+        private long position;
+        private int index;
+        private long value;
+        private int length;
+        private int trailing;
+
+        Reader(int from) {
+            index = from / BLOCK_SIZE * BLOCK_SIZE;
+            while (index < from) {
+                next();
+            }
+        }
+
+        @Override
+        double next() {
+            if ((index & (BLOCK_SIZE - 1)) == 0) {
+                position = blockPositions[index / BLOCK_SIZE];
+                value = BitBuffer.read(words, position, 64);
+                position += 64;
+            } else if (BitBuffer.bit(words, position++)) {
+                if (BitBuffer.bit(words, position++)) {
+                    // 5 bits of leading zeros and 6 bits of length - 1, read at once
+                    int window = (int) BitBuffer.read(words, position, 11);
+                    position += 11;
+                    length = (window & 63) + 1;
+                    trailing = 64 - (window >>> 6) - length;
+                }
+                value ^= BitBuffer.read(words, position, length) << trailing;
+                position += length;
+            }
+            index++;
+            return Double.longBitsToDouble(value);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package data;
+
+/**
+ * A time index compressed with the delta-of-delta encoding of Gorilla (Pelkonen et al., VLDB 2015).
+ * Each time is stored as the change between its distance to the previous time and the distance before,
+ * so a regularly sampled series costs one bit per row, and an irregular step a few more.
+ * <p>
+ * The rows are encoded in blocks of {@value CompressedColumn#BLOCK_SIZE}, each starting with a raw time.
+ * The first time of every block is also kept uncompressed, so a search decodes at most one block.
+ */
+final class CompressedTimeIndex extends TimeIndex {
+
+    private static final int BLOCK_SIZE = CompressedColumn.BLOCK_SIZE;
+
+    private final long[] words;
+    private final long[] blockPositions;
+    private final long[] blockTimes;
+    private final int rows;
+
+    private CompressedTimeIndex(long[] words, long[] blockPositions, long[] blockTimes, int rows) {
+        this.words = words;
+        this.blockPositions = blockPositions;
+        this.blockTimes = blockTimes;
+        this.rows = rows;
+    }
+
+    /**
+     * Compresses the first rows of a time index.
+     *
+     * @param index the time index to compress
+     * @param rows  the number of rows to compress
+     * @return the compressed time index
+     */
+    static CompressedTimeIndex encode(TimeIndex index, int rows) {
+        BitBuffer bits = new BitBuffer();
+        int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[] blockPositions = new long[blocks];
+        long[] blockTimes = new long[blocks];
+        TimeIndex.Reader reader = index.reader(0);
+        long previous = 0L;
+        long previousDelta = 0L;
+        for (int i = 0; i < rows; i++) {
+            long time = reader.next();
+            if (i % BLOCK_SIZE == 0) {
+                blockPositions[i / BLOCK_SIZE] = bits.size();
+                blockTimes[i / BLOCK_SIZE] = time;
+                bits.write(time, 64);
+                previousDelta = 0L;
+            } else {
+                long delta = time - previous;
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    bits.write(0, 1);
+                } else if (deltaOfDelta >= -64 && deltaOfDelta < 64) {
+                    bits.write(0b10, 2);
+                    bits.write(deltaOfDelta, 7);
+                } else if (deltaOfDelta >= -256 && deltaOfDelta < 256) {
+                    bits.write(0b110, 3);
+                    bits.write(deltaOfDelta, 9);
+                } else if (deltaOfDelta >= -2048 && deltaOfDelta < 2048) {
+                    bits.write(0b1110, 4);
+                    bits.write(deltaOfDelta, 12);
+                } else {
+                    bits.write(0b1111, 4);
+                    bits.write(deltaOfDelta, 64);
+                }
+                previousDelta = delta;
+            }
+            previous = time;
+        }
+        return new CompressedTimeIndex(bits.toWords(), blockPositions, blockTimes, rows);
+    }
+
+    @Override
+    long get(int index) {
+        if (index < 0 || index >= rows) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rows);
+        }
+        return reader(index).next();
+    }
+
+    @Override
+    TimeIndex.Reader reader(int from) {
+        return new Reader(from);
+    }
+
+    /**
+     * Finds the block holding the answer by binary search on the first times of the blocks, then decodes it.
+     */
+    @Override
+    int lowerBound(int from, int to, long time) {
+        // first block starting after "from" whose first time is at or after the searched time
+        int low = from / BLOCK_SIZE + 1;
+        int high = (to + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int start = Math.max(from, (low - 1) * BLOCK_SIZE);
+        int end = Math.min(to, low * BLOCK_SIZE);
+        TimeIndex.Reader reader = reader(start);
+        for (int i = start; i < end; i++) {
+            if (reader.next() >= time) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    @Override
+    long heapBytes() {
+        return 48L + 8L * words.length + 16L * blockPositions.length;
+    }
+
+    /**
+     * Decodes the rows in order. Starting in the middle of a block decodes the rows before it in the block.
+     */
+    private final class Reader extends TimeIndex.Reader {
+        private long position;
+        private int index;
+        private long time;
+        private long delta;
+
+        Reader(int from) {
+            index = from / BLOCK_SIZE * BLOCK_SIZE;
+            while (index < from) {
+                next();
+            }
+        }
+
+        @Override
+        long next() {
+            if ((index & (BLOCK_SIZE - 1)) == 0) {
+                position = blockPositions[index / BLOCK_SIZE];
+                time = BitBuffer.read(words, position, 64);
+                position += 64;
+                delta = 0L;
+            } else {
+                if (BitBuffer.bit(words, position++)) {
+                    int bits;
+                    if (!BitBuffer.bit(words, position++)) {
+                        bits = 7;
+                    } else if (!BitBuffer.bit(words, position++)) {
+                        bits = 9;
+                    } else if (!BitBuffer.bit(words, position++)) {
+                        bits = 12;
+                    } else {
+                        bits = 64;
+                    }
+                    delta += BitBuffer.readSigned(words, position, bits);
+                    position += bits;
+                }
+                time += delta;
+            }
+            index++;
+            return time;
+        }
+    }
+}
@@ -0,0 +1,708 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the CSV files used by {@link DataContainer} straight from a memory-mapped file.
+ * The bytes are scanned in place: timestamps and decimal values are decoded without creating
+ * a String per line or per cell, and the results are written directly into primitive columns.
+ * The columns of variables that were not requested are skipped by the tokenizer without being decoded.
+ */
+final class CsvParser {
+
+    /** Largest region mapped at once; files bigger than this are mapped window by window. */
+    static final int MAX_WINDOW = 1 << 30;
+
+    /** Files smaller than this are always parsed on the calling thread. */
+    static final long MIN_PARALLEL_SIZE = 1 << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CsvParser() {
+    }
+
+    /**
+     * Holds the columns decoded from (a part of) a CSV file.
+     * The column of a variable that is not read is null.
+     */
+    static final class Columns {
+        long[] times;
+        double[][] values;
+        int rows;
+
+        Columns(int variableCount, int capacity) {
+            this(variableCount, capacity, null);
+        }
+
+        Columns(int variableCount, int capacity, boolean[] selected) {
+            capacity = Math.max(capacity, 16);
+            times = new long[capacity];
+            values = new double[variableCount][];
+            for (int i = 0; i < variableCount; i++) {
+                if (selected == null || selected[i]) {
+                    values[i] = new double[capacity];
+                }
+            }
+        }
+
+        void ensureCapacity(int required) {
+            if (required <= times.length) {
+                return;
+            }
+            int capacity = Math.max(required, times.length + (times.length >> 1));
+            times = Arrays.copyOf(times, capacity);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    values[i] = Arrays.copyOf(values[i], capacity);
+                }
+            }
+        }
+
+        void trim() {
+            if (times.length != rows) {
+                times = Arrays.copyOf(times, rows);
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        values[i] = Arrays.copyOf(values[i], rows);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The header line of a CSV file.
+     */
+    static final class Header {
+        final String[] variableNames;
+        final long dataOffset;
+
+        Header(String[] variableNames, long dataOffset) {
+            this.variableNames = variableNames;
+            this.dataOffset = dataOffset;
+        }
+    }
+
+    /**
+     * Reads the header line of a CSV file.
+     *
+     * @param channel the channel of the CSV file
+     * @return the variable names (the first column is the time) and the offset of the first data line
+     * @throws IOException if the file is empty or the header cannot be read
+     */
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        byte[] line = new byte[0];
+        long position = 0;
+        int length = -1;
+        while (length < 0) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int start = line.length;
+            line = Arrays.copyOf(line, start + read);
+            System.arraycopy(buffer.array(), 0, line, start, read);
+            position += read;
+            for (int i = start; i < line.length; i++) {
+                if (line[i] == '\n') {
+                    length = i;
+                    break;
+                }
+            }
+        }
+        if (line.length == 0) {
+            throw new IOException("The CSV file is empty");
+        }
+        long dataOffset = length < 0 ? line.length : length + 1;
+        if (length < 0) {
+            length = line.length;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        int start = 0;
+        if (length >= 3 && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        String[] tokens = new String(line, start, length - start, StandardCharsets.UTF_8).split(",");
+        return new Header(Arrays.copyOfRange(tokens, 1, tokens.length), dataOffset);
+    }
+
+    /**
+     * Finds the columns of the requested variables.
+     *
+     * @param variableNames the variables of the file, in column order
+     * @param variables     the variables to read, or null to read them all
+     * @return one flag per column telling whether it is read, or null if all of them are
+     * @throws IllegalArgumentException if a requested variable is not in the file
+     */
+    static boolean[] select(String[] variableNames, Collection<String> variables) {
+        if (variables == null) {
+            return null;
+        }
+        List<String> names = Arrays.asList(variableNames);
+        boolean[] selected = new boolean[variableNames.length];
+        for (String variable : variables) {
+            int index = names.indexOf(variable);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown variable: " + variable);
+            }
+            selected[index] = true;
+        }
+        return selected;
+    }
+
+    /**
+     * Parses a whole CSV file. Rows out of time order are sorted by time, keeping rows with equal timestamps in
+     * file order.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param header      receives the variable names; may be null
+     * @return the decoded columns, trimmed to the number of rows
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static Columns parseFile(String csvFileName, ArrayList<String> header) throws IOException {
+        return parseFile(csvFileName, header, null);
+    }
+
+    /**
+     * Parses the columns of some variables of a CSV file. The other columns are left null.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param header      receives the variable names; may be null
+     * @param variables   the variables to read, or null to read them all
+     * @return the decoded columns, trimmed to the number of rows
+     * @throws IOException if the file cannot be read or is malformed
+     * @throws IllegalArgumentException if a requested variable is not in the file
+     */
+    static Columns parseFile(String csvFileName, ArrayList<String> header, Collection<String> variables)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFileName), StandardOpenOption.READ)) {
+            Header h = readHeader(channel);
+            boolean[] selected = select(h.variableNames, variables);
+            if (header != null) {
+                header.addAll(Arrays.asList(h.variableNames));
+            }
+            long size = channel.size();
+            Columns columns = new Columns(h.variableNames.length, estimateRows(channel, h.dataOffset, size), selected);
+
+            long position = h.dataOffset;
+            while (position < size) {
+                long windowEnd = Math.min(size, position + MAX_WINDOW);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+                int end = buffer.limit();
+                if (windowEnd < size) {
+                    end = lastLineEnd(buffer, 0, end);
+                    if (end < 0) {
+                        throw new IOException("Line longer than " + MAX_WINDOW + " bytes at byte offset " + position);
+                    }
+                }
+                parse(buffer, 0, end, position, columns);
+                position += end;
+            }
+            columns.trim();
+            sortIfUnsorted(columns);
+            return columns;
+        }
+    }
+
+    /**
+     * Parses a whole CSV file on a ForkJoin pool. The file is cut into chunks at line boundaries,
+     * every chunk is mapped and parsed into its own columns, and the partial columns are then
+     * stitched back together in timestamp order.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param header      receives the variable names; may be null
+     * @param parallelism the number of threads to use
+     * @return the decoded columns, trimmed to the number of rows
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static Columns parseFileParallel(String csvFileName, ArrayList<String> header, int parallelism) throws IOException {
+        return parseFileParallel(csvFileName, header, parallelism, null);
+    }
+
+    /**
+     * Parses the columns of some variables of a CSV file on a ForkJoin pool, as
+     * {@link #parseFileParallel(String, ArrayList, int)} does. The other columns are left null.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param header      receives the variable names; may be null
+     * @param parallelism the number of threads to use
+     * @param variables   the variables to read, or null to read them all
+     * @return the decoded columns, trimmed to the number of rows
+     * @throws IOException if the file cannot be read or is malformed
+     * @throws IllegalArgumentException if a requested variable is not in the file
+     */
+    static Columns parseFileParallel(String csvFileName, ArrayList<String> header, int parallelism,
+            Collection<String> variables) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (parallelism == 1 || size < MIN_PARALLEL_SIZE) {
+                return parseFile(csvFileName, header, variables);
+            }
+            Header h = readHeader(channel);
+            boolean[] selected = select(h.variableNames, variables);
+            if (header != null) {
+                header.addAll(Arrays.asList(h.variableNames));
+            }
+            int variableCount = h.variableNames.length;
+
+            // a few chunks per thread so that a slow chunk does not leave the other threads idle
+            long chunkSize = Math.min(MAX_WINDOW, Math.max(MIN_PARALLEL_SIZE, (size - h.dataOffset) / (parallelism * 4L) + 1));
+            List<long[]> bounds = new ArrayList<>();
+            long start = h.dataOffset;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+                bounds.add(new long[]{start, end});
+                start = end;
+            }
+
+            List<Callable<Columns>> tasks = new ArrayList<>();
+            for (long[] bound : bounds) {
+                tasks.add(() -> {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bound[0], bound[1] - bound[0]);
+                    Columns columns = new Columns(variableCount, estimateRows(channel, bound[0], bound[1]), selected);
+                    parse(buffer, 0, buffer.limit(), bound[0], columns);
+                    return columns;
+                });
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<Columns> chunks = new ArrayList<>();
+                for (Future<Columns> future : pool.invokeAll(tasks)) {
+                    chunks.add(future.get());
+                }
+                return pool.submit(() -> stitch(chunks, variableCount, selected)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + csvFileName, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Concatenates partial columns in timestamp order. Chunks are ordered by their first timestamp;
+     * if the rows are still out of order afterwards (an unsorted file), they are sorted by time as
+     * {@link #parseFile(String, ArrayList, Collection)} does.
+     */
+    private static Columns stitch(List<Columns> chunks, int variableCount, boolean[] selected) {
+        chunks.removeIf(chunk -> chunk.rows == 0);
+        chunks.sort((a, b) -> Long.compare(a.times[0], b.times[0]));
+
+        long total = 0;
+        for (Columns chunk : chunks) {
+            total += chunk.rows;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many rows: " + total);
+        }
+        int rows = (int) total;
+        int[] offsets = new int[chunks.size()];
+        for (int c = 1; c < chunks.size(); c++) {
+            offsets[c] = offsets[c - 1] + chunks.get(c - 1).rows;
+        }
+
+        Columns result = new Columns(variableCount, 0, selected);
+        result.rows = rows;
+        result.times = new long[rows];
+        for (int c = 0; c < chunks.size(); c++) {
+            System.arraycopy(chunks.get(c).times, 0, result.times, offsets[c], chunks.get(c).rows);
+        }
+        IntStream.range(0, variableCount).filter(v -> selected == null || selected[v]).parallel().forEach(v -> {
+            double[] column = new double[rows];
+            for (int c = 0; c < chunks.size(); c++) {
+                System.arraycopy(chunks.get(c).values[v], 0, column, offsets[c], chunks.get(c).rows);
+            }
+            result.values[v] = column;
+        });
+
+        sortIfUnsorted(result);
+        return result;
+    }
+
+    /**
+     * Sorts the rows by time if they are not sorted already, so that every parse of a file gives the same sorted
+     * time index, which the range searches and the indexes of the containers rely on.
+     */
+    private static void sortIfUnsorted(Columns columns) {
+        for (int i = 1; i < columns.rows; i++) {
+            if (columns.times[i] < columns.times[i - 1]) {
+                sortByTime(columns);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sorts all columns by time, keeping rows with equal timestamps in file order.
+     */
+    private static void sortByTime(Columns columns) {
+        int rows = columns.rows;
+        long[] times = columns.times;
+        int[] order = new int[rows];
+        int[] scratch = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        // bottom-up merge sort, which is stable
+        for (int width = 1; width < rows; width *= 2) {
+            for (int low = 0; low < rows; low += 2 * width) {
+                int middle = Math.min(low + width, rows);
+                int high = Math.min(low + 2 * width, rows);
+                int left = low;
+                int right = middle;
+                for (int k = low; k < high; k++) {
+                    if (left < middle && (right >= high || times[order[left]] <= times[order[right]])) {
+                        scratch[k] = order[left++];
+                    } else {
+                        scratch[k] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+
+        long[] sortedTimes = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            sortedTimes[i] = times[order[i]];
+        }
+        columns.times = sortedTimes;
+        for (int v = 0; v < columns.values.length; v++) {
+            double[] column = columns.values[v];
+            if (column == null) {
+                continue;
+            }
+            double[] sorted = new double[rows];
+            for (int i = 0; i < rows; i++) {
+                sorted[i] = column[order[i]];
+            }
+            columns.values[v] = sorted;
+        }
+    }
+
+    /**
+     * Returns the offset of the first line starting at or after {@code position}.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        position--;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the complete lines of {@code [position, size)} of a file that is still being written.
+     * A last line without its line break is left for a later call.
+     *
+     * @param channel  the channel of the CSV file
+     * @param position the offset of the first byte to parse, at the start of a line
+     * @param size     the size of the file
+     * @param columns  the columns the decoded rows are appended to
+     * @return the offset after the last complete line that was parsed
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    static long parseAppended(FileChannel channel, long position, long size, Columns columns) throws IOException {
+        while (position < size) {
+            long windowEnd = Math.min(size, position + MAX_WINDOW);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+            int end = lastLineEnd(buffer, 0, buffer.limit());
+            if (end < 0) {
+                if (windowEnd - position == MAX_WINDOW) {
+                    throw new IOException("Line longer than " + MAX_WINDOW + " bytes at byte offset " + position);
+                }
+                break;
+            }
+            parse(buffer, 0, end, position, columns);
+            position += end;
+            if (end < buffer.limit()) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Parses the complete lines found in {@code buffer[start, end)} and appends them to {@code columns}.
+     *
+     * @param buffer     the bytes to parse
+     * @param start      the index of the first byte of the first line
+     * @param end        the index after the last byte to parse
+     * @param fileOffset the offset of {@code buffer[0]} in the file, used in error messages
+     * @param columns    the columns the decoded rows are appended to
+     * @throws IOException if a line is malformed
+     */
+    static void parse(ByteBuffer buffer, int start, int end, long fileOffset, Columns columns) throws IOException {
+        int variableCount = columns.values.length;
+        AsciiSequence timestamp = new AsciiSequence(buffer);
+        int position = start;
+        while (position < end) {
+            byte first = buffer.get(position);
+            if (first == '\n' || first == '\r') {
+                position++;
+                continue;
+            }
+            int lineStart = position;
+            int row = columns.rows;
+            columns.ensureCapacity(row + 1);
+
+            int fieldEnd = fieldEnd(buffer, position, end);
+            try {
+                columns.times[row] = Timestamps.parse(timestamp.reset(position, fieldEnd));
+            } catch (ParseException e) {
+                throw new IOException("Invalid timestamp at byte offset " + (fileOffset + lineStart), e);
+            }
+            position = fieldEnd;
+
+            for (int v = 0; v < variableCount; v++) {
+                if (position >= end || buffer.get(position) != ',') {
+                    throw new IOException("Expected " + variableCount + " values but found " + v
+                            + " at byte offset " + (fileOffset + lineStart));
+                }
+                position++;
+                fieldEnd = fieldEnd(buffer, position, end);
+                double[] column = columns.values[v];
+                if (column != null) {
+                    column[row] = parseDouble(buffer, position, fieldEnd);
+                }
+                position = fieldEnd;
+            }
+            if (position < end && buffer.get(position) == ',') {
+                throw new IOException("More than " + variableCount + " values at byte offset " + (fileOffset + lineStart));
+            }
+            while (position < end && buffer.get(position) != '\n') {
+                position++;
+            }
+            columns.rows = row + 1;
+        }
+    }
+
+    /**
+     * Returns the index after the last '\n' in {@code buffer[start, end)}, or -1 if there is none.
+     */
+    static int lastLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Estimates the number of data lines in {@code [dataOffset, size)} from the length of the first one.
+     */
+    private static int estimateRows(FileChannel channel, long dataOffset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        channel.read(buffer, dataOffset);
+        int lineEnd = -1;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                lineEnd = i + 1;
+                break;
+            }
+        }
+        if (lineEnd <= 0) {
+            return 1024;
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8, (size - dataOffset) / lineEnd + 1);
+    }
+
+    private static int fieldEnd(ByteBuffer buffer, int position, int end) {
+        while (position < end) {
+            byte b = buffer.get(position);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Exposes a range of ASCII bytes as a CharSequence without copying them, so that
+     * {@link Timestamps#parse(CharSequence)} can decode timestamps in place.
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+        private int start;
+        private int end;
+
+        AsciiSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        AsciiSequence reset(int start, int end) {
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text(buffer, start, end);
+        }
+    }
+
+    /**
+     * Decodes a decimal number. Numbers with at most 2^53 as mantissa and a decimal exponent of at most 22
+     * are converted exactly with a single multiplication or division (Clinger's fast path); any other
+     * input falls back to {@link Double#parseDouble(String)} so the result is always correctly rounded.
+     * An empty cell or a cell that is not a number, such as "NA" or "null", is a missing value and
+     * decodes to NaN, so that one bad cell does not stop the whole load.
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+
+        int position = start;
+        boolean negative = false;
+        byte b = buffer.get(position);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+        boolean fraction = false;
+        for (; position < end; position++) {
+            b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa < 100000000000000000L) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else {
+                    exact = false;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (digits > 0 && position < end && (b == 'e' || b == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negativeExponent = buffer.get(position) == '-';
+                position++;
+            }
+            int explicitExponent = 0;
+            int exponentDigits = 0;
+            for (; position < end; position++) {
+                b = buffer.get(position);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                exponentDigits++;
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (b - '0');
+                }
+            }
+            if (exponentDigits == 0) {
+                exact = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (digits == 0 || position != end || !exact
+                || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            try {
+                return Double.parseDouble(text(buffer, start, end));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,55 +1,279 @@
 package data;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The DataContainer class represents a container for time series data stored in a CSV file.
  * It provides methods for reading data from a CSV file, filtering data by date range,
  * resampling data at different time intervals, and calculating sums or averages of energy variables.
  * The data is organized by time and variable, with methods for accessing and manipulating it.
+ * Internally the data is stored column by column: one array of epoch seconds for the time index
+ * and one array of primitive doubles per variable. A filtered container is a view over a range of
+ * rows of the columns of its parent, so filtering never copies data.
+ * The value columns can be kept outside the garbage-collected heap (see {@link ColumnStorage}).
+ * A dataset can be opened with only the variables that are needed; the other columns are then loaded
+ * the first time they are read. Derived variables defined by expressions (see {@link #withDerived(String, String)})
+ * are also computed the first time they are read.
+ * Sums, means and ratios over a time range are answered in constant time from cumulative sums once the
+ * rows of the range are found (see {@link #sum(String, long, long)}), and their minimum and maximum from a
+ * sparse table (see {@link #max(String, long, long)}).
+ * The columns of the file are checked for sentinel, out-of-range and stuck values the first time they are read
+ * (see {@link QualityRules}); the flagged samples are recorded in a bitmap per column, through which all the
+ * aggregations read the column, without copying it, so that they skip these samples like missing values
+ * (see {@link #getQualityReport()}). The accessors of the values, such as {@link #getValues(String)}, return the
+ * values as read, flagged samples included.
+ * Empty cells and cells that are not numbers are missing values too. The intervals without samples can be
+ * filled when resampling (see {@link GapFill}).
+ * <p>
+ * A container is immutable: its fields are final, its variables and columns cannot be modified, and deriving
+ * data from it, such as filtering, resampling, defining a variable or appending rows, returns a new container
+ * sharing its columns. Many threads can therefore query one loaded dataset without locking. The columns that are
+ * loaded or computed the first time they are read, and the sums and indexes built on first use, are caches that
+ * are safe to fill from several threads and never change what a container returns. A followed file publishes
+ * each new version atomically (see {@link TailFollower}).
  */
 public class DataContainer {
 
-    private ArrayList<String> timeStrings;
-    private ArrayList<String> orderedVariableNames;
-    private TreeMap<String, ArrayList<Double>> data;
-    private int numberOfSamples = 0;
+    private static final Logger LOG = Logger.getLogger(DataContainer.class.getName());
+
+    private final TimeIndex times;
+    private final List<String> orderedVariableNames;
+    private final Map<String, Column> data;
+    private final int offset;
+    private final int numberOfSamples;
+    private final RollupPyramid rollups;
+    private final AtomicInteger appendedRows;
+    private final ColumnLoader loader;
+    private final DerivedColumns derived;
+    private final PrefixSums prefixSums;
+    private final RangeExtrema extrema;
+    private final DataQuality quality;
 
     /**
      * Constructs a DataContainer by reading data from a CSV file.
      * The CSV file is expected to have a header row followed by time series data.
+     * The file is memory-mapped and decoded in place, without creating a String per line or per value.
      *
      * @param csvFileName the name of the CSV file containing the data
      * @throws IOException if an error occurs while reading the file
      */
     public DataContainer(String csvFileName) throws IOException {
-        orderedVariableNames = new ArrayList<>();
-        data = new TreeMap<>();
-        timeStrings = new ArrayList<>();
+        this(read(csvFileName));
+    }
+
+    /**
+     * Constructs a DataContainer by reading a CSV file in parallel.
+     * The file is split into chunks at line boundaries that are parsed on a ForkJoin pool, and the
+     * partial columns are stitched back together in timestamp order. Small files are read on the
+     * calling thread.
+     *
+     * @param csvFileName the name of the CSV file containing the data
+     * @param parallelism the number of threads used to parse the file
+     * @throws IOException if an error occurs while reading the file
+     */
+    public DataContainer(String csvFileName, int parallelism) throws IOException {
+        this(read(csvFileName, parallelism, null));
+    }
+
+    private static Builder read(String csvFileName) throws IOException {
+        ArrayList<String> variableNames = new ArrayList<>();
+        CsvParser.Columns columns = CsvParser.parseFile(csvFileName, variableNames);
+        return read(variableNames, columns);
+    }
 
-        BufferedReader bufferedReader = new BufferedReader(new FileReader(csvFileName));
-        String line = bufferedReader.readLine();
-        String[] tokens = line.split(",");
+    /**
+     * Reads the columns of some variables of a CSV file in parallel. The other columns are skipped
+     * without being decoded and are missing from the container.
+     */
+    private static Builder read(String csvFileName, int parallelism, Collection<String> variables) throws IOException {
+        ArrayList<String> variableNames = new ArrayList<>();
+        CsvParser.Columns columns = CsvParser.parseFileParallel(csvFileName, variableNames, parallelism, variables);
+        return read(variableNames, columns);
+    }
 
-        for (int i = 1; i < tokens.length; i++) {
-            orderedVariableNames.add(tokens[i]);
-            data.put(tokens[i], new ArrayList<>());
+    private static Builder read(List<String> variableNames, CsvParser.Columns columns) {
+        TreeMap<String, Column> data = new TreeMap<>();
+        for (int i = 0; i < variableNames.size(); i++) {
+            if (columns.values[i] != null) {
+                data.put(variableNames.get(i), Column.of(columns.values[i]));
+            }
+        }
+        return new Builder()
+                .rows(TimeIndex.of(columns.times), 0, columns.rows)
+                .columns(variableNames, data)
+                .quality(DataQuality.ofFile());
+    }
+
+    /**
+     * Opens a CSV file through its binary snapshot.
+     * If a snapshot made from the current version of the file exists next to it (same name with the
+     * suffix ".snapshot"), it is memory-mapped and no text is parsed. Otherwise the CSV file is parsed
+     * on all available cores and a new snapshot is written for the next time. Failing to write the
+     * snapshot does not prevent the data from being returned. The hour, day, week and month rollups
+     * of the data are built before it is returned (see {@link #withRollups()}).
+     * The value columns are kept in the storage selected by the {@value ColumnStorage#PROPERTY} system property.
+     *
+     * @param csvFileName the name of the CSV file containing the data
+     * @return a DataContainer holding the data of the file
+     * @throws IOException if an error occurs while reading the file
+     */
+    public static DataContainer open(String csvFileName) throws IOException {
+        return open(csvFileName, ColumnStorage.configured());
+    }
+
+    /**
+     * Opens a CSV file through its binary snapshot, as {@link #open(String)} does, keeping the value
+     * columns in the given storage. With {@link ColumnStorage#MAPPED} the columns are read from the
+     * snapshot file by the operating system as they are used; if the snapshot cannot be written they
+     * are kept in direct buffers instead.
+     *
+     * @param csvFileName the name of the CSV file containing the data
+     * @param storage     where to keep the value columns
+     * @return a DataContainer holding the data of the file
+     * @throws IOException if an error occurs while reading the file
+     */
+    public static DataContainer open(String csvFileName, ColumnStorage storage) throws IOException {
+        return open(csvFileName, storage, null);
+    }
+
+    /**
+     * Opens a CSV file through its binary snapshot, as {@link #open(String)} does, reading only the columns
+     * of the given variables. The other columns are not decoded or stored; they are loaded the first time
+     * they are read, from this container or from a container filtered from it (see {@link #loadVariables}).
+     * When there is no valid snapshot, the CSV file is parsed without writing a new snapshot, since a snapshot
+     * holds every column.
+     *
+     * @param csvFileName the name of the CSV file containing the data
+     * @param variables   the variables to read, or null to read all of them
+     * @return a DataContainer holding the data of the file
+     * @throws IOException if an error occurs while reading the file
+     * @throws IllegalArgumentException if a variable is not in the file
+     */
+    public static DataContainer open(String csvFileName, Collection<String> variables) throws IOException {
+        return open(csvFileName, ColumnStorage.configured(), variables);
+    }
+
+    /**
+     * Opens a CSV file through its binary snapshot, reading only the columns of the given variables into the
+     * given storage (see {@link #open(String, Collection)} and {@link #open(String, ColumnStorage)}).
+     *
+     * @param csvFileName the name of the CSV file containing the data
+     * @param storage     where to keep the value columns
+     * @param variables   the variables to read, or null to read all of them
+     * @return a DataContainer holding the data of the file
+     * @throws IOException if an error occurs while reading the file
+     * @throws IllegalArgumentException if a variable is not in the file
+     */
+    public static DataContainer open(String csvFileName, ColumnStorage storage, Collection<String> variables)
+            throws IOException {
+        File source = new File(csvFileName);
+        long lastModified = source.lastModified();
+        long length = source.length();
+        Path snapshot = snapshotPath(csvFileName);
+        SnapshotFile.Content content = readSnapshot(snapshot, source, storage, variables);
+
+        if (content != null) {
+            int rows = content.times.length;
+            TreeMap<String, Column> columns = new TreeMap<>();
+            for (int i = 0; i < content.values.length; i++) {
+                if (content.values[i] != null) {
+                    columns.put(content.variableNames.get(i), content.values[i]);
+                }
+            }
+            return new Builder()
+                    .rows(storage.copy(TimeIndex.of(content.times), rows), 0, rows)
+                    .columns(content.variableNames, columns)
+                    .loader(loader(csvFileName, storage, variables, lastModified, length, rows))
+                    .quality(DataQuality.ofFile())
+                    .build()
+                    .withRollups();
+        }
+
+        Builder parsed = read(csvFileName, Runtime.getRuntime().availableProcessors(), variables);
+        int rows = parsed.numberOfSamples;
+        boolean written = false;
+        if (variables == null && source.lastModified() == lastModified) {
+            try {
+                parsed.build().writeSnapshot(snapshot.toString(), csvFileName);
+                written = true;
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not write snapshot " + snapshot, e);
+            }
+        }
+        TreeMap<String, Column> columns = new TreeMap<>(parsed.data);
+        if (storage == ColumnStorage.MAPPED && written) {
+            content = readSnapshot(snapshot, source, storage, null);
+            if (content != null) {
+                for (int i = 0; i < content.values.length; i++) {
+                    columns.put(parsed.variableNames.get(i), content.values[i]);
+                }
+            }
         }
-        while ((line = bufferedReader.readLine()) != null) {
-            String[] values = line.split(",");
-            timeStrings.add(values[0]);
-            for (int i = 1; i < values.length; i++) {
-                data.get(orderedVariableNames.get(i - 1)).add(Double.parseDouble(values[i]));
+        if (storage != ColumnStorage.HEAP && content == null) {
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                entry.setValue(storage.copy(entry.getValue(), rows));
             }
         }
-        bufferedReader.close();
-        numberOfSamples = timeStrings.size();
+        return parsed
+                .rows(storage.copy(parsed.times, rows), 0, rows)
+                .columns(parsed.variableNames, columns)
+                .loader(loader(csvFileName, storage, variables, lastModified, length, rows))
+                .build()
+                .withRollups();
+    }
+
+    /**
+     * Creates the loader of the columns that were not read when the file was opened, if some were skipped.
+     */
+    private static ColumnLoader loader(String csvFileName, ColumnStorage storage, Collection<String> variables,
+            long lastModified, long length, int rows) {
+        return variables == null ? null : new ColumnLoader(csvFileName, storage, lastModified, length, rows);
+    }
+
+    private static SnapshotFile.Content readSnapshot(Path snapshot, File source, ColumnStorage storage,
+            Collection<String> variables) {
+        try {
+            return SnapshotFile.read(snapshot, source, storage, variables);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable snapshot " + snapshot, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the data of this container as a binary snapshot of a CSV file.
+     * The modification time and size of the CSV file are recorded so that a stale snapshot is detected.
+     *
+     * @param snapshotFileName the name of the snapshot file to write
+     * @param csvFileName      the name of the CSV file the data was read from
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(String snapshotFileName, String csvFileName) throws IOException {
+        loadVariables(orderedVariableNames);
+        Column[] columns = new Column[orderedVariableNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = rawColumn(orderedVariableNames.get(i));
+        }
+        SnapshotFile.write(Paths.get(snapshotFileName), new File(csvFileName), orderedVariableNames,
+                times, columns, offset, numberOfSamples);
+    }
+
+    /**
+     * Gets the snapshot file used by {@link #open(String)} for a CSV file.
+     *
+     * @param csvFileName the name of the CSV file
+     * @return the path of the snapshot file
+     */
+    public static Path snapshotPath(String csvFileName) {
+        return Paths.get(csvFileName + ".snapshot");
     }
 
     /**
@@ -62,7 +286,7 @@ public class DataContainer {
     }
 
     /**
-     * Gets the names of all available variables.
+     * Gets the names of all available variables, including the ones whose column is not loaded yet.
      *
      * @return an array of variable names
      */
@@ -70,28 +294,143 @@ public class DataContainer {
         return orderedVariableNames.toArray(new String[0]);
     }
 
+    /**
+     * Gets the names of the derived variables defined with {@link #withDerived(String, String)}.
+     *
+     * @return an array of variable names, in order of definition
+     */
+    public String[] getDerivedVariables() {
+        return derived.names().toArray(new String[0]);
+    }
+
+    /**
+     * Returns this data with a derived variable computed from the other variables by an expression, such as
+     * {@code sum(prefix:" puissance_electrique")}, {@code Green_Er_Consumption_kW - Green_Er_Production_kW}
+     * or {@code scale(Green_Er_Consumption_kW, 0.001)} (see {@link Expression} for the syntax).
+     * The expression is compiled now but only computed the first time the variable is read, in one pass over
+     * whole columns, and the result is kept. The new container shares the columns of this one, which is left
+     * unchanged; the definition is shared with the containers filtered from it and carried over to the versions
+     * with appended rows. Defining the same variable again, on this container or another version of the same
+     * data, shares the computed column. The variable is computed from the values seen by the aggregations, so the
+     * samples flagged by the quality checks are skipped like missing values.
+     *
+     * @param name       the name of the derived variable
+     * @param expression the expression computing it
+     * @return the container with the variable, or this one if it already defines it by the same expression
+     * @throws IllegalArgumentException if the expression is invalid or refers to an unknown variable,
+     *                                  or if the name is already used by another variable
+     */
+    public DataContainer withDerived(String name, String expression) {
+        if (orderedVariableNames.contains(name)) {
+            throw new IllegalArgumentException("The variable already exists: " + name);
+        }
+        if (expression.equals(derived.text(name))) {
+            return this;
+        }
+        List<String> variables = new ArrayList<>(orderedVariableNames);
+        variables.addAll(derived.names());
+        return new Builder(this).derived(derived.with(name, expression, Expression.parse(expression, variables))).build();
+    }
+
     /**
      * Gets the time strings corresponding to the data samples.
+     * The strings are formatted on demand from the time index as "yyyy-MM-dd HH:mm:ss+00:00".
      *
      * @return an array of time strings
      */
     public String[] getTimeStrings() {
-        return timeStrings.toArray(new String[0]);
+        String[] timeStrings = new String[numberOfSamples];
+        TimeIndex.Reader reader = times.reader(offset);
+        for (int i = 0; i < numberOfSamples; i++) {
+            timeStrings[i] = Timestamps.format(reader.next());
+        }
+        return timeStrings;
+    }
+
+    /**
+     * Gets the time index of the data samples as epoch seconds (UTC).
+     *
+     * @return a copy of the time index
+     */
+    public long[] getTimes() {
+        long[] copy = new long[numberOfSamples];
+        times.copyTo(offset, copy, 0, numberOfSamples);
+        return copy;
+    }
+
+    /**
+     * Gets the time of a single sample as epoch seconds (UTC).
+     *
+     * @param index the sample index
+     * @return the time of the sample
+     */
+    public long getTime(int index) {
+        if (index < 0 || index >= numberOfSamples) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfSamples);
+        }
+        return times.get(offset + index);
     }
 
     /**
      * Gets the data for a specific variable.
+     * The samples flagged by the quality checks are returned as read; missing values are NaN.
      *
      * @param variableName the name of the variable
      * @return an array of values for the specified variable
      */
     public Double[] getData(String variableName) {
-        return data.get(variableName).toArray(new Double[0]);
+        Column.Reader reader = valuesColumn(variableName).reader(offset);
+        Double[] values = new Double[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            values[i] = reader.next();
+        }
+        return values;
+    }
+
+    /**
+     * Gets the data for a specific variable as primitive values.
+     * The samples flagged by the quality checks are returned as read: only the aggregations skip them.
+     *
+     * @param variableName the name of the variable
+     * @return a copy of the values for the specified variable
+     */
+    public double[] getValues(String variableName) {
+        double[] values = new double[numberOfSamples];
+        valuesColumn(variableName).copyTo(offset, values, 0, numberOfSamples);
+        return values;
+    }
+
+    /**
+     * Gets a single value of a specific variable.
+     * A sample flagged by the quality checks is returned as read.
+     *
+     * @param variableName the name of the variable
+     * @param index        the sample index
+     * @return the value of the variable at the given sample
+     */
+    public double getValue(String variableName, int index) {
+        if (index < 0 || index >= numberOfSamples) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfSamples);
+        }
+        return valuesColumn(variableName).get(offset + index);
+    }
+
+    /**
+     * Gets a view of the samples of a specific variable, which reads the time index and the column of this
+     * container in place. The column is looked up once, loaded or computed first if needed.
+     * The view reads the samples flagged by the quality checks as they were read from the file.
+     *
+     * @param variableName the name of the variable
+     * @return the view of the samples of the variable
+     */
+    public SeriesView getSeries(String variableName) {
+        return new SeriesView(times, valuesColumn(variableName), offset, numberOfSamples);
     }
 
     /**
      * Filters the data by the specified date range.
      * Only data within the given start and end dates (inclusive) will be included.
+     * The range is located by binary search and the result shares the columns of this container.
      *
      * @param start the start date in the format "yyyy-MM-dd HH:mm:ss"
      * @param end   the end date in the format "yyyy-MM-dd HH:mm:ss"
@@ -99,38 +438,309 @@ public class DataContainer {
      * @throws ParseException if the date format is invalid
      */
     public DataContainer filterByDateRange(String start, String end) throws ParseException {
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-        Date startDate = format.parse(start + "+00:00");
-        Date endDate = format.parse(end + "+00:00");
+        return filterByTimeRange(Timestamps.parse(start), Timestamps.parse(end));
+    }
 
-        ArrayList<String> filteredTimeStrings = new ArrayList<>();
-        TreeMap<String, ArrayList<Double>> filteredData = new TreeMap<>();
+    /**
+     * Filters the data by the specified time range, given as epoch seconds (UTC).
+     * Only data within the given start and end times (inclusive) will be included.
+     * The range is located by binary search and the result shares the columns of this container.
+     *
+     * @param startTime the start of the range
+     * @param endTime   the end of the range
+     * @return a new DataContainer containing the filtered data
+     */
+    public DataContainer filterByTimeRange(long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = upperBound(endTime);
 
-        for (String variable : orderedVariableNames) {
-            filteredData.put(variable, new ArrayList<>());
+        return new Builder(this).rows(times, from, Math.max(0, to - from)).build();
+    }
+
+    /**
+     * Sums a variable over the rows of this container.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @return the sum of its values, 0 if the container is empty
+     */
+    public double sum(String variableName) {
+        return sum(variableName, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Sums a variable over a time range, given as epoch seconds (UTC).
+     * Only the samples within the given start and end times (inclusive) are summed. The range is located by
+     * binary search, then the sum is the difference of two cumulative sums of the column, which are computed
+     * the first time the variable is summed and kept for this container and the ones filtered from it.
+     * Any number of ranges can then be summed in constant time each. Missing values are skipped.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param startTime    the start of the range
+     * @param endTime      the end of the range
+     * @return the sum of the values in the range, 0 if there are none
+     */
+    public double sum(String variableName, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = Math.max(from, upperBound(endTime));
+        return prefixSums.sum(cacheKey(variableName), column(variableName), from, to);
+    }
+
+    /**
+     * Averages a variable over the rows of this container.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @return the mean of its values, NaN if the container is empty
+     */
+    public double mean(String variableName) {
+        return mean(variableName, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Averages a variable over a time range, given as epoch seconds (UTC), in constant time
+     * (see {@link #sum(String, long, long)}). Missing values are skipped.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param startTime    the start of the range
+     * @param endTime      the end of the range
+     * @return the mean of the values in the range, NaN if there are none
+     */
+    public double mean(String variableName, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = Math.max(from, upperBound(endTime));
+        Column column = column(variableName);
+        String key = cacheKey(variableName);
+        int count = prefixSums.count(key, column, from, to);
+        return count == 0 ? Double.NaN : prefixSums.sum(key, column, from, to) / count;
+    }
+
+    /**
+     * Divides the sum of a variable by the sum of another over the rows of this container, such as the
+     * production over the consumption of a building.
+     *
+     * @param numerator   the name of the variable summed as numerator
+     * @param denominator the name of the variable summed as denominator
+     * @return the ratio of the sums, infinite or NaN if the sum of the denominator is 0
+     */
+    public double ratio(String numerator, String denominator) {
+        return ratio(numerator, denominator, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Divides the sum of a variable by the sum of another over a time range, given as epoch seconds (UTC),
+     * in constant time (see {@link #sum(String, long, long)}).
+     *
+     * @param numerator   the name of the variable summed as numerator
+     * @param denominator the name of the variable summed as denominator
+     * @param startTime   the start of the range
+     * @param endTime     the end of the range
+     * @return the ratio of the sums, infinite or NaN if the sum of the denominator is 0
+     */
+    public double ratio(String numerator, String denominator, long startTime, long endTime) {
+        return sum(numerator, startTime, endTime) / sum(denominator, startTime, endTime);
+    }
+
+    /**
+     * Counts the samples of this container within a time range, given as epoch seconds (UTC).
+     *
+     * @param startTime the start of the range
+     * @param endTime   the end of the range (inclusive)
+     * @return the number of samples in the range
+     */
+    public int count(long startTime, long endTime) {
+        return Math.max(0, upperBound(endTime) - lowerBound(startTime));
+    }
+
+    /**
+     * Finds the largest value of a variable over the rows of this container.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @return the largest value and its time, or null if the container holds no value
+     */
+    public Extremum max(String variableName) {
+        return max(variableName, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the largest value of a variable over a time range, given as epoch seconds (UTC), such as the peak
+     * consumption of a period. The range is located by binary search, then its maximum is found in constant time
+     * from an index of the column, which is built the first time the variable is queried and kept for this
+     * container and the ones filtered from it. Missing values (NaN) are ignored, and the first of equal values
+     * is returned.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param startTime    the start of the range
+     * @param endTime      the end of the range (inclusive)
+     * @return the largest value and its time, or null if the range holds no value
+     */
+    public Extremum max(String variableName, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = Math.max(from, upperBound(endTime));
+        Column column = column(variableName);
+        return extremum(column, extrema.max(cacheKey(variableName), column, from, to));
+    }
+
+    /**
+     * Finds the smallest value of a variable over the rows of this container.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @return the smallest value and its time, or null if the container holds no value
+     */
+    public Extremum min(String variableName) {
+        return min(variableName, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the smallest value of a variable over a time range, given as epoch seconds (UTC), in constant time
+     * once the range is located (see {@link #max(String, long, long)}).
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param startTime    the start of the range
+     * @param endTime      the end of the range (inclusive)
+     * @return the smallest value and its time, or null if the range holds no value
+     */
+    public Extremum min(String variableName, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = Math.max(from, upperBound(endTime));
+        Column column = column(variableName);
+        return extremum(column, extrema.min(cacheKey(variableName), column, from, to));
+    }
+
+    /**
+     * Finds the periods during which a variable was above a threshold, such as the overconsumption of a building.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param threshold    the threshold, which the values must exceed
+     * @return the periods of consecutive samples above the threshold, in order
+     */
+    public List<TimeRange> findAbove(String variableName, double threshold) {
+        return findOutside(variableName, Double.NEGATIVE_INFINITY, threshold);
+    }
+
+    /**
+     * Finds the periods during which a variable was below a threshold.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param threshold    the threshold, which the values must be under
+     * @return the periods of consecutive samples below the threshold, in order
+     */
+    public List<TimeRange> findBelow(String variableName, double threshold) {
+        return findOutside(variableName, threshold, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the periods during which a variable left a band, such as a room temperature outside its comfort band.
+     * A band moving with other variables, such as a setpoint, can be checked on a derived variable like
+     * {@code temperature_ambiante - consigne_temperature_chaude}.
+     * <p>
+     * The search uses the minimum and maximum of every zone of {@value RangeExtrema#ZONE_SIZE} samples and of
+     * the smaller blocks in it, which are computed the first time the variable is queried and kept for this
+     * container and the ones filtered from it, and skips the zones and blocks whose values all lie in the band.
+     * Only the samples of the zones that may leave the band are read. Missing values (NaN) are never outside.
+     *
+     * @param variableName the name of the variable, which may be a derived variable
+     * @param low          the lower bound of the band
+     * @param high         the upper bound of the band
+     * @return the periods of consecutive samples below the lower bound or above the upper bound, in order
+     */
+    public List<TimeRange> findOutside(String variableName, double low, double high) {
+        Column column = column(variableName);
+        int[] runs = extrema.outside(cacheKey(variableName), column, offset, offset + numberOfSamples, low, high);
+        int[] lastRows = new int[runs.length];
+        for (int i = 0; i < runs.length; i += 2) {
+            lastRows[i] = runs[i];
+            lastRows[i + 1] = runs[i + 1] - 1;
+        }
+        long[] runTimes = times.get(lastRows);
+        List<TimeRange> ranges = new ArrayList<>(runs.length / 2);
+        for (int i = 0; i < runs.length; i += 2) {
+            ranges.add(new TimeRange(runTimes[i], runTimes[i + 1], runs[i + 1] - runs[i]));
         }
+        return ranges;
+    }
+
+    private Extremum extremum(Column column, int row) {
+        return row < 0 ? null : new Extremum(times.get(row), column.get(row));
+    }
 
-        for (int i = 0; i < timeStrings.size(); i++) {
-            Date current = format.parse(timeStrings.get(i) + "+00:00");
-            if (!current.before(startDate) && !current.after(endDate)) {
-                filteredTimeStrings.add(timeStrings.get(i));
-                for (String variable : orderedVariableNames) {
-                    filteredData.get(variable).add(data.get(variable).get(i));
+    /**
+     * Checks the variables of the file over the rows of this container and reports the samples flagged per
+     * issue, including the missing values, which the aggregations skip, and the gaps in the time index.
+     * The columns not loaded yet are loaded, and their samples checked, once.
+     *
+     * @return the report of the variables of the file (see {@link QualityRules#forVariable(String)})
+     */
+    public QualityReport getQualityReport() {
+        QualityReport report = new QualityReport(numberOfSamples, findGaps());
+        loadVariables(orderedVariableNames);
+        int end = offset + numberOfSamples;
+        for (String variable : orderedVariableNames) {
+            column(variable);
+            ValidityMask mask = quality.mask(variable);
+            QualityRules rules = quality.rules(variable);
+            Column raw = rawColumn(variable);
+            EnumMap<QualityIssue, Integer> counts = new EnumMap<>(QualityIssue.class);
+            for (QualityIssue issue : QualityIssue.values()) {
+                counts.put(issue, 0);
+            }
+            for (int row = mask.nextFlagged(offset, end); row < end; row = mask.nextFlagged(row + 1, end)) {
+                double value = raw.get(row);
+                QualityIssue issue = value != value ? QualityIssue.MISSING : rules.check(value);
+                if (issue == null) {
+                    issue = QualityIssue.STUCK;
                 }
+                counts.put(issue, counts.get(issue) + 1);
             }
+            report.add(variable, counts);
         }
+        return report;
+    }
 
-        DataContainer filteredContainer = new DataContainer();
-        filteredContainer.timeStrings = filteredTimeStrings;
-        filteredContainer.data = filteredData;
-        filteredContainer.orderedVariableNames = orderedVariableNames;
-        filteredContainer.numberOfSamples = filteredTimeStrings.size();
-        return filteredContainer;
+    /**
+     * Finds the gaps in the time index: the steps between consecutive samples longer than one and a half times
+     * the usual step, which is the most frequent of the first steps.
+     */
+    private List<TimeRange> findGaps() {
+        List<TimeRange> gaps = new ArrayList<>();
+        if (numberOfSamples < 3) {
+            return gaps;
+        }
+        HashMap<Long, Integer> steps = new HashMap<>();
+        TimeIndex.Reader reader = times.reader(offset);
+        long previous = reader.next();
+        for (int i = 1; i < Math.min(numberOfSamples, 10_000); i++) {
+            long time = reader.next();
+            steps.merge(time - previous, 1, Integer::sum);
+            previous = time;
+        }
+        long usual = 0L;
+        int frequency = 0;
+        for (Map.Entry<Long, Integer> step : steps.entrySet()) {
+            if (step.getValue() > frequency) {
+                usual = step.getKey();
+                frequency = step.getValue();
+            }
+        }
+        if (usual <= 0) {
+            return gaps;
+        }
+        reader = times.reader(offset);
+        previous = reader.next();
+        for (int i = 1; i < numberOfSamples; i++) {
+            long time = reader.next();
+            long step = time - previous;
+            if (2 * step > 3 * usual) {
+                int missing = (int) Math.max(1, Math.round((double) step / usual) - 1);
+                gaps.add(new TimeRange(previous + usual, Math.max(previous + usual, time - usual), missing));
+            }
+            previous = time;
+        }
+        return gaps;
     }
 
     /**
-     * Resamples the data at a specified sampling interval.
-     * The available intervals are "1 Hour", "1 Day", and "1 Month".
+     * Resamples the data at a specified sampling interval, such as "1 Hour", "15 Minutes", "1 Day",
+     * "1 Week" or "1 Month" (see {@link SamplingInterval#parse(String)}).
+     * Each bucket is labelled with its start time (UTC) and holds the average of its samples.
      *
      * @param samplingInterval the desired sampling interval
      * @return a new DataContainer containing the resampled data
@@ -138,113 +748,811 @@ public class DataContainer {
      * @throws IllegalArgumentException if the sampling interval is not valid
      */
     public DataContainer resampleData(String samplingInterval) throws ParseException {
-        if (!Arrays.asList("1 Hour", "1 Day", "1 Month").contains(samplingInterval)) {
-            throw new IllegalArgumentException("Invalid sampling interval. Valid options are: 1 Hour, 1 Day, 1 Month.");
+        return resampleData(SamplingInterval.parse(samplingInterval));
+    }
+
+    /**
+     * Resamples the data at a specified sampling interval.
+     * Each bucket is labelled with its start time (UTC) and holds the average of its samples.
+     * Bucket boundaries are found in a single scan of the time index and every column is then
+     * summed bucket by bucket in a single scan.
+     *
+     * @param samplingInterval the desired sampling interval
+     * @return a new DataContainer containing the resampled data
+     */
+    public DataContainer resampleData(SamplingInterval samplingInterval) {
+        return resampleData(samplingInterval, EnumSet.of(Aggregate.MEAN)).get(Aggregate.MEAN);
+    }
+
+    /**
+     * Resamples the data at a specified sampling interval, computing several aggregates per bucket.
+     * Every column is scanned once whatever the number of aggregates: the minimum, maximum, sum,
+     * running mean and variance (Welford's method) of a bucket are all updated from the same read.
+     * The standard deviation is the population standard deviation of the bucket.
+     * Only the variables whose column is loaded or computed are resampled.
+     * The returned containers share the same time index, labelled with the bucket start times (UTC).
+     *
+     * @param samplingInterval the desired sampling interval
+     * @param aggregates       the aggregates to compute
+     * @return one DataContainer per requested aggregate
+     */
+    public EnumMap<Aggregate, DataContainer> resampleData(SamplingInterval samplingInterval, Set<Aggregate> aggregates) {
+        return resample(samplingInterval, aggregates, loadedColumns());
+    }
+
+    /**
+     * Resamples some variables at a specified sampling interval, computing several aggregates per bucket,
+     * as {@link #resampleData(SamplingInterval, Set)} does. The columns of the variables are loaded and the
+     * derived variables computed if needed; no other variable is resampled.
+     *
+     * @param samplingInterval the desired sampling interval
+     * @param aggregates       the aggregates to compute
+     * @param variables        the variables to resample, which may be derived variables
+     * @return one DataContainer per requested aggregate
+     * @throws IllegalArgumentException if a variable does not exist
+     */
+    public EnumMap<Aggregate, DataContainer> resampleData(SamplingInterval samplingInterval, Set<Aggregate> aggregates,
+            Collection<String> variables) {
+        loadVariables(variables);
+        LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+        for (String variable : variables) {
+            columns.put(variable, column(variable));
         }
+        return resample(samplingInterval, aggregates, columns);
+    }
 
-        DateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-        DateFormat outputFormat;
+    /**
+     * Resamples some variables at a specified sampling interval, as
+     * {@link #resampleData(SamplingInterval, Set, Collection)} does, with a bucket for every interval from the
+     * first bucket to the last: the intervals in which the time index has no sample, and the buckets whose
+     * samples are all missing or flagged, are filled as requested. The number of values of such a bucket
+     * ({@link Aggregate#COUNT}) is 0; its other aggregates are filled.
+     * The buckets are computed as usual and only the empty ones are filled afterwards, so filling costs one
+     * pass over the buckets.
+     *
+     * @param samplingInterval the desired sampling interval
+     * @param aggregates       the aggregates to compute
+     * @param variables        the variables to resample, which may be derived variables
+     * @param fill             how the buckets without values are filled
+     * @return one DataContainer per requested aggregate
+     * @throws IllegalArgumentException if a variable does not exist
+     */
+    public EnumMap<Aggregate, DataContainer> resampleData(SamplingInterval samplingInterval, Set<Aggregate> aggregates,
+            Collection<String> variables, GapFill fill) {
+        // the counts tell which buckets hold no value
+        Set<Aggregate> computed = EnumSet.noneOf(Aggregate.class);
+        computed.addAll(aggregates);
+        computed.add(Aggregate.COUNT);
+        EnumMap<Aggregate, DataContainer> resampled = resampleData(samplingInterval, computed, variables);
 
-        Calendar calendar = Calendar.getInstance();
-        ArrayList<String> resampledTimeStrings = new ArrayList<>();
-        TreeMap<String, ArrayList<Double>> resampledData = new TreeMap<>();
+        DataContainer counts = resampled.get(Aggregate.COUNT);
+        long[] bucketTimes = counts.getTimes();
+        long[] grid = new long[Math.max(16, bucketTimes.length)];
+        int[] positions = new int[bucketTimes.length];
+        int size = 0;
+        for (int b = 0; b < bucketTimes.length; size++) {
+            if (size == grid.length) {
+                grid = Arrays.copyOf(grid, size * 2);
+            }
+            long next = size == 0 ? bucketTimes[0] : samplingInterval.nextBucketStart(grid[size - 1]);
+            if (next >= bucketTimes[b]) {
+                next = bucketTimes[b];
+                positions[b] = size;
+                b++;
+            }
+            grid[size] = next;
+        }
+        grid = Arrays.copyOf(grid, size);
 
-        for (String variable : orderedVariableNames) {
-            resampledData.put(variable, new ArrayList<>());
+        // a bucket is empty when none of its samples holds a value: the counts are read as computed, since they
+        // are not readings of the variable and must never be checked as such
+        HashMap<String, double[]> valueCounts = new HashMap<>();
+        for (String variable : counts.orderedVariableNames) {
+            double[] bucketCounts = new double[bucketTimes.length];
+            counts.data.get(variable).copyTo(0, bucketCounts, 0, bucketTimes.length);
+            valueCounts.put(variable, bucketCounts);
         }
 
-        HashMap<String, ArrayList<Double>> tempData = new HashMap<>();
-        for (String variable : orderedVariableNames) {
-            tempData.put(variable, new ArrayList<>());
+        EnumMap<Aggregate, DataContainer> filledContainers = new EnumMap<>(Aggregate.class);
+        for (Aggregate aggregate : aggregates) {
+            DataContainer source = resampled.get(aggregate);
+            TreeMap<String, Column> filledColumns = new TreeMap<>();
+            for (String variable : source.orderedVariableNames) {
+                double[] values = source.getValues(variable);
+                double[] bucketCounts = valueCounts.get(variable);
+                double[] filled = new double[size];
+                if (aggregate != Aggregate.COUNT) {
+                    Arrays.fill(filled, Double.NaN);
+                }
+                for (int b = 0; b < values.length; b++) {
+                    if (aggregate == Aggregate.COUNT || bucketCounts[b] > 0) {
+                        filled[positions[b]] = values[b];
+                    }
+                }
+                if (aggregate != Aggregate.COUNT) {
+                    fill(grid, filled, fill);
+                }
+                filledColumns.put(variable, Column.of(filled));
+            }
+            filledContainers.put(aggregate, new Builder()
+                    .rows(TimeIndex.of(grid), 0, size)
+                    .columns(source.orderedVariableNames, filledColumns)
+                    .build());
         }
+        return filledContainers;
+    }
 
-        String currentBucket = null;
+    /**
+     * Fills the missing values (NaN) of a resampled series. The values before the first value, and with a
+     * linear fill after the last one, are left missing.
+     */
+    private static void fill(long[] bucketTimes, double[] values, GapFill fill) {
+        if (fill == GapFill.FORWARD) {
+            double last = Double.NaN;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != values[i]) {
+                    values[i] = last;
+                } else {
+                    last = values[i];
+                }
+            }
+        } else if (fill == GapFill.LINEAR) {
+            int previous = -1;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != values[i]) {
+                    continue;
+                }
+                if (previous >= 0 && i - previous > 1) {
+                    double slope = (values[i] - values[previous]) / (bucketTimes[i] - bucketTimes[previous]);
+                    for (int k = previous + 1; k < i; k++) {
+                        values[k] = values[previous] + slope * (bucketTimes[k] - bucketTimes[previous]);
+                    }
+                }
+                previous = i;
+            }
+        }
+    }
 
-        for (int i = 0; i < timeStrings.size(); i++) {
-            Date currentDate = inputFormat.parse(timeStrings.get(i) + "+00:00");
-            calendar.setTime(currentDate);
+    private EnumMap<Aggregate, DataContainer> resample(SamplingInterval samplingInterval, Set<Aggregate> aggregates,
+            LinkedHashMap<String, Column> columns) {
+        if (rollups != null && RollupPyramid.supports(samplingInterval, aggregates)) {
+            return resampleFromRollups(samplingInterval, aggregates, columns);
+        }
+        Buckets buckets = bucketize(samplingInterval);
 
-            switch (samplingInterval) {
-                case "1 Hour":
-                    outputFormat = new SimpleDateFormat("yyyy-MM-dd HH:00:00XXX");
-                    break;
-                case "1 Day":
-                    outputFormat = new SimpleDateFormat("yyyy-MM-dd 00:00:00XXX");
-                    break;
-                case "1 Month":
-                    outputFormat = new SimpleDateFormat("yyyy-MM-01 00:00:00XXX");
-                    break;
-                default:
-                    throw new IllegalStateException("Unexpected value: " + samplingInterval);
+        EnumMap<Aggregate, TreeMap<String, Column>> resampledData = new EnumMap<>(Aggregate.class);
+        for (Aggregate aggregate : aggregates) {
+            resampledData.put(aggregate, new TreeMap<>());
+        }
+        boolean extremes = aggregates.contains(Aggregate.MIN) || aggregates.contains(Aggregate.MAX);
+        double[] stats = new double[6];
+        for (Map.Entry<String, Column> column : columns.entrySet()) {
+            String variable = column.getKey();
+            Column.Reader reader = column.getValue().reader(offset);
+            double[] means = aggregates.contains(Aggregate.MEAN) ? new double[buckets.count] : null;
+            double[] minimums = aggregates.contains(Aggregate.MIN) ? new double[buckets.count] : null;
+            double[] maximums = aggregates.contains(Aggregate.MAX) ? new double[buckets.count] : null;
+            double[] sums = aggregates.contains(Aggregate.SUM) ? new double[buckets.count] : null;
+            double[] counts = aggregates.contains(Aggregate.COUNT) ? new double[buckets.count] : null;
+            double[] deviations = aggregates.contains(Aggregate.STDDEV) ? new double[buckets.count] : null;
+            double[] lasts = aggregates.contains(Aggregate.LAST) ? new double[buckets.count] : null;
+            for (int b = 0; b < buckets.count; b++) {
+                int from = buckets.starts[b];
+                int to = buckets.starts[b + 1];
+                summarize(reader, to - from, extremes, deviations != null, stats);
+                double sum = stats[0];
+                double min = stats[1];
+                double max = stats[2];
+                double m2 = stats[3];
+                int count = (int) stats[5];
+                if (means != null) {
+                    means[b] = sum / count;
+                }
+                if (minimums != null) {
+                    minimums[b] = count == 0 ? Double.NaN : min;
+                }
+                if (maximums != null) {
+                    maximums[b] = count == 0 ? Double.NaN : max;
+                }
+                if (sums != null) {
+                    sums[b] = sum;
+                }
+                if (counts != null) {
+                    counts[b] = count;
+                }
+                if (deviations != null) {
+                    deviations[b] = Math.sqrt(m2 / count);
+                }
+                if (lasts != null) {
+                    lasts[b] = stats[4];
+                }
             }
+            store(resampledData, Aggregate.MEAN, variable, means);
+            store(resampledData, Aggregate.MIN, variable, minimums);
+            store(resampledData, Aggregate.MAX, variable, maximums);
+            store(resampledData, Aggregate.SUM, variable, sums);
+            store(resampledData, Aggregate.COUNT, variable, counts);
+            store(resampledData, Aggregate.STDDEV, variable, deviations);
+            store(resampledData, Aggregate.LAST, variable, lasts);
+        }
 
-            String bucket = outputFormat.format(currentDate);
+        // crate a new DataContainer per aggregate with the resampled data
+        EnumMap<Aggregate, DataContainer> resampledContainers = new EnumMap<>(Aggregate.class);
+        for (Map.Entry<Aggregate, TreeMap<String, Column>> entry : resampledData.entrySet()) {
+            resampledContainers.put(entry.getKey(), new Builder()
+                    .rows(TimeIndex.of(buckets.times), 0, buckets.count)
+                    .columns(new ArrayList<>(columns.keySet()), entry.getValue())
+                    .build());
+        }
+        return resampledContainers;
+    }
 
-            // bucket changes, compute averages and reset
-            if (currentBucket != null && !bucket.equals(currentBucket)) {
-                resampledTimeStrings.add(currentBucket);
-                for (String variable : orderedVariableNames) {
-                    ArrayList<Double> values = tempData.get(variable);
-                    double average = values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    resampledData.get(variable).add(average);
+    /**
+     * Reads the next {@code count} values of a column and stores their sum, minimum, maximum, the sum of
+     * squared deviations from their mean (Welford's method), the last value and the number of values in
+     * {@code stats}. Missing values (NaN) are skipped; the last value is NaN if there are no values.
+     * The extremes and the deviations cost more than the sum and are only computed when asked for.
+     * This is kept out of {@link #resample} so that the JIT compiler inlines
+     * the reads of columns stored outside the heap, which it gives up on in a method that large.
+     */
+    private static void summarize(Column.Reader reader, int count, boolean extremes, boolean deviation,
+            double[] stats) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0.0;
+        double mean = 0.0;
+        double m2 = 0.0;
+        double last = Double.NaN;
+        int values = 0;
+        if (deviation) {
+            for (int i = 0; i < count; i++) {
+                double value = reader.next();
+                if (value == value) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                    values++;
+                    double delta = value - mean;
+                    mean += delta / values;
+                    m2 += delta * (value - mean);
+                    last = value;
+                }
+            }
+        } else if (extremes) {
+            for (int i = 0; i < count; i++) {
+                double value = reader.next();
+                if (value == value) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                    values++;
+                    last = value;
                 }
-                for (String variable : orderedVariableNames) {
-                    tempData.get(variable).clear();
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                double value = reader.next();
+                if (value == value) {
+                    sum += value;
+                    values++;
+                    last = value;
                 }
             }
+        }
+        stats[0] = sum;
+        stats[1] = min;
+        stats[2] = max;
+        stats[3] = m2;
+        stats[4] = last;
+        stats[5] = values;
+    }
+
+    /**
+     * Answers a resampling query from the rollup pyramid.
+     */
+    private EnumMap<Aggregate, DataContainer> resampleFromRollups(SamplingInterval samplingInterval,
+            Set<Aggregate> aggregates, LinkedHashMap<String, Column> columns) {
+        List<String> variables = new ArrayList<>(columns.keySet());
+        RollupPyramid.Result result = rollups.resample(times, offset, offset + numberOfSamples,
+                samplingInterval, aggregates, variables, columns);
+
+        EnumMap<Aggregate, DataContainer> resampledContainers = new EnumMap<>(Aggregate.class);
+        for (Map.Entry<Aggregate, HashMap<String, double[]>> entry : result.values.entrySet()) {
+            TreeMap<String, Column> resampledColumns = new TreeMap<>();
+            for (Map.Entry<String, double[]> column : entry.getValue().entrySet()) {
+                resampledColumns.put(column.getKey(), Column.of(column.getValue()));
+            }
+            resampledContainers.put(entry.getKey(), new Builder()
+                    .rows(TimeIndex.of(result.times), 0, result.count)
+                    .columns(variables, resampledColumns)
+                    .build());
+        }
+        return resampledContainers;
+    }
+
+    /**
+     * Creates an empty container with the given variables. Rows appended to it are stored in the
+     * given storage, or in direct buffers for {@link ColumnStorage#MAPPED}.
+     *
+     * @param variableNames the variable names, in column order
+     * @param storage       where to keep the value columns
+     * @return the empty container
+     */
+    static DataContainer empty(List<String> variableNames, ColumnStorage storage) {
+        TreeMap<String, Column> columns = new TreeMap<>();
+        for (String variable : variableNames) {
+            columns.put(variable, storage.allocate(0));
+        }
+        return new Builder()
+                .rows(TimeIndex.of(new long[0]), 0, 0)
+                .columns(variableNames, columns)
+                .quality(DataQuality.ofFile())
+                .build();
+    }
+
+    /**
+     * Returns a new version of this container with rows appended at the end.
+     * The rows must hold one column per variable read from the CSV file, in file order. The derived
+     * variables are carried over to the new version, where they are computed again when read.
+     * Rows older than the last row of the container are dropped so the time index stays sorted.
+     * <p>
+     * The columns are allocated with spare capacity and shared with the new version, which writes
+     * only past the end of this one, so this container is left unchanged. Only one version appended to a
+     * container writes past its end: the rows are claimed atomically, and any other version appended to the
+     * same container, concurrently or later, writes to copies of the columns. The rollups, if any, are
+     * extended with the new rows instead of being rebuilt, the same way.
+     *
+     * @param rows the decoded rows to append
+     * @return the new version of the container
+     */
+    DataContainer append(CsvParser.Columns rows) {
+        if (offset != 0) {
+            throw new IllegalStateException("Rows can only be appended to a container that is not filtered");
+        }
+        int variableCount = rows.values.length;
+        List<String> variables = orderedVariableNames.subList(0, variableCount);
+
+        long[] newTimes = times.array();
+        loadVariables(variables);
+        Column[] columns = new Column[variableCount];
+        for (int v = 0; v < variableCount; v++) {
+            columns[v] = rawColumn(variables.get(v));
+        }
+        long first = numberOfSamples == 0 ? Long.MIN_VALUE : times.get(numberOfSamples - 1);
+        long last = first;
+        int kept = 0;
+        for (int r = 0; r < rows.rows; r++) {
+            if (rows.times[r] >= last) {
+                last = rows.times[r];
+                kept++;
+            }
+        }
+        int required = numberOfSamples + kept;
+
+        // the rows past the end of this version are claimed atomically, so that only one of the versions appended
+        // to it writes them; if another one did, or the arrays are full or compressed, they are copied
+        AtomicInteger fence = appendedRows;
+        if (fence == null || newTimes == null || required > newTimes.length
+                || !fence.compareAndSet(numberOfSamples, required)) {
+            int capacity = Math.max(required, numberOfSamples + (numberOfSamples >> 1));
+            newTimes = times.toArray(capacity, numberOfSamples);
+            for (int v = 0; v < variableCount; v++) {
+                columns[v] = columns[v].copyOf(capacity);
+            }
+            fence = new AtomicInteger(required);
+        }
 
-            currentBucket = bucket;
-            for (String variable : orderedVariableNames) {
-                tempData.get(variable).add(data.get(variable).get(i));
+        int count = numberOfSamples;
+        last = first;
+        for (int r = 0; r < rows.rows; r++) {
+            if (rows.times[r] < last) {
+                continue;
+            }
+            last = rows.times[r];
+            newTimes[count] = last;
+            for (int v = 0; v < variableCount; v++) {
+                columns[v].set(count, rows.values[v][r]);
             }
+            count++;
+        }
+        if (kept < rows.rows) {
+            LOG.warning("Dropped " + (rows.rows - kept) + " appended rows older than the last row");
         }
 
-        // Last bucket
-        if (currentBucket != null) {
-            resampledTimeStrings.add(currentBucket);
-            for (String variable : orderedVariableNames) {
-                ArrayList<Double> values = tempData.get(variable);
-                double average = values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                resampledData.get(variable).add(average);
+        TreeMap<String, Column> appendedColumns = new TreeMap<>();
+        for (int v = 0; v < variableCount; v++) {
+            appendedColumns.put(variables.get(v), columns[v]);
+        }
+        DataContainer appended = new Builder()
+                .rows(TimeIndex.of(newTimes), 0, count)
+                .columns(variables, appendedColumns)
+                .appendedRows(fence)
+                .derived(derived.copyDefinitions())
+                .prefixSums(prefixSums.copy())
+                .extrema(extrema.copy())
+                .quality(quality.copy())
+                .build();
+        if (rollups != null && rollups.variableCount() == variableCount) {
+            Column[] checked = new Column[variableCount];
+            for (int v = 0; v < variableCount; v++) {
+                checked[v] = appended.column(variables.get(v));
             }
+            return new Builder(appended)
+                    .rollups(rollups.extend(appended.times, appended.orderedVariableNames, checked, numberOfSamples, count))
+                    .build();
+        } else if (rollups != null) {
+            return appended.withRollups();
         }
+        return appended;
+    }
 
-        // crate a new DataContainer with the resampled data
-        DataContainer resampledContainer = new DataContainer();
-        resampledContainer.timeStrings = resampledTimeStrings;
-        resampledContainer.data = resampledData;
-        resampledContainer.orderedVariableNames = orderedVariableNames;
-        resampledContainer.numberOfSamples = resampledTimeStrings.size();
-        return resampledContainer;
+    /**
+     * Returns this data with the hour, day, week and month rollups, with the sum, minimum, maximum and number
+     * of values of every variable per bucket. Resampling the returned container, or a container filtered from
+     * it, at a whole number of hours, days, weeks or months reads the rollups instead of every row.
+     * Only the variables whose column is loaded are rolled up; variables added or loaded afterwards are
+     * resampled from their rows. The new container shares the columns of this one, which is left unchanged.
+     *
+     * @return the container with rollups
+     */
+    public DataContainer withRollups() {
+        LinkedHashMap<String, Column> columns = loadedColumns();
+        return new Builder(this)
+                .rollups(RollupPyramid.build(times, offset + numberOfSamples, new ArrayList<>(columns.keySet()),
+                        columns.values().toArray(new Column[0])))
+                .build();
     }
 
     /**
-     * computes the sum of all electric power variables from the comptuers and stores the result
-     * in a new variable called "puissance_electrique_sum".
+     * Makes sure the columns of the given variables are loaded, reading the file once for all the missing ones,
+     * and computes the derived variables among them that were not computed yet.
+     * A container opened with all its columns (see {@link #open(String, Collection)}) has nothing to load.
+     *
+     * @param variables the names of the variables
+     * @return true if a column was loaded or computed
+     * @throws IllegalArgumentException if a variable does not exist
+     * @throws java.io.UncheckedIOException if the file cannot be read or changed since the container was opened
      */
-    public void computePuissanceElectriqueSum() {
-        String sumVariableName = "puissance_electrique_sum";
-        ArrayList<Double> sumValues = new ArrayList<>();
-    
-        for (int i = 0; i < numberOfSamples; i++) {
-            double sum = 0.0;
-            for (String variable : orderedVariableNames) {
-                if (variable.startsWith(" puissance_electrique")) {
-                    sum += data.get(variable).get(i);
+    public boolean loadVariables(Collection<String> variables) {
+        List<String> missing = new ArrayList<>();
+        List<String> derivedVariables = new ArrayList<>();
+        for (String variable : variables) {
+            Expression expression = derived.expression(variable);
+            if (expression != null) {
+                derivedVariables.add(variable);
+                for (String input : expression.variables()) {
+                    if (orderedVariableNames.contains(input) && !data.containsKey(input)) {
+                        missing.add(input);
+                    }
+                }
+            } else if (!orderedVariableNames.contains(variable)) {
+                throw new IllegalArgumentException("Unknown variable: " + variable);
+            } else if (!data.containsKey(variable)) {
+                missing.add(variable);
+            }
+        }
+        boolean loaded = loader != null && loader.load(missing);
+        for (String variable : derivedVariables) {
+            if (derived.computed(variable, offset + numberOfSamples) == null) {
+                derivedColumn(variable);
+                loaded = true;
+            }
+        }
+        return loaded;
+    }
+
+    private static void store(EnumMap<Aggregate, TreeMap<String, Column>> resampledData, Aggregate aggregate,
+            String variable, double[] values) {
+        if (values != null) {
+            resampledData.get(aggregate).put(variable, Column.of(values));
+        }
+    }
+
+    /**
+     * Estimates the heap memory used by the data of this container.
+     * Columns stored outside the heap and columns not loaded yet are not counted.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateMemoryBytes() {
+        long bytes = times.heapBytes();
+        for (Map.Entry<String, Column> entry : loadedColumns().entrySet()) {
+            bytes += 64L + 2L * entry.getKey().length() + entry.getValue().heapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * The rows of a container grouped by sampling interval.
+     * Bucket {@code b} starts at time {@code times[b]} and holds the rows {@code [starts[b], starts[b + 1])}
+     * of the underlying columns.
+     */
+    private static final class Buckets {
+        final long[] times;
+        final int[] starts;
+        final int count;
+
+        Buckets(long[] times, int[] starts, int count) {
+            this.times = times;
+            this.starts = starts;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Groups the rows of this container into buckets of the given interval. The bucket of a row is only
+     * computed when the row crosses the end of the current bucket, so the scan costs one comparison per row.
+     */
+    private Buckets bucketize(SamplingInterval samplingInterval) {
+        long[] bucketTimes = new long[16];
+        int[] bucketStarts = new int[17];
+        int count = 0;
+        long bucketEnd = Long.MIN_VALUE;
+
+        TimeIndex.Reader reader = times.reader(offset);
+        for (int i = offset; i < offset + numberOfSamples; i++) {
+            long time = reader.next();
+            // bucket changes, start a new one
+            if (time >= bucketEnd || count == 0) {
+                if (count == bucketTimes.length) {
+                    bucketTimes = Arrays.copyOf(bucketTimes, count * 2);
+                    bucketStarts = Arrays.copyOf(bucketStarts, count * 2 + 1);
                 }
+                long bucket = samplingInterval.bucketStart(time);
+                bucketTimes[count] = bucket;
+                bucketStarts[count] = i;
+                bucketEnd = samplingInterval.nextBucketStart(bucket);
+                count++;
             }
-            sumValues.add(sum);
         }
-    
-        // Add the new variable to the container
-        orderedVariableNames.add(sumVariableName);
-        data.put(sumVariableName, sumValues);
+        bucketStarts[count] = offset + numberOfSamples;
+        return new Buckets(Arrays.copyOf(bucketTimes, count), bucketStarts, count);
     }
 
     /**
-     * Private constructor for creating an empty DataContainer.
-     * This is used when creating filtered or resampled containers.
+     * Finds the first row of this container whose time is at or after the given time.
+     *
+     * @param time the time to search for, as epoch seconds
+     * @return the index of the row in the underlying columns
+     */
+    private int lowerBound(long time) {
+        return times.lowerBound(offset, offset + numberOfSamples, time);
+    }
+
+    /**
+     * Finds the first row of this container whose time is after the given time.
+     *
+     * @param time the time to search for, as epoch seconds
+     * @return the index of the row in the underlying columns
+     */
+    private int upperBound(long time) {
+        return time == Long.MAX_VALUE ? offset + numberOfSamples : lowerBound(time + 1);
+    }
+
+    /**
+     * Looks up the column of a variable, as seen by the aggregations: the samples of a variable of the file
+     * flagged by the quality checks read as NaN. A derived variable is computed from these columns.
+     *
+     * @param variableName the name of the variable
+     * @return the column holding the values of the variable
+     * @throws IllegalArgumentException if the variable does not exist
+     */
+    private Column column(String variableName) {
+        Column column = rawColumn(variableName);
+        if (column != null) {
+            return quality.checked(variableName, column, times, offset + numberOfSamples);
+        }
+        if (derived.expression(variableName) != null) {
+            column = derivedColumn(variableName);
+        }
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown variable: " + variableName);
+        }
+        return column;
+    }
+
+    /**
+     * Looks up the column of a variable as returned by the accessors of the values: a variable of the file as read
+     * from the file, flagged samples included, and a derived variable as computed from the columns seen by the
+     * aggregations.
+     *
+     * @param variableName the name of the variable
+     * @return the column holding the values of the variable
+     * @throws IllegalArgumentException if the variable does not exist
+     */
+    private Column valuesColumn(String variableName) {
+        Column column = rawColumn(variableName);
+        return column != null ? column : column(variableName);
+    }
+
+    /**
+     * Gets the key of the sums and indexes of a variable, which are shared with the other versions of the data.
+     * A derived variable is keyed by its expression too, so that the containers defining the same name by
+     * different expressions from the same data never read each other's sums.
+     *
+     * @param variableName the name of the variable
+     * @return the name of a variable of the file, or the name and expression of a derived variable
+     */
+    private String cacheKey(String variableName) {
+        String text = derived.text(variableName);
+        return text == null ? variableName : variableName + '\n' + text;
+    }
+
+    /**
+     * Looks up the column of a variable of the file as read from the file, loading it if needed.
+     *
+     * @param variableName the name of the variable
+     * @return the column, or null if the file has no such variable
      */
-    private DataContainer() {
+    private Column rawColumn(String variableName) {
+        Column column = data.get(variableName);
+        if (column == null && loader != null && orderedVariableNames.contains(variableName)) {
+            column = loader.loaded(variableName);
+            if (column == null) {
+                loader.load(Collections.singletonList(variableName));
+                column = loader.loaded(variableName);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Computes a derived variable up to the last row of this container, or returns it if that was done already.
+     * The file columns it needs are loaded first in a single pass.
+     */
+    private Column derivedColumn(String variableName) {
+        int rows = offset + numberOfSamples;
+        Column column = derived.computed(variableName, rows);
+        if (column != null) {
+            return column;
+        }
+        List<String> inputs = new ArrayList<>();
+        for (String input : derived.expression(variableName).variables()) {
+            if (orderedVariableNames.contains(input)) {
+                inputs.add(input);
+            }
+        }
+        loadVariables(inputs);
+        return derived.compute(variableName, rows, this::column);
+    }
+
+    /**
+     * Gets the columns that are loaded, read through their quality checks, and the derived variables that are
+     * computed, without loading or computing the others.
+     *
+     * @return the columns by variable name, in variable order followed by the derived variables
+     */
+    private LinkedHashMap<String, Column> loadedColumns() {
+        LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+        for (String variable : orderedVariableNames) {
+            Column column = data.get(variable);
+            if (column == null && loader != null) {
+                column = loader.loaded(variable);
+            }
+            if (column != null) {
+                columns.put(variable, quality.checked(variable, column, times, offset + numberOfSamples));
+            }
+        }
+        for (String variable : derived.names()) {
+            Column column = derived.computed(variable, offset + numberOfSamples);
+            if (column != null) {
+                columns.put(variable, column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Creates a container from a builder. Every container is created this way, so that its fields are final
+     * and the list and map it holds cannot be modified.
+     */
+    private DataContainer(Builder builder) {
+        times = builder.times;
+        orderedVariableNames = builder.variableNames;
+        data = builder.data;
+        offset = builder.offset;
+        numberOfSamples = builder.numberOfSamples;
+        rollups = builder.rollups;
+        appendedRows = builder.appendedRows;
+        loader = builder.loader;
+        derived = builder.derived;
+        prefixSums = builder.prefixSums;
+        extrema = builder.extrema;
+        quality = builder.quality;
+    }
+
+    /**
+     * Assembles the parts of a container: the rows of the time index it covers, the columns of its variables
+     * and the structures it shares with the containers derived from the same data, such as its filtered views.
+     * A builder started from a container shares all of these; a new builder shares nothing, and its columns are
+     * not checked as sensor readings unless the checks of a file are set.
+     */
+    private static final class Builder {
+        private TimeIndex times;
+        private List<String> variableNames;
+        private Map<String, Column> data;
+        private int offset;
+        private int numberOfSamples;
+        private RollupPyramid rollups;
+        private AtomicInteger appendedRows;
+        private ColumnLoader loader;
+        private DerivedColumns derived = new DerivedColumns();
+        private PrefixSums prefixSums = new PrefixSums();
+        private RangeExtrema extrema = new RangeExtrema();
+        private DataQuality quality = DataQuality.none();
+
+        Builder() {
+        }
+
+        Builder(DataContainer container) {
+            times = container.times;
+            variableNames = container.orderedVariableNames;
+            data = container.data;
+            offset = container.offset;
+            numberOfSamples = container.numberOfSamples;
+            rollups = container.rollups;
+            appendedRows = container.appendedRows;
+            loader = container.loader;
+            derived = container.derived;
+            prefixSums = container.prefixSums;
+            extrema = container.extrema;
+            quality = container.quality;
+        }
+
+        Builder rows(TimeIndex times, int offset, int numberOfSamples) {
+            this.times = times;
+            this.offset = offset;
+            this.numberOfSamples = numberOfSamples;
+            return this;
+        }
+
+        /**
+         * Sets the variables, in column order, and their columns, which are copied into maps that cannot be
+         * modified. A variable without a column is loaded when read.
+         */
+        Builder columns(List<String> variableNames, Map<String, Column> data) {
+            this.variableNames = Collections.unmodifiableList(new ArrayList<>(variableNames));
+            this.data = Collections.unmodifiableMap(new TreeMap<>(data));
+            return this;
+        }
+
+        Builder rollups(RollupPyramid rollups) {
+            this.rollups = rollups;
+            return this;
+        }
+
+        Builder appendedRows(AtomicInteger appendedRows) {
+            this.appendedRows = appendedRows;
+            return this;
+        }
+
+        Builder loader(ColumnLoader loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        Builder derived(DerivedColumns derived) {
+            this.derived = derived;
+            return this;
+        }
+
+        Builder prefixSums(PrefixSums prefixSums) {
+            this.prefixSums = prefixSums;
+            return this;
+        }
+
+        Builder extrema(RangeExtrema extrema) {
+            this.extrema = extrema;
+            return this;
+        }
+
+        Builder quality(DataQuality quality) {
+            this.quality = quality;
+            return this;
+        }
+
+        DataContainer build() {
+            return new DataContainer(this);
+        }
     }
 }
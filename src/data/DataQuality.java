@@ -0,0 +1,122 @@
+package data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The quality checks of the columns of a dataset and their results. The samples of a column are checked the first
+ * time it is read, in one pass, and the column is then read through its {@link ValidityMask}. The masks are kept
+ * for the dataset and the containers filtered from it, which share this object, and extended for the versions of
+ * the dataset with appended rows. Every column gets a mask, which records its missing values even if the variable
+ * has no other check.
+ * <p>
+ * The checks by variable name describe the readings of the sensors, so only the columns read from a file are
+ * checked (see {@link #ofFile()}). The columns computed from them, such as the sums and counts of resampled
+ * buckets, are not (see {@link #none()}): a daily count of 24 is not a stuck sensor and a daily sum of
+ * temperatures is not out of range.
+ */
+final class DataQuality {
+
+    private final Function<String, QualityRules> choice;
+    private final ConcurrentHashMap<String, QualityRules> rules = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private DataQuality(Function<String, QualityRules> choice) {
+        this.choice = choice;
+    }
+
+    /**
+     * Creates the checks of the columns of a file, chosen by {@link QualityRules#forVariable(String)}.
+     *
+     * @return the checks, with no column checked yet
+     */
+    static DataQuality ofFile() {
+        return new DataQuality(QualityRules::forVariable);
+    }
+
+    /**
+     * Creates the checks of computed columns, which only record the missing values.
+     *
+     * @return the checks, with no column checked yet
+     */
+    static DataQuality none() {
+        return new DataQuality(variable -> QualityRules.NONE);
+    }
+
+    /**
+     * The mask of a column and the view of the column through it.
+     */
+    private static final class Entry {
+        final Column column;
+        final ValidityMask mask;
+        final Column checked;
+
+        Entry(Column column, ValidityMask mask) {
+            this.column = column;
+            this.mask = mask;
+            // missing values already read as NaN, so the view is only needed for the other flags
+            this.checked = mask.flaggedCount() == mask.missingCount() ? column : mask.apply(column);
+        }
+    }
+
+    /**
+     * Gets the checks of a variable.
+     *
+     * @param variable the name of the variable
+     * @return the checks chosen by {@link QualityRules#forVariable(String)} for a file, or no check
+     */
+    QualityRules rules(String variable) {
+        return rules.computeIfAbsent(variable, choice);
+    }
+
+    /**
+     * Gets a column of a variable of the file as seen by the aggregations, checking its rows if needed.
+     * The same column object is returned as long as the rows do not change, so that the rollups built from it
+     * recognize it.
+     *
+     * @param variable the name of the variable
+     * @param column   the column as read from the file
+     * @param times    the time index
+     * @param rows     the number of rows that must be checked
+     * @return the column itself if none of its values is flagged, or a view reading them as NaN
+     */
+    Column checked(String variable, Column column, TimeIndex times, int rows) {
+        Entry entry = entries.get(variable);
+        if (entry != null && entry.column == column && entry.mask.rows() >= rows) {
+            return entry.checked;
+        }
+        QualityRules checks = rules(variable);
+        synchronized (this) {
+            entry = entries.get(variable);
+            if (entry == null || entry.column != column || entry.mask.rows() < rows) {
+                ValidityMask mask = entry == null ? ValidityMask.EMPTY : entry.mask;
+                entry = new Entry(column, mask.extend(checks, column, times, rows));
+                entries.put(variable, entry);
+            }
+            return entry.checked;
+        }
+    }
+
+    /**
+     * Gets the mask of a variable computed so far.
+     *
+     * @param variable the name of the variable
+     * @return the mask, or null if the variable was not read
+     */
+    ValidityMask mask(String variable) {
+        Entry entry = entries.get(variable);
+        return entry == null ? null : entry.mask;
+    }
+
+    /**
+     * Copies the masks computed so far for a new version of the dataset whose first rows are unchanged.
+     *
+     * @return the copy, sharing the masks of this one
+     */
+    DataQuality copy() {
+        DataQuality copy = new DataQuality(choice);
+        copy.rules.putAll(rules);
+        copy.entries.putAll(entries);
+        return copy;
+    }
+}
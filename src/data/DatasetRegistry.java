@@ -0,0 +1,320 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide cache of loaded datasets, keyed by the canonical path of their CSV file.
+ * An entry is reloaded when the modification time or size of the file changes. The total size of
+ * the cached datasets is kept under a memory budget by evicting the least recently used ones.
+ * The registry is thread-safe and a file requested by several threads at once is only loaded once.
+ * <p>
+ * A file being appended to can be followed instead (see {@link #follow(String)}): its data is then kept up to
+ * date by a {@link TailFollower} until the last listener of the follower is removed. The data of the followed
+ * files counts in the memory budget, but is never evicted while followed.
+ */
+public final class DatasetRegistry {
+
+    /** System property holding the memory budget of the shared registry, in bytes. */
+    public static final String MAX_BYTES_PROPERTY = "greener.cache.maxBytes";
+
+    private static final Logger LOG = Logger.getLogger(DatasetRegistry.class.getName());
+
+    private static final DatasetRegistry SHARED = new DatasetRegistry(defaultMaxBytes());
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, TailFollower> followers = new HashMap<>();
+    private long maxBytes;
+    private long usedBytes;
+
+    private static final class Entry {
+        final long lastModified;
+        final long length;
+        final FutureTask<DataContainer> loader;
+        long bytes;
+
+        Entry(long lastModified, long length, FutureTask<DataContainer> loader) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Creates a registry with the given memory budget.
+     *
+     * @param maxBytes the maximum estimated size of the cached datasets, in bytes
+     */
+    public DatasetRegistry(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Gets the registry shared by the whole application. Its memory budget is read from the
+     * {@value #MAX_BYTES_PROPERTY} system property and defaults to a quarter of the maximum heap size.
+     *
+     * @return the shared registry
+     */
+    public static DatasetRegistry getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the dataset of a CSV file, loading it with {@link DataContainer#open(String)} if it is not
+     * cached or if the file changed since it was loaded. If the file is followed (see {@link #follow(String)}),
+     * the latest version read by its follower is returned instead: the follower checks the file for changes
+     * itself.
+     *
+     * @param csvFileName the name of the CSV file
+     * @return the dataset of the file
+     * @throws IOException if the file cannot be read
+     */
+    public DataContainer get(String csvFileName) throws IOException {
+        return get(csvFileName, null);
+    }
+
+    /**
+     * Gets the dataset of a CSV file with at least the columns of the given variables loaded, as
+     * {@link #get(String)} does. A dataset that is not cached is opened with only these columns
+     * (see {@link DataContainer#open(String, Collection)}); a cached one loads the columns it lacks,
+     * and its size is updated in the memory budget.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param variables   the variables whose columns are needed, or null for all of them
+     * @return the dataset of the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a variable is not in the file
+     */
+    public DataContainer get(String csvFileName, Collection<String> variables) throws IOException {
+        File file = new File(csvFileName);
+        String key = file.getCanonicalPath();
+        synchronized (this) {
+            TailFollower follower = followers.get(key);
+            if (follower != null) {
+                return follower.getCurrent();
+            }
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.lastModified != lastModified || entry.length != length) {
+                if (entry != null) {
+                    remove(key);
+                }
+                entry = new Entry(lastModified, length, new FutureTask<>(() -> DataContainer.open(csvFileName, variables)));
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+
+        if (load) {
+            entry.loader.run();
+        }
+        DataContainer container;
+        try {
+            container = entry.loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + csvFileName, e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        boolean loaded = false;
+        if (variables != null) {
+            try {
+                loaded = container.loadVariables(variables);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        if (load || loaded) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    usedBytes -= entry.bytes;
+                    entry.bytes = container.estimateMemoryBytes();
+                    usedBytes += entry.bytes;
+                    evict(key);
+                }
+            }
+        }
+        return container;
+    }
+
+    /**
+     * Starts following a CSV file that is being appended to, or returns the follower that already does.
+     * From then on, {@link #get(String)} returns the latest data read by the follower. The file is followed
+     * until the last listener added to the follower is removed, such as when the last live window showing it
+     * is closed, or until {@link #unfollow(String)} is called.
+     * <p>
+     * The file is read without locking the registry, so the other datasets stay available meanwhile; if
+     * several threads start following the same file at once, one follower is kept and the others are closed.
+     *
+     * @param csvFileName the name of the CSV file
+     * @return the follower of the file
+     * @throws IOException if the file cannot be read
+     */
+    public TailFollower follow(String csvFileName) throws IOException {
+        String key = new File(csvFileName).getCanonicalPath();
+        synchronized (this) {
+            TailFollower follower = followers.get(key);
+            if (follower != null) {
+                return follower;
+            }
+        }
+        TailFollower created = new TailFollower(csvFileName, TailFollower.DEFAULT_POLL_MILLIS);
+        TailFollower follower;
+        synchronized (this) {
+            follower = followers.putIfAbsent(key, created);
+            if (follower == null) {
+                created.onIdle(() -> stopIfIdle(key, created));
+                remove(key);
+                evict(null);
+                return created;
+            }
+        }
+        created.close();
+        return follower;
+    }
+
+    /**
+     * Stops following a file whose follower lost its last listener, unless a listener was added meanwhile.
+     */
+    private synchronized void stopIfIdle(String key, TailFollower follower) {
+        if (followers.get(key) == follower && !follower.hasListeners()) {
+            followers.remove(key);
+            follower.close();
+        }
+    }
+
+    /**
+     * Stops following a CSV file. The next call to {@link #get(String)} loads it again.
+     *
+     * @param csvFileName the name of the CSV file
+     * @throws IOException if the canonical path of the file cannot be determined
+     */
+    public synchronized void unfollow(String csvFileName) throws IOException {
+        TailFollower follower = followers.remove(new File(csvFileName).getCanonicalPath());
+        if (follower != null) {
+            follower.close();
+        }
+    }
+
+    /**
+     * Removes the dataset of a CSV file from the cache.
+     *
+     * @param csvFileName the name of the CSV file
+     * @throws IOException if the canonical path of the file cannot be determined
+     */
+    public synchronized void invalidate(String csvFileName) throws IOException {
+        remove(new File(csvFileName).getCanonicalPath());
+    }
+
+    /**
+     * Removes all datasets from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Gets the memory budget of the cache.
+     *
+     * @return the maximum estimated size of the cached datasets, in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the memory budget of the cache, evicting datasets if it is now exceeded.
+     *
+     * @param maxBytes the maximum estimated size of the cached datasets, in bytes
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The memory budget cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    /**
+     * Gets the estimated size of the cached datasets, including the latest data of the followed files.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes + followedBytes();
+    }
+
+    private long followedBytes() {
+        long bytes = 0;
+        for (TailFollower follower : followers.values()) {
+            bytes += follower.getCurrent().estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Evicts the least recently used datasets until the budget is respected. The dataset that was
+     * just loaded is kept even if it alone exceeds the budget, since its caller is about to use it.
+     * The followed files are counted at the size of their latest version but cannot be evicted.
+     */
+    private void evict(String keep) {
+        long budget = maxBytes - followedBytes();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budget && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (next.getKey().equals(keep) || !next.getValue().loader.isDone()) {
+                continue;
+            }
+            usedBytes -= next.getValue().bytes;
+            iterator.remove();
+        }
+    }
+
+    private static long defaultMaxBytes() {
+        String property = System.getProperty(MAX_BYTES_PROPERTY);
+        if (property != null) {
+            try {
+                return Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOG.warning("Ignoring invalid " + MAX_BYTES_PROPERTY + ": " + property);
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+}
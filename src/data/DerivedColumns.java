@@ -0,0 +1,119 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The derived variables of a dataset: the expressions defining them and the columns computed from these.
+ * The definitions never change: defining a variable gives another instance (see {@link #with}).
+ * A column is computed the first time it is read and kept for the dataset and the containers filtered from it,
+ * which share this object. It covers the rows up to the end of the container that read it, and is computed
+ * again if a container reaching further reads it.
+ */
+final class DerivedColumns {
+
+    private final LinkedHashMap<String, String> texts = new LinkedHashMap<>();
+    private final HashMap<String, Expression> expressions = new HashMap<>();
+    private final HashMap<String, Column> columns = new HashMap<>();
+    private final HashMap<String, DerivedColumns> variants = new HashMap<>();
+
+    /**
+     * Gets the derived variables of this instance plus another one. The instance returned for a definition is
+     * kept, so that the containers defining the same variable again share the columns computed for it.
+     *
+     * @param name       the name of the variable
+     * @param text       the expression, as written
+     * @param expression the compiled expression
+     * @return this instance if the variable is already defined by the same expression, or the new instance
+     * @throws IllegalArgumentException if the variable is already defined by another expression
+     */
+    synchronized DerivedColumns with(String name, String text, Expression expression) {
+        String existing = texts.get(name);
+        if (existing != null) {
+            if (!existing.equals(text)) {
+                throw new IllegalArgumentException("The variable " + name + " is already defined as " + existing);
+            }
+            return this;
+        }
+        return variants.computeIfAbsent(name + '=' + text, key -> {
+            DerivedColumns variant = copyDefinitions();
+            variant.columns.putAll(columns);
+            variant.texts.put(name, text);
+            variant.expressions.put(name, expression);
+            return variant;
+        });
+    }
+
+    /**
+     * Gets the expression of a derived variable, as written.
+     *
+     * @param name the name of the variable
+     * @return the expression, or null if the variable is not derived
+     */
+    synchronized String text(String name) {
+        return texts.get(name);
+    }
+
+    /**
+     * Gets the compiled expression of a derived variable.
+     *
+     * @param name the name of the variable
+     * @return the expression, or null if the variable is not derived
+     */
+    synchronized Expression expression(String name) {
+        return expressions.get(name);
+    }
+
+    /**
+     * Gets the names of the derived variables, in order of definition.
+     *
+     * @return the names
+     */
+    synchronized List<String> names() {
+        return new ArrayList<>(texts.keySet());
+    }
+
+    /**
+     * Gets the column of a derived variable if it was already computed for enough rows.
+     *
+     * @param name the name of the variable
+     * @param rows the number of rows needed
+     * @return the column, or null if it must be computed
+     */
+    synchronized Column computed(String name, int rows) {
+        Column column = columns.get(name);
+        return column != null && column.capacity() >= rows ? column : null;
+    }
+
+    /**
+     * Gets the column of a derived variable, computing it if needed.
+     *
+     * @param name   the name of the variable
+     * @param rows   the number of rows needed
+     * @param inputs supplies the columns of the variables the expression refers to
+     * @return the column, holding at least the given number of rows
+     */
+    synchronized Column compute(String name, int rows, Function<String, Column> inputs) {
+        Column column = computed(name, rows);
+        if (column == null) {
+            column = Column.of(expressions.get(name).evaluate(inputs, rows));
+            columns.put(name, column);
+        }
+        return column;
+    }
+
+    /**
+     * Copies the definitions, without the computed columns, for a new version of the dataset.
+     *
+     * @return the copy
+     */
+    synchronized DerivedColumns copyDefinitions() {
+        DerivedColumns copy = new DerivedColumns();
+        copy.texts.putAll(texts);
+        copy.expressions.putAll(expressions);
+        return copy;
+    }
+}
@@ -0,0 +1,449 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A compiled expression computing a derived variable from the columns of a dataset, such as
+ * {@code sum(prefix:" puissance_electrique")}, {@code Green_Er_Consumption_kW - Green_Er_Production_kW}
+ * or {@code scale(Green_Er_Consumption_kW, 0.001)}.
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := factor (('*' | '/') factor)*
+ * factor     := '-' factor | number | variable | function | '(' expression ')'
+ * variable   := identifier | '"' name '"'
+ * function   := 'sum' '(' expression (',' expression)* ')'
+ *             | 'sum' '(' 'prefix' ':' '"' text '"' ')'
+ *             | 'scale' '(' expression ',' number ')'
+ * </pre>
+ * An identifier is made of letters, digits, '_' and '.', and also matches a variable whose name only differs
+ * by surrounding spaces; any other name is written between double quotes. {@code sum(prefix:"...")} adds
+ * all the variables whose name starts with the given text, in file order.
+ * <p>
+ * A missing value (NaN), such as a sample flagged by the quality checks, makes the result of the arithmetic
+ * operators missing. {@code sum(...)} instead adds the operands that are not missing, and is missing only when
+ * all of them are: a sum over many meters stays defined when some of them have no reading.
+ * <p>
+ * An expression is evaluated over whole columns: every node fills an array of doubles in a single loop over
+ * the rows, after copying its operands to arrays in bulk, so the loops hold no calls or map lookups and are
+ * vectorized by the JIT compiler.
+ */
+abstract class Expression {
+
+    /**
+     * Compiles an expression.
+     *
+     * @param text          the expression
+     * @param variableNames the variables the expression may refer to
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression is invalid or refers to an unknown variable
+     */
+    static Expression parse(String text, List<String> variableNames) {
+        Parser parser = new Parser(text, variableNames);
+        Expression expression = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return expression;
+    }
+
+    /**
+     * Computes the expression for the first rows of the columns.
+     *
+     * @param columns supplies the column of every variable the expression refers to
+     * @param rows    the number of rows to compute
+     * @return the values, one per row
+     */
+    double[] evaluate(Function<String, Column> columns, int rows) {
+        double[] values = new double[rows];
+        evaluate(columns, rows, values);
+        return values;
+    }
+
+    /**
+     * Gets the variables the expression refers to.
+     *
+     * @return the names of the variables, in order of appearance
+     */
+    Set<String> variables() {
+        Set<String> variables = new LinkedHashSet<>();
+        addVariables(variables);
+        return variables;
+    }
+
+    abstract void evaluate(Function<String, Column> columns, int rows, double[] into);
+
+    abstract void addVariables(Set<String> variables);
+
+    private static final class Variable extends Expression {
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        void evaluate(Function<String, Column> columns, int rows, double[] into) {
+            columns.apply(name).copyTo(0, into, 0, rows);
+        }
+
+        @Override
+        void addVariables(Set<String> variables) {
+            variables.add(name);
+        }
+    }
+
+    private static final class Constant extends Expression {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void evaluate(Function<String, Column> columns, int rows, double[] into) {
+            Arrays.fill(into, 0, rows, value);
+        }
+
+        @Override
+        void addVariables(Set<String> variables) {
+        }
+    }
+
+    private static final class Negation extends Expression {
+        private final Expression operand;
+
+        Negation(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        void evaluate(Function<String, Column> columns, int rows, double[] into) {
+            operand.evaluate(columns, rows, into);
+            for (int i = 0; i < rows; i++) {
+                into[i] = -into[i];
+            }
+        }
+
+        @Override
+        void addVariables(Set<String> variables) {
+            operand.addVariables(variables);
+        }
+    }
+
+    /**
+     * An arithmetic operation. A constant right operand is applied as a scalar instead of being expanded to a column.
+     */
+    private static final class Binary extends Expression {
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluate(Function<String, Column> columns, int rows, double[] into) {
+            left.evaluate(columns, rows, into);
+            if (right instanceof Constant) {
+                double operand = ((Constant) right).value;
+                switch (operator) {
+                    case '+':
+                        for (int i = 0; i < rows; i++) {
+                            into[i] += operand;
+                        }
+                        break;
+                    case '-':
+                        for (int i = 0; i < rows; i++) {
+                            into[i] -= operand;
+                        }
+                        break;
+                    case '*':
+                        for (int i = 0; i < rows; i++) {
+                            into[i] *= operand;
+                        }
+                        break;
+                    default:
+                        for (int i = 0; i < rows; i++) {
+                            into[i] /= operand;
+                        }
+                        break;
+                }
+                return;
+            }
+            double[] operand = right.evaluate(columns, rows);
+            switch (operator) {
+                case '+':
+                    for (int i = 0; i < rows; i++) {
+                        into[i] += operand[i];
+                    }
+                    break;
+                case '-':
+                    for (int i = 0; i < rows; i++) {
+                        into[i] -= operand[i];
+                    }
+                    break;
+                case '*':
+                    for (int i = 0; i < rows; i++) {
+                        into[i] *= operand[i];
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < rows; i++) {
+                        into[i] /= operand[i];
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        void addVariables(Set<String> variables) {
+            left.addVariables(variables);
+            right.addVariables(variables);
+        }
+    }
+
+    /**
+     * The sum of several operands, added one at a time through a single scratch array.
+     */
+    private static final class Sum extends Expression {
+        private final List<Expression> operands;
+
+        Sum(List<Expression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        void evaluate(Function<String, Column> columns, int rows, double[] into) {
+            operands.get(0).evaluate(columns, rows, into);
+            double[] operand = operands.size() > 1 ? new double[rows] : null;
+            for (int k = 1; k < operands.size(); k++) {
+                operands.get(k).evaluate(columns, rows, operand);
+                for (int i = 0; i < rows; i++) {
+                    double total = into[i];
+                    double value = operand[i];
+                    // a missing operand is skipped; the sum is missing only if all of them are
+                    into[i] = total != total ? value : value != value ? total : total + value;
+                }
+            }
+        }
+
+        @Override
+        void addVariables(Set<String> variables) {
+            for (Expression operand : operands) {
+                operand.addVariables(variables);
+            }
+        }
+    }
+
+    /**
+     * A recursive descent parser following the grammar of {@link Expression}.
+     */
+    private static final class Parser {
+        private final String text;
+        private final List<String> variableNames;
+        private int position;
+
+        Parser(String text, List<String> variableNames) {
+            this.text = text;
+            this.variableNames = variableNames;
+        }
+
+        Expression expression() {
+            Expression expression = term();
+            for (char c = peek(); c == '+' || c == '-'; c = peek()) {
+                position++;
+                expression = new Binary(c, expression, term());
+            }
+            return expression;
+        }
+
+        private Expression term() {
+            Expression expression = factor();
+            for (char c = peek(); c == '*' || c == '/'; c = peek()) {
+                position++;
+                expression = new Binary(c, expression, factor());
+            }
+            return expression;
+        }
+
+        private Expression factor() {
+            char c = peek();
+            if (c == '-') {
+                position++;
+                Expression operand = factor();
+                return operand instanceof Constant ? new Constant(-((Constant) operand).value) : new Negation(operand);
+            }
+            if (c == '(') {
+                position++;
+                Expression expression = expression();
+                expect(')');
+                return expression;
+            }
+            if (c == '"') {
+                return new Variable(variable(quoted()));
+            }
+            if (c >= '0' && c <= '9' || c == '.') {
+                return new Constant(number());
+            }
+            String identifier = identifier();
+            if (peek() == '(') {
+                position++;
+                return function(identifier);
+            }
+            return new Variable(variable(identifier));
+        }
+
+        private Expression function(String name) {
+            switch (name) {
+                case "sum": {
+                    List<Expression> operands = new ArrayList<>();
+                    int start = position;
+                    if (identifierOrEmpty().equals("prefix") && peek() == ':') {
+                        position++;
+                        String prefix = quoted();
+                        for (String variable : variableNames) {
+                            if (variable.startsWith(prefix)) {
+                                operands.add(new Variable(variable));
+                            }
+                        }
+                        if (operands.isEmpty()) {
+                            throw error("No variable starts with \"" + prefix + "\"");
+                        }
+                    } else {
+                        position = start;
+                        operands.add(expression());
+                        while (peek() == ',') {
+                            position++;
+                            operands.add(expression());
+                        }
+                    }
+                    expect(')');
+                    return new Sum(operands);
+                }
+                case "scale": {
+                    Expression operand = expression();
+                    expect(',');
+                    int start = position;
+                    Expression factor = factor();
+                    if (!(factor instanceof Constant)) {
+                        position = start;
+                        throw error("The factor of scale must be a number");
+                    }
+                    expect(')');
+                    return new Binary('*', operand, factor);
+                }
+                default:
+                    throw error("Unknown function: " + name);
+            }
+        }
+
+        /**
+         * Finds the variable of a name, ignoring the spaces around variable names if there is no exact match.
+         */
+        private String variable(String name) {
+            if (variableNames.contains(name)) {
+                return name;
+            }
+            String match = null;
+            for (String variable : variableNames) {
+                if (variable.trim().equals(name.trim())) {
+                    if (match != null) {
+                        throw error("Ambiguous variable: " + name);
+                    }
+                    match = variable;
+                }
+            }
+            if (match == null) {
+                throw error("Unknown variable: " + name);
+            }
+            return match;
+        }
+
+        private String identifier() {
+            String identifier = identifierOrEmpty();
+            if (identifier.isEmpty()) {
+                throw position < text.length() ? error("Unexpected '" + text.charAt(position) + "'")
+                        : error("Unexpected end of expression");
+            }
+            return identifier;
+        }
+
+        private String identifierOrEmpty() {
+            skipSpaces();
+            int start = position;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+                    break;
+                }
+                position++;
+            }
+            return text.substring(start, position);
+        }
+
+        private String quoted() {
+            expect('"');
+            int end = text.indexOf('"', position);
+            if (end < 0) {
+                throw error("Unterminated name");
+            }
+            String name = text.substring(position, end);
+            position = end + 1;
+            return name;
+        }
+
+        private double number() {
+            skipSpaces();
+            int start = position;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                boolean sign = (c == '+' || c == '-') && position > start
+                        && (text.charAt(position - 1) == 'e' || text.charAt(position - 1) == 'E');
+                if (!(c >= '0' && c <= '9') && c != '.' && c != 'e' && c != 'E' && !sign) {
+                    break;
+                }
+                position++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Invalid number");
+            }
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        /**
+         * Skips spaces and returns the next character, or 0 at the end of the text.
+         */
+        private char peek() {
+            skipSpaces();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of expression: " + text);
+        }
+    }
+}
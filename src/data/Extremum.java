@@ -0,0 +1,48 @@
+package data;
+
+/**
+ * The smallest or largest value of a variable over a time range, and the time of the sample holding it
+ * (see {@link DataContainer#max(String, long, long)}).
+ */
+public final class Extremum {
+
+    private final long time;
+    private final double value;
+
+    Extremum(long time, double value) {
+        this.time = time;
+        this.value = value;
+    }
+
+    /**
+     * Gets the time of the sample holding the value.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the time of the sample holding the value, formatted like the time strings of a container.
+     *
+     * @return the time in the format "yyyy-MM-dd HH:mm:ss+00:00"
+     */
+    public String getTimeString() {
+        return Timestamps.format(time);
+    }
+
+    /**
+     * Gets the value.
+     *
+     * @return the value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return value + " at " + getTimeString();
+    }
+}
@@ -0,0 +1,31 @@
+package data;
+
+/**
+ * How a resampled series fills the buckets that hold no value: the buckets of missing timestamps, such as an
+ * outage of the logger, and the buckets whose samples are all missing or flagged by the quality checks
+ * (see {@link DataContainer#resampleData(SamplingInterval, java.util.Set, java.util.Collection, GapFill)}).
+ */
+public enum GapFill {
+    /** The buckets are kept empty: their value is NaN and a plot shows a break. */
+    EMPTY("Leave Empty"),
+    /** The buckets take the value of the last bucket before them that holds one. */
+    FORWARD("Forward Fill"),
+    /** The buckets take values on the straight line between the buckets around them that hold one. */
+    LINEAR("Linear Interpolation");
+
+    private final String label;
+
+    GapFill(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the fill as shown to the user.
+     *
+     * @return the label
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,58 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures how CSV ingestion scales with the number of threads.
+ * Usage: {@code java data.IngestBenchmark <csv file> [max threads] [repetitions]}.
+ * The file is read once per thread count from 1 up to the maximum (doubling each time), after a warm-up,
+ * and the best time, throughput and speedup relative to the single-threaded parse are printed.
+ */
+public class IngestBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the CSV file, optionally followed by the maximum number of threads and the number of repetitions
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java data.IngestBenchmark <csv file> [max threads] [repetitions]");
+            return;
+        }
+        String csvFileName = args[0];
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        double megabytes = new File(csvFileName).length() / (1024.0 * 1024.0);
+
+        for (int i = 0; i < 3; i++) {
+            new DataContainer(csvFileName, maxThreads);
+        }
+
+        System.out.printf("%s: %.1f MB%n", csvFileName, megabytes);
+        System.out.printf("%8s %12s %10s %8s %12s%n", "threads", "best (ms)", "MB/s", "speedup", "efficiency");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2) {
+            long best = Long.MAX_VALUE;
+            int rows = 0;
+            for (int r = 0; r < repetitions; r++) {
+                long start = System.nanoTime();
+                DataContainer container = new DataContainer(csvFileName, threads);
+                best = Math.min(best, System.nanoTime() - start);
+                rows = container.getNumberOfSamples();
+            }
+            double millis = best / 1e6;
+            if (threads == 1) {
+                baseline = millis;
+            }
+            double speedup = baseline / millis;
+            System.out.printf("%8d %12.1f %10.1f %8.2f %11.0f%%  (%d rows)%n",
+                    threads, millis, megabytes / (millis / 1000.0), speedup, 100.0 * speedup / threads, rows);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package data;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cumulative sums of the columns of a dataset, from which the sum of any range of rows is the difference
+ * of two elements. The sums of a column are computed the first time a range of it is summed and kept for the
+ * dataset and the containers filtered from it, which share this object. When a container reaching further
+ * needs them, such as a version with appended rows, they are extended from where they stopped.
+ * <p>
+ * Missing values (NaN), including the samples flagged by the quality checks, are skipped. The cumulative
+ * counts of the values are only kept for a column that has missing values; otherwise a count is a number of rows.
+ */
+final class PrefixSums {
+
+    private final ConcurrentHashMap<String, Sums> sums = new ConcurrentHashMap<>();
+
+    /**
+     * The cumulative sums of a column: element {@code i} is the sum (or count) of the values of the rows
+     * {@code [0, i)}.
+     */
+    private static final class Sums {
+        final double[] values;
+        final int[] counts;
+
+        Sums(double[] values, int[] counts) {
+            this.values = values;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * Sums the values of a range of rows of a column.
+     *
+     * @param variable the name of the variable, followed by its expression for a derived variable
+     * @param column   the column of the variable
+     * @param from     the first row of the range
+     * @param to       the end of the range (exclusive)
+     * @return the sum of the values, missing values excluded
+     */
+    double sum(String variable, Column column, int from, int to) {
+        double[] values = get(variable, column, to).values;
+        return values[to] - values[from];
+    }
+
+    /**
+     * Counts the values of a range of rows of a column.
+     *
+     * @param variable the name of the variable, followed by its expression for a derived variable
+     * @param column   the column of the variable
+     * @param from     the first row of the range
+     * @param to       the end of the range (exclusive)
+     * @return the number of values that are not missing
+     */
+    int count(String variable, Column column, int from, int to) {
+        int[] counts = get(variable, column, to).counts;
+        return counts == null ? to - from : counts[to] - counts[from];
+    }
+
+    private Sums get(String variable, Column column, int rows) {
+        Sums prefix = sums.get(variable);
+        if (prefix != null && prefix.values.length > rows) {
+            return prefix;
+        }
+        synchronized (this) {
+            prefix = sums.get(variable);
+            if (prefix != null && prefix.values.length > rows) {
+                return prefix;
+            }
+            int from = prefix == null ? 0 : prefix.values.length - 1;
+            double[] values = prefix == null ? new double[rows + 1] : Arrays.copyOf(prefix.values, rows + 1);
+            int[] counts = prefix == null || prefix.counts == null ? null : Arrays.copyOf(prefix.counts, rows + 1);
+            Column.Reader reader = column.reader(from);
+            double sum = values[from];
+            int count = counts == null ? from : counts[from];
+            for (int i = from; i < rows; i++) {
+                double value = reader.next();
+                if (value == value) {
+                    sum += value;
+                    count++;
+                } else if (counts == null) {
+                    // the first missing value: the counts no longer follow the rows
+                    counts = new int[rows + 1];
+                    for (int j = 0; j <= i; j++) {
+                        counts[j] = j;
+                    }
+                }
+                values[i + 1] = sum;
+                if (counts != null) {
+                    counts[i + 1] = count;
+                }
+            }
+            prefix = new Sums(values, counts);
+            sums.put(variable, prefix);
+            return prefix;
+        }
+    }
+
+    /**
+     * Copies the sums computed so far for a new version of the dataset whose first rows are unchanged.
+     *
+     * @return the copy, sharing the arrays of this one
+     */
+    PrefixSums copy() {
+        PrefixSums copy = new PrefixSums();
+        copy.sums.putAll(sums);
+        return copy;
+    }
+}
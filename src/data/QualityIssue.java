@@ -0,0 +1,31 @@
+package data;
+
+/**
+ * The reasons a sample is flagged by the quality checks of a dataset (see {@link QualityRules}).
+ */
+public enum QualityIssue {
+    /** An empty cell, or a cell that is not a number, read as NaN. */
+    MISSING("Missing value"),
+    /** A value a meter writes when it has no reading, such as a saturated 16-bit register. */
+    SENTINEL("Sentinel value"),
+    /** A value outside the physical range of the sensor. */
+    OUT_OF_RANGE("Out of range"),
+    /** A value that has not changed for longer than a working sensor would hold it. */
+    STUCK("Stuck value");
+
+    private final String label;
+
+    QualityIssue(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the issue as shown to the user.
+     *
+     * @return the label
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,105 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of the quality checks of a dataset (see {@link DataContainer#getQualityReport()}): the number of
+ * samples of every variable flagged per issue, and the gaps in the time index.
+ */
+public final class QualityReport {
+
+    private final LinkedHashMap<String, EnumMap<QualityIssue, Integer>> issues = new LinkedHashMap<>();
+    private final List<TimeRange> gaps;
+    private final int samples;
+
+    QualityReport(int samples, List<TimeRange> gaps) {
+        this.samples = samples;
+        this.gaps = Collections.unmodifiableList(gaps);
+    }
+
+    void add(String variable, EnumMap<QualityIssue, Integer> counts) {
+        issues.put(variable, counts);
+    }
+
+    /**
+     * Gets the number of samples checked per variable.
+     *
+     * @return the number of rows of the dataset
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the variables that were checked.
+     *
+     * @return the names of the variables, in file order
+     */
+    public List<String> getVariables() {
+        return new ArrayList<>(issues.keySet());
+    }
+
+    /**
+     * Gets the number of samples of a variable flagged for an issue.
+     *
+     * @param variable the name of the variable
+     * @param issue    the issue
+     * @return the number of samples, 0 if the variable was not checked
+     */
+    public int getCount(String variable, QualityIssue issue) {
+        EnumMap<QualityIssue, Integer> counts = issues.get(variable);
+        Integer count = counts == null ? null : counts.get(issue);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Gets the number of samples of a variable flagged for any issue, which the aggregations skip.
+     *
+     * @param variable the name of the variable
+     * @return the number of samples
+     */
+    public int getFlaggedCount(String variable) {
+        int count = 0;
+        for (QualityIssue issue : QualityIssue.values()) {
+            count += getCount(variable, issue);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the periods in which samples are missing: the time between two consecutive samples is longer than
+     * one and a half times the usual sampling period. A gap runs from the first to the last missing sample, and
+     * counts the missing samples.
+     *
+     * @return the gaps, in order
+     */
+    public List<TimeRange> getGaps() {
+        return gaps;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, EnumMap<QualityIssue, Integer>> entry : issues.entrySet()) {
+            int flagged = getFlaggedCount(entry.getKey());
+            text.append(entry.getKey().trim()).append(": ").append(flagged).append(" of ").append(samples)
+                    .append(" samples flagged");
+            for (Map.Entry<QualityIssue, Integer> count : entry.getValue().entrySet()) {
+                if (count.getValue() > 0) {
+                    text.append(", ").append(count.getValue()).append(' ').append(count.getKey());
+                }
+            }
+            text.append('\n');
+        }
+        text.append(gaps.size()).append(gaps.size() == 1 ? " gap" : " gaps").append('\n');
+        for (TimeRange gap : gaps) {
+            text.append("    ").append(gap).append('\n');
+        }
+        return text.toString();
+    }
+}
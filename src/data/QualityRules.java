@@ -0,0 +1,145 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The quality checks of a variable: the values its sensor writes when it has no reading, the range of
+ * plausible values and how long a value may stay unchanged. The samples failing a check are flagged when
+ * the column is first read and are then skipped by all aggregations (see {@link DataContainer#getQualityReport()}).
+ * <p>
+ * A value is stuck from the sample at which it has not changed for the given duration on, so the first samples
+ * of a stuck run are kept. This way a sample is judged on the samples before it only, and the samples appended
+ * to a followed file never change the flags of the earlier ones. A missing value ends a run: the value after a gap
+ * starts a new one, even if it equals the value before the gap.
+ * <p>
+ * The checks of a variable are chosen by {@link #forVariable(String)}; they can be turned off by setting the
+ * {@value #PROPERTY} system property to "off". They apply to the columns read from a file only: the resampled
+ * and filled data computed from these columns are not checked again.
+ */
+public final class QualityRules {
+
+    /** System property turning the default quality checks off when set to "off". */
+    public static final String PROPERTY = "greener.quality";
+
+    /** No check: every value is kept. */
+    public static final QualityRules NONE = new QualityRules(new double[0], Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, 0L);
+
+    /** The value written by the classroom power meters when their 16-bit register saturates. */
+    public static final double SATURATED_METER = 3276.799984;
+
+    /** How long the power of a classroom socket may stay unchanged: a long weekend. */
+    private static final long SOCKET_STUCK_SECONDS = 3 * Timestamps.SECONDS_PER_DAY;
+
+    private final double[] sentinels;
+    private final double min;
+    private final double max;
+    private final long stuckSeconds;
+
+    private QualityRules(double[] sentinels, double min, double max, long stuckSeconds) {
+        this.sentinels = sentinels;
+        this.min = min;
+        this.max = max;
+        this.stuckSeconds = stuckSeconds;
+    }
+
+    /**
+     * Gets the checks of a variable of the GreenEr datasets, from its name: the electric power of the classroom
+     * is checked for the saturated meter value and for values above 100 kW; the energy consumption and production
+     * of the building, the temperatures and the radiation are checked for physically impossible values. Other
+     * variables are not checked.
+     * <p>
+     * Only the power of the sockets ({@code puissance_electrique_p...}) is checked for stuck values, after
+     * three days: it changes every hour, and stays unchanged for at most a day in normal use.
+     * The switchboard meters ({@code puissance_electrique_e3_...}) report coarse steps of 65.536 W and hold
+     * the same value, such as 131.07 or 7012.35, for days or weeks of normal use, so they are not.
+     *
+     * @param variableName the name of the variable
+     * @return the checks
+     */
+    public static QualityRules forVariable(String variableName) {
+        if ("off".equalsIgnoreCase(System.getProperty(PROPERTY))) {
+            return NONE;
+        }
+        String name = variableName.trim().toLowerCase(Locale.ROOT);
+        if (name.startsWith("puissance_electrique_e3")) {
+            return NONE.withSentinels(SATURATED_METER).withRange(0.0, 100_000.0);
+        }
+        if (name.startsWith("puissance_electrique")) {
+            return NONE.withSentinels(SATURATED_METER).withRange(0.0, 100_000.0)
+                    .withStuckAfter(SOCKET_STUCK_SECONDS);
+        }
+        if (name.endsWith("_kw")) {
+            return NONE.withRange(0.0, Double.POSITIVE_INFINITY);
+        }
+        if (name.contains("temperature")) {
+            return NONE.withRange(-50.0, 60.0);
+        }
+        if (name.contains("radiation")) {
+            return NONE.withRange(0.0, 1500.0);
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns these checks with values that mean "no reading".
+     *
+     * @param values the values flagged as {@link QualityIssue#SENTINEL}
+     * @return the new checks
+     */
+    public QualityRules withSentinels(double... values) {
+        double[] all = Arrays.copyOf(sentinels, sentinels.length + values.length);
+        System.arraycopy(values, 0, all, sentinels.length, values.length);
+        return new QualityRules(all, min, max, stuckSeconds);
+    }
+
+    /**
+     * Returns these checks with a range of plausible values.
+     *
+     * @param min the smallest plausible value
+     * @param max the largest plausible value
+     * @return the new checks, flagging the values outside the range as {@link QualityIssue#OUT_OF_RANGE}
+     */
+    public QualityRules withRange(double min, double max) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("Invalid range: " + min + " to " + max);
+        }
+        return new QualityRules(sentinels, min, max, stuckSeconds);
+    }
+
+    /**
+     * Returns these checks with a longest time a value may stay unchanged.
+     *
+     * @param seconds the duration, or 0 to never flag unchanged values
+     * @return the new checks, flagging the values unchanged for that long as {@link QualityIssue#STUCK}
+     */
+    public QualityRules withStuckAfter(long seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("The duration must not be negative: " + seconds);
+        }
+        return new QualityRules(sentinels, min, max, seconds);
+    }
+
+    /**
+     * Checks a value against the sentinels and the range. Missing values (NaN) pass.
+     *
+     * @param value the value
+     * @return the issue, or null if the value passes
+     */
+    QualityIssue check(double value) {
+        for (double sentinel : sentinels) {
+            if (value == sentinel) {
+                return QualityIssue.SENTINEL;
+            }
+        }
+        if (value < min || value > max) {
+            return QualityIssue.OUT_OF_RANGE;
+        }
+        return null;
+    }
+
+    long stuckSeconds() {
+        return stuckSeconds;
+    }
+}
@@ -0,0 +1,291 @@
+package data;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The range minimum and maximum indexes of the columns of a dataset, answering the smallest and largest value of
+ * any range of rows, and the row holding it, in constant time.
+ * <p>
+ * An index is a sparse table over blocks of {@value #BLOCK_SIZE} rows: level {@code k} holds the extremum of every
+ * run of {@code 2^k} blocks, so the whole blocks of a range are covered by two overlapping runs, and the rows of
+ * the partial blocks at both ends are read from the column. Keeping one entry per block instead of one per row
+ * divides the size of the table by the block size, to a few bytes per row.
+ * <p>
+ * The tables also serve as zone maps for threshold queries (see {@link #outside}): a zone of {@value #ZONE_SIZE}
+ * rows, an aligned run of {@value #ZONE_BLOCKS} blocks, and then each block of the zones that are not skipped,
+ * is skipped without reading its rows when its minimum and maximum show that no value can match.
+ * <p>
+ * The index of a column is built the first time a range of it is queried and kept for the dataset and the
+ * containers filtered from it, which share this object. It is built again if a container reaching further
+ * queries it, such as a version with appended rows.
+ */
+final class RangeExtrema {
+
+    static final int BLOCK_SIZE = 64;
+    static final int ZONE_BLOCKS = 16;
+    static final int ZONE_SIZE = ZONE_BLOCKS * BLOCK_SIZE;
+    private static final int ZONE_LEVEL = Integer.numberOfTrailingZeros(ZONE_BLOCKS);
+
+    private final ConcurrentHashMap<String, Index> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Finds the row holding the largest value of a range of rows of a column. Missing values (NaN) are ignored
+     * and the first of several equal values is returned.
+     *
+     * @param variable the name of the variable, followed by its expression for a derived variable
+     * @param column   the column of the variable
+     * @param from     the first row of the range
+     * @param to       the end of the range (exclusive)
+     * @return the row, or -1 if the range holds no value
+     */
+    int max(String variable, Column column, int from, int to) {
+        return index(variable, column, to).find(column, from, to, true);
+    }
+
+    /**
+     * Finds the row holding the smallest value of a range of rows of a column. Missing values (NaN) are ignored
+     * and the first of several equal values is returned.
+     *
+     * @param variable the name of the variable, followed by its expression for a derived variable
+     * @param column   the column of the variable
+     * @param from     the first row of the range
+     * @param to       the end of the range (exclusive)
+     * @return the row, or -1 if the range holds no value
+     */
+    int min(String variable, Column column, int from, int to) {
+        return index(variable, column, to).find(column, from, to, false);
+    }
+
+    /**
+     * Finds the runs of consecutive rows of a range whose value is outside an interval, that is below its lower
+     * bound or above its upper bound. Missing values (NaN) are never outside. The zones and blocks whose values
+     * all lie within the interval are skipped, so only the rows of the zones that can match are read.
+     *
+     * @param variable the name of the variable, followed by its expression for a derived variable
+     * @param column   the column of the variable
+     * @param from     the first row of the range
+     * @param to       the end of the range (exclusive)
+     * @param low      the lower bound, or negative infinity to only find values above the upper bound
+     * @param high     the upper bound, or positive infinity to only find values below the lower bound
+     * @return the first row and the end (exclusive) of every run, in order
+     */
+    int[] outside(String variable, Column column, int from, int to, double low, double high) {
+        return index(variable, column, to).outside(column, from, to, low, high);
+    }
+
+    /**
+     * Copies the indexes built so far for a new version of the dataset whose first rows are unchanged.
+     *
+     * @return the copy, sharing the indexes of this one
+     */
+    RangeExtrema copy() {
+        RangeExtrema copy = new RangeExtrema();
+        copy.indexes.putAll(indexes);
+        return copy;
+    }
+
+    private Index index(String variable, Column column, int rows) {
+        Index index = indexes.get(variable);
+        if (index != null && index.rows >= rows) {
+            return index;
+        }
+        synchronized (this) {
+            index = indexes.get(variable);
+            if (index == null || index.rows < rows) {
+                index = new Index(column, rows);
+                indexes.put(variable, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Whether a value replaces the current extremum, which is NaN until a value is found.
+     */
+    private static boolean better(double value, double current, boolean max) {
+        return max ? value > current || current != current && value == value
+                : value < current || current != current && value == value;
+    }
+
+    /**
+     * The sparse tables of the maxima and minima of the blocks of the first rows of a column.
+     */
+    private static final class Index {
+        private final int rows;
+        private final double[][] maxValues;
+        private final int[][] maxRows;
+        private final double[][] minValues;
+        private final int[][] minRows;
+
+        Index(Column column, int rows) {
+            this.rows = rows;
+            int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int levels = blocks == 0 ? 1 : 32 - Integer.numberOfLeadingZeros(blocks);
+            maxValues = new double[levels][];
+            maxRows = new int[levels][];
+            minValues = new double[levels][];
+            minRows = new int[levels][];
+
+            maxValues[0] = new double[blocks];
+            maxRows[0] = new int[blocks];
+            minValues[0] = new double[blocks];
+            minRows[0] = new int[blocks];
+            Column.Reader reader = column.reader(0);
+            for (int b = 0; b < blocks; b++) {
+                double max = Double.NaN;
+                double min = Double.NaN;
+                int maxRow = -1;
+                int minRow = -1;
+                int end = Math.min(rows, (b + 1) * BLOCK_SIZE);
+                for (int i = b * BLOCK_SIZE; i < end; i++) {
+                    double value = reader.next();
+                    if (better(value, max, true)) {
+                        max = value;
+                        maxRow = i;
+                    }
+                    if (better(value, min, false)) {
+                        min = value;
+                        minRow = i;
+                    }
+                }
+                maxValues[0][b] = max;
+                maxRows[0][b] = maxRow;
+                minValues[0][b] = min;
+                minRows[0][b] = minRow;
+            }
+
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                int runs = blocks - (1 << k) + 1;
+                maxValues[k] = new double[runs];
+                maxRows[k] = new int[runs];
+                minValues[k] = new double[runs];
+                minRows[k] = new int[runs];
+                for (int j = 0; j < runs; j++) {
+                    // on equal values the left run wins, so the first row is kept
+                    boolean right = better(maxValues[k - 1][j + half], maxValues[k - 1][j], true);
+                    maxValues[k][j] = maxValues[k - 1][right ? j + half : j];
+                    maxRows[k][j] = maxRows[k - 1][right ? j + half : j];
+                    right = better(minValues[k - 1][j + half], minValues[k - 1][j], false);
+                    minValues[k][j] = minValues[k - 1][right ? j + half : j];
+                    minRows[k][j] = minRows[k - 1][right ? j + half : j];
+                }
+            }
+        }
+
+        int find(Column column, int from, int to, boolean max) {
+            int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int lastBlock = to / BLOCK_SIZE;
+            if (firstBlock >= lastBlock) {
+                return scan(column, from, to, max, Double.NaN, -1);
+            }
+
+            // the rows before the first whole block, scanned first so that the first of equal values is kept
+            int row = scan(column, from, firstBlock * BLOCK_SIZE, max, Double.NaN, -1);
+            double value = row < 0 ? Double.NaN : column.get(row);
+
+            double[][] values = max ? maxValues : minValues;
+            int[][] rowsOf = max ? maxRows : minRows;
+            int k = 31 - Integer.numberOfLeadingZeros(lastBlock - firstBlock);
+            int second = lastBlock - (1 << k);
+            if (better(values[k][firstBlock], value, max)) {
+                value = values[k][firstBlock];
+                row = rowsOf[k][firstBlock];
+            }
+            if (better(values[k][second], value, max)) {
+                value = values[k][second];
+                row = rowsOf[k][second];
+            }
+            return scan(column, lastBlock * BLOCK_SIZE, to, max, value, row);
+        }
+
+        int[] outside(Column column, int from, int to, double low, double high) {
+            int[] runs = new int[16];
+            int count = 0;
+            int runStart = -1;
+            Column.Reader reader = null;
+            int readerRow = -1;
+            int zoneLevel = Math.min(ZONE_LEVEL, maxValues.length - 1);
+            int zoneBlocks = 1 << zoneLevel;
+            for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE < to; ) {
+                int blockCount = 1;
+                // a whole zone first, then its blocks one by one if it may match
+                if (block % zoneBlocks == 0 && block < maxValues[zoneLevel].length
+                        && !mayBeOutside(zoneLevel, block, low, high)) {
+                    blockCount = zoneBlocks;
+                } else if (mayBeOutside(0, block, low, high)) {
+                    int start = Math.max(from, block * BLOCK_SIZE);
+                    int end = Math.min(to, (block + 1) * BLOCK_SIZE);
+                    // read on after a nearby block rather than decoding a compressed block again
+                    if (reader == null || start < readerRow || start - readerRow > ZONE_SIZE) {
+                        reader = column.reader(start);
+                    } else {
+                        for (; readerRow < start; readerRow++) {
+                            reader.next();
+                        }
+                    }
+                    for (int i = start; i < end; i++) {
+                        double value = reader.next();
+                        if (value < low || value > high) {
+                            if (runStart < 0) {
+                                runStart = i;
+                            }
+                        } else if (runStart >= 0) {
+                            runs = add(runs, count, runStart, i);
+                            count += 2;
+                            runStart = -1;
+                        }
+                    }
+                    readerRow = end;
+                    block++;
+                    continue;
+                }
+                // the skipped rows all lie within the interval, or are missing, and end the current run
+                int skipped = Math.max(from, block * BLOCK_SIZE);
+                if (runStart >= 0) {
+                    runs = add(runs, count, runStart, skipped);
+                    count += 2;
+                    runStart = -1;
+                }
+                block += blockCount;
+            }
+            if (runStart >= 0) {
+                runs = add(runs, count, runStart, to);
+                count += 2;
+            }
+            return Arrays.copyOf(runs, count);
+        }
+
+        /**
+         * Whether a run of blocks may hold a value outside the interval, from its minimum and maximum.
+         */
+        private boolean mayBeOutside(int level, int run, double low, double high) {
+            return maxRows[level][run] >= 0 && (minValues[level][run] < low || maxValues[level][run] > high);
+        }
+
+        private static int[] add(int[] runs, int count, int start, int end) {
+            if (count + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[count] = start;
+            runs[count + 1] = end;
+            return runs;
+        }
+
+        private static int scan(Column column, int from, int to, boolean max, double value, int row) {
+            if (from >= to) {
+                return row;
+            }
+            Column.Reader reader = column.reader(from);
+            for (int i = from; i < to; i++) {
+                double next = reader.next();
+                if (better(next, value, max)) {
+                    value = next;
+                    row = i;
+                }
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pre-aggregated tiers of a dataset: the sum, minimum, maximum and number of values of every variable
+ * per hour, per day, per week and per month. Missing values (NaN) are skipped. The hour tier is built from the rows, the day tier from the
+ * hour tier and the week and month tiers from the day tier, so building the pyramid costs about
+ * one scan of the data.
+ * <p>
+ * A resampling query whose interval is made of whole tier buckets (for example "1 Day" or "3 Months")
+ * is answered from the coarsest matching tier. The rows at the edges of the query range that do not
+ * fill a bucket of that tier are covered by the next finer tiers, and only the rows that do not fill
+ * a whole hour are read from the columns. The cost is therefore proportional to the number of
+ * buckets instead of the number of rows.
+ */
+final class RollupPyramid {
+
+    /**
+     * One tier of the pyramid. Bucket {@code k} starts at {@code times[k]} and covers the rows
+     * {@code [rowStart(k), rowEnd(k))} of the columns the pyramid was built from.
+     * <p>
+     * A tier can be extended with appended rows without changing what earlier versions see: the arrays
+     * may have spare capacity and are shared between versions, but every version keeps the statistics
+     * of its last (still open) bucket in its own small arrays. Appending only writes the shared arrays
+     * at indexes that earlier versions read from their own copy or do not read at all. Only the first version
+     * extended from a tier writes its shared arrays; a tier extended again, concurrently or later, copies them.
+     */
+    static final class Tier {
+        final SamplingInterval interval;
+        final long[] times;
+        final int[] rowStarts;
+        final int count;
+        final int endRow;
+        final double[][] sums;
+        final double[][] minimums;
+        final double[][] maximums;
+        final double[][] valueCounts;
+        final double[] openSums;
+        final double[] openMinimums;
+        final double[] openMaximums;
+        final double[] openValueCounts;
+        private final AtomicBoolean extended = new AtomicBoolean();
+
+        Tier(SamplingInterval interval, long[] times, int[] rowStarts, int count, int endRow,
+                double[][] sums, double[][] minimums, double[][] maximums, double[][] valueCounts,
+                double[] openSums, double[] openMinimums, double[] openMaximums, double[] openValueCounts) {
+            this.interval = interval;
+            this.times = times;
+            this.rowStarts = rowStarts;
+            this.count = count;
+            this.endRow = endRow;
+            this.sums = sums;
+            this.minimums = minimums;
+            this.maximums = maximums;
+            this.valueCounts = valueCounts;
+            this.openSums = openSums;
+            this.openMinimums = openMinimums;
+            this.openMaximums = openMaximums;
+            this.openValueCounts = openValueCounts;
+        }
+
+        int rowStart(int k) {
+            return rowStarts[k];
+        }
+
+        int rowEnd(int k) {
+            return k == count - 1 ? endRow : rowStarts[k + 1];
+        }
+
+        double sum(int v, int k) {
+            return k == count - 1 ? openSums[v] : sums[v][k];
+        }
+
+        double minimum(int v, int k) {
+            return k == count - 1 ? openMinimums[v] : minimums[v][k];
+        }
+
+        double maximum(int v, int k) {
+            return k == count - 1 ? openMaximums[v] : maximums[v][k];
+        }
+
+        /** Returns the number of values of a variable in a bucket, missing values excluded. */
+        double valueCount(int v, int k) {
+            return k == count - 1 ? openValueCounts[v] : valueCounts[v][k];
+        }
+
+        /** Returns the first bucket starting at or after the given row. */
+        int firstBucketFrom(int row) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rowStart(middle) < row) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /** Returns the number of buckets ending at or before the given row. */
+        int bucketsEndingBy(int row) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rowEnd(middle) <= row) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns a new version of this tier that also covers the rows {@code [from, to)}.
+         */
+        Tier extend(TimeIndex rowTimes, Column[] columns, int from, int to) {
+            int variableCount = columns.length;
+            long[] newTimes = times;
+            int[] newRowStarts = rowStarts;
+            double[][] newSums = sums;
+            double[][] newMinimums = minimums;
+            double[][] newMaximums = maximums;
+            double[][] newValueCounts = valueCounts;
+            double[] sum = openSums.clone();
+            double[] min = openMinimums.clone();
+            double[] max = openMaximums.clone();
+            double[] values = openValueCounts.clone();
+            if (!extended.compareAndSet(false, true)) {
+                // another version writes past the buckets of this one in the shared arrays
+                newTimes = times.clone();
+                newRowStarts = rowStarts.clone();
+                newSums = grow(sums, times.length);
+                newMinimums = grow(minimums, times.length);
+                newMaximums = grow(maximums, times.length);
+                newValueCounts = grow(valueCounts, times.length);
+            }
+            int newCount = count;
+            long bucketEnd = count == 0 ? Long.MIN_VALUE : interval.nextBucketStart(times[count - 1]);
+            TimeIndex.Reader timeReader = rowTimes.reader(from);
+            Column.Reader[] readers = new Column.Reader[variableCount];
+            for (int v = 0; v < variableCount; v++) {
+                readers[v] = columns[v].reader(from);
+            }
+
+            for (int i = from; i < to; i++) {
+                long time = timeReader.next();
+                if (newCount == 0 || time >= bucketEnd) {
+                    if (newCount > 0) {
+                        // close the open bucket: earlier versions read it from their own open arrays
+                        for (int v = 0; v < variableCount; v++) {
+                            newSums[v][newCount - 1] = sum[v];
+                            newMinimums[v][newCount - 1] = min[v];
+                            newMaximums[v][newCount - 1] = max[v];
+                            newValueCounts[v][newCount - 1] = values[v];
+                        }
+                    }
+                    if (newCount == newTimes.length) {
+                        int capacity = Math.max(16, newCount + (newCount >> 1));
+                        newTimes = Arrays.copyOf(newTimes, capacity);
+                        newRowStarts = Arrays.copyOf(newRowStarts, capacity);
+                        newSums = grow(newSums, capacity);
+                        newMinimums = grow(newMinimums, capacity);
+                        newMaximums = grow(newMaximums, capacity);
+                        newValueCounts = grow(newValueCounts, capacity);
+                    }
+                    long bucket = interval.bucketStart(time);
+                    newTimes[newCount] = bucket;
+                    newRowStarts[newCount] = i;
+                    newCount++;
+                    bucketEnd = interval.nextBucketStart(bucket);
+                    Arrays.fill(sum, 0.0);
+                    Arrays.fill(min, Double.POSITIVE_INFINITY);
+                    Arrays.fill(max, Double.NEGATIVE_INFINITY);
+                    Arrays.fill(values, 0.0);
+                }
+                for (int v = 0; v < variableCount; v++) {
+                    double value = readers[v].next();
+                    if (value == value) {
+                        sum[v] += value;
+                        min[v] = Math.min(min[v], value);
+                        max[v] = Math.max(max[v], value);
+                        values[v]++;
+                    }
+                }
+            }
+            return new Tier(interval, newTimes, newRowStarts, newCount, Math.max(endRow, to),
+                    newSums, newMinimums, newMaximums, newValueCounts, sum, min, max, values);
+        }
+
+        private static double[][] grow(double[][] arrays, int capacity) {
+            double[][] grown = new double[arrays.length][];
+            for (int v = 0; v < arrays.length; v++) {
+                grown[v] = Arrays.copyOf(arrays[v], capacity);
+            }
+            return grown;
+        }
+    }
+
+    private final Tier hours;
+    private final Tier days;
+    private final Tier weeks;
+    private final Tier months;
+    private final HashMap<String, Integer> variableIndexes = new HashMap<>();
+    private final Column[] columns;
+
+    private RollupPyramid(List<String> variableNames, Column[] columns, Tier hours, Tier days, Tier weeks, Tier months) {
+        for (int v = 0; v < variableNames.size(); v++) {
+            variableIndexes.put(variableNames.get(v), v);
+        }
+        this.columns = columns;
+        this.hours = hours;
+        this.days = days;
+        this.weeks = weeks;
+        this.months = months;
+    }
+
+    /**
+     * Builds the pyramid of a dataset.
+     *
+     * @param times         the time index
+     * @param rows          the number of rows
+     * @param variableNames the variable names, in column order
+     * @param columns       one column per variable
+     * @return the pyramid
+     */
+    static RollupPyramid build(TimeIndex times, int rows, List<String> variableNames, Column[] columns) {
+        Tier hours = fromRows(times, rows, columns, SamplingInterval.ONE_HOUR);
+        Tier days = rollUp(hours, SamplingInterval.ONE_DAY);
+        Tier weeks = rollUp(days, SamplingInterval.ONE_WEEK);
+        Tier months = rollUp(days, SamplingInterval.ONE_MONTH);
+        return new RollupPyramid(variableNames, columns, hours, days, weeks, months);
+    }
+
+    /**
+     * Gets the number of variables held by the pyramid.
+     */
+    int variableCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns a new version of the pyramid that also covers the rows {@code [from, to)} appended to the columns.
+     * The columns may be new arrays if they had to grow; the rows before {@code from} must be unchanged.
+     *
+     * @param times         the time index
+     * @param variableNames the variable names, in column order
+     * @param columns       one column per variable, in the same order as when the pyramid was built
+     * @param from          the first appended row
+     * @param to            the row after the last appended row
+     * @return the extended pyramid
+     */
+    RollupPyramid extend(TimeIndex times, List<String> variableNames, Column[] columns, int from, int to) {
+        return new RollupPyramid(variableNames, columns,
+                hours.extend(times, columns, from, to),
+                days.extend(times, columns, from, to),
+                weeks.extend(times, columns, from, to),
+                months.extend(times, columns, from, to));
+    }
+
+    /**
+     * Aggregates the rows of the columns into the buckets of a tier, one column at a time.
+     */
+    private static Tier fromRows(TimeIndex times, int rows, Column[] columns, SamplingInterval interval) {
+        long[] bucketTimes = new long[16];
+        int[] rowStarts = new int[16];
+        int count = 0;
+        long bucketEnd = Long.MIN_VALUE;
+        TimeIndex.Reader timeReader = times.reader(0);
+        for (int i = 0; i < rows; i++) {
+            long time = timeReader.next();
+            if (time >= bucketEnd || count == 0) {
+                if (count == bucketTimes.length) {
+                    bucketTimes = Arrays.copyOf(bucketTimes, count * 2);
+                    rowStarts = Arrays.copyOf(rowStarts, count * 2);
+                }
+                long bucket = interval.bucketStart(time);
+                bucketTimes[count] = bucket;
+                rowStarts[count] = i;
+                bucketEnd = interval.nextBucketStart(bucket);
+                count++;
+            }
+        }
+
+        int variableCount = columns.length;
+        double[][] sums = new double[variableCount][Math.max(1, count)];
+        double[][] minimums = new double[variableCount][Math.max(1, count)];
+        double[][] maximums = new double[variableCount][Math.max(1, count)];
+        double[][] valueCounts = new double[variableCount][Math.max(1, count)];
+        for (int v = 0; v < variableCount; v++) {
+            Column.Reader reader = columns[v].reader(0);
+            for (int b = 0; b < count; b++) {
+                int to = b == count - 1 ? rows : rowStarts[b + 1];
+                double sum = 0.0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                int values = 0;
+                for (int i = rowStarts[b]; i < to; i++) {
+                    double value = reader.next();
+                    if (value == value) {
+                        sum += value;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        values++;
+                    }
+                }
+                sums[v][b] = sum;
+                minimums[v][b] = min;
+                maximums[v][b] = max;
+                valueCounts[v][b] = values;
+            }
+        }
+        return new Tier(interval, Arrays.copyOf(bucketTimes, Math.max(1, count)), Arrays.copyOf(rowStarts, Math.max(1, count)),
+                count, rows, sums, minimums, maximums, valueCounts,
+                lastBucket(sums, count), lastBucket(minimums, count), lastBucket(maximums, count),
+                lastBucket(valueCounts, count));
+    }
+
+    private static double[] lastBucket(double[][] values, int count) {
+        double[] last = new double[values.length];
+        for (int v = 0; v < values.length && count > 0; v++) {
+            last[v] = values[v][count - 1];
+        }
+        return last;
+    }
+
+    /**
+     * Combines the buckets of a tier into buckets of a coarser interval.
+     */
+    private static Tier rollUp(Tier child, SamplingInterval interval) {
+        long[] times = new long[Math.max(1, child.count)];
+        int[] rowStarts = new int[Math.max(1, child.count)];
+        int[] childStarts = new int[child.count + 1];
+        int count = 0;
+        long bucketEnd = Long.MIN_VALUE;
+        for (int k = 0; k < child.count; k++) {
+            long time = child.times[k];
+            if (time >= bucketEnd || count == 0) {
+                long bucket = interval.bucketStart(time);
+                times[count] = bucket;
+                rowStarts[count] = child.rowStart(k);
+                childStarts[count] = k;
+                bucketEnd = interval.nextBucketStart(bucket);
+                count++;
+            }
+        }
+        childStarts[count] = child.count;
+
+        int variableCount = child.sums.length;
+        double[][] sums = new double[variableCount][Math.max(1, count)];
+        double[][] minimums = new double[variableCount][Math.max(1, count)];
+        double[][] maximums = new double[variableCount][Math.max(1, count)];
+        double[][] valueCounts = new double[variableCount][Math.max(1, count)];
+        for (int v = 0; v < variableCount; v++) {
+            for (int b = 0; b < count; b++) {
+                double sum = 0.0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double values = 0.0;
+                for (int k = childStarts[b]; k < childStarts[b + 1]; k++) {
+                    sum += child.sum(v, k);
+                    min = Math.min(min, child.minimum(v, k));
+                    max = Math.max(max, child.maximum(v, k));
+                    values += child.valueCount(v, k);
+                }
+                sums[v][b] = sum;
+                minimums[v][b] = min;
+                maximums[v][b] = max;
+                valueCounts[v][b] = values;
+            }
+        }
+        return new Tier(interval, Arrays.copyOf(times, Math.max(1, count)), Arrays.copyOf(rowStarts, Math.max(1, count)),
+                count, child.endRow, sums, minimums, maximums, valueCounts,
+                lastBucket(sums, count), lastBucket(minimums, count), lastBucket(maximums, count),
+                lastBucket(valueCounts, count));
+    }
+
+    /**
+     * Checks whether a resampling query can be answered from the pyramid.
+     *
+     * @param interval   the sampling interval of the query
+     * @param aggregates the requested aggregates
+     * @return true if the interval is made of whole tier buckets and all aggregates can be combined from them
+     */
+    static boolean supports(SamplingInterval interval, Set<Aggregate> aggregates) {
+        if (aggregates.contains(Aggregate.STDDEV)) {
+            return false;
+        }
+        SamplingInterval.Unit unit = interval.getUnit();
+        return unit == SamplingInterval.Unit.HOUR || unit == SamplingInterval.Unit.DAY
+                || unit == SamplingInterval.Unit.WEEK || unit == SamplingInterval.Unit.MONTH;
+    }
+
+    /**
+     * Checks whether the pyramid holds the given column of a variable.
+     */
+    boolean covers(String variable, Column column) {
+        Integer index = variableIndexes.get(variable);
+        return index != null && columns[index] == column;
+    }
+
+    /**
+     * Resamples the rows {@code [from, to)} of the columns the pyramid was built from.
+     * The query range is cut into segments, each of which is either a whole bucket of a tier
+     * or a run of rows smaller than an hour; the segments are then merged into query buckets.
+     *
+     * @param times      the time index
+     * @param from       the first row of the range
+     * @param to         the row after the last one of the range
+     * @param interval   the sampling interval, accepted by {@link #supports}
+     * @param aggregates the aggregates to compute
+     * @param variables  the variables to resample, in order
+     * @param data       the columns of the variables, which may include columns not held by the pyramid
+     * @return the bucket start times followed by, per aggregate, the resampled columns
+     */
+    Result resample(TimeIndex times, int from, int to, SamplingInterval interval, Set<Aggregate> aggregates,
+            List<String> variables, Map<String, Column> data) {
+        List<Tier> chain = new ArrayList<>();
+        switch (interval.getUnit()) {
+            case MONTH:
+                chain.add(months);
+                break;
+            case WEEK:
+                chain.add(weeks);
+                break;
+            default:
+                break;
+        }
+        if (interval.getUnit() != SamplingInterval.Unit.HOUR) {
+            chain.add(days);
+        }
+        chain.add(hours);
+
+        Segments segments = new Segments();
+        cover(chain, 0, from, to, segments);
+
+        // group the segments into query buckets
+        long[] bucketTimes = new long[Math.max(1, segments.count)];
+        int[] bucketSegments = new int[segments.count + 1];
+        int bucketCount = 0;
+        long bucketEnd = Long.MIN_VALUE;
+        for (int s = 0; s < segments.count; s++) {
+            // the start of a tier bucket falls in the same query bucket as its rows
+            Tier tier = segments.tier[s];
+            long time = tier != null ? tier.times[segments.bucket[s]] : times.get(segments.rowFrom[s]);
+            if (time >= bucketEnd || bucketCount == 0) {
+                long bucket = interval.bucketStart(time);
+                bucketTimes[bucketCount] = bucket;
+                bucketSegments[bucketCount] = s;
+                bucketEnd = interval.nextBucketStart(bucket);
+                bucketCount++;
+            }
+        }
+        bucketSegments[bucketCount] = segments.count;
+
+        Result result = new Result(Arrays.copyOf(bucketTimes, bucketCount), bucketCount);
+        for (Aggregate aggregate : aggregates) {
+            result.values.put(aggregate, new HashMap<>());
+        }
+        for (String variable : variables) {
+            Column column = data.get(variable);
+            Integer index = covers(variable, column) ? variableIndexes.get(variable) : null;
+            double[] means = aggregates.contains(Aggregate.MEAN) ? new double[bucketCount] : null;
+            double[] minimums = aggregates.contains(Aggregate.MIN) ? new double[bucketCount] : null;
+            double[] maximums = aggregates.contains(Aggregate.MAX) ? new double[bucketCount] : null;
+            double[] sums = aggregates.contains(Aggregate.SUM) ? new double[bucketCount] : null;
+            double[] counts = aggregates.contains(Aggregate.COUNT) ? new double[bucketCount] : null;
+            double[] lasts = aggregates.contains(Aggregate.LAST) ? new double[bucketCount] : null;
+
+            for (int b = 0; b < bucketCount; b++) {
+                double sum = 0.0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                int count = 0;
+                int firstRow = segments.rowFrom[bucketSegments[b]];
+                int lastRow = -1;
+                for (int s = bucketSegments[b]; s < bucketSegments[b + 1]; s++) {
+                    Tier tier = segments.tier[s];
+                    int rowFrom = segments.rowFrom[s];
+                    int rowTo = segments.rowTo[s];
+                    if (tier != null && index != null) {
+                        int k = segments.bucket[s];
+                        sum += tier.sum(index, k);
+                        min = Math.min(min, tier.minimum(index, k));
+                        max = Math.max(max, tier.maximum(index, k));
+                        count += (int) tier.valueCount(index, k);
+                    } else {
+                        Column.Reader reader = column.reader(rowFrom);
+                        for (int i = rowFrom; i < rowTo; i++) {
+                            double value = reader.next();
+                            if (value == value) {
+                                sum += value;
+                                min = Math.min(min, value);
+                                max = Math.max(max, value);
+                                count++;
+                            }
+                        }
+                    }
+                    lastRow = rowTo - 1;
+                }
+                if (means != null) {
+                    means[b] = sum / count;
+                }
+                if (minimums != null) {
+                    minimums[b] = count == 0 ? Double.NaN : min;
+                }
+                if (maximums != null) {
+                    maximums[b] = count == 0 ? Double.NaN : max;
+                }
+                if (sums != null) {
+                    sums[b] = sum;
+                }
+                if (counts != null) {
+                    counts[b] = count;
+                }
+                if (lasts != null) {
+                    // the last value that is not missing
+                    double last = Double.NaN;
+                    for (int i = lastRow; i >= firstRow && count > 0 && last != last; i--) {
+                        last = column.get(i);
+                    }
+                    lasts[b] = last;
+                }
+            }
+            result.put(Aggregate.MEAN, variable, means);
+            result.put(Aggregate.MIN, variable, minimums);
+            result.put(Aggregate.MAX, variable, maximums);
+            result.put(Aggregate.SUM, variable, sums);
+            result.put(Aggregate.COUNT, variable, counts);
+            result.put(Aggregate.LAST, variable, lasts);
+        }
+        return result;
+    }
+
+    /**
+     * The output of {@link #resample}.
+     */
+    static final class Result {
+        final long[] times;
+        final int count;
+        final EnumMap<Aggregate, HashMap<String, double[]>> values = new EnumMap<>(Aggregate.class);
+
+        Result(long[] times, int count) {
+            this.times = times;
+            this.count = count;
+        }
+
+        private void put(Aggregate aggregate, String variable, double[] column) {
+            if (column != null) {
+                values.get(aggregate).put(variable, column);
+            }
+        }
+    }
+
+    /**
+     * The pieces a query range is cut into, in time order. A segment with a tier refers to one bucket
+     * of that tier; a segment without a tier is a run of rows read from the columns.
+     */
+    private static final class Segments {
+        Tier[] tier = new Tier[16];
+        int[] bucket = new int[16];
+        int[] rowFrom = new int[16];
+        int[] rowTo = new int[16];
+        int count;
+
+        void add(Tier t, int k, int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            if (count == rowFrom.length) {
+                tier = Arrays.copyOf(tier, count * 2);
+                bucket = Arrays.copyOf(bucket, count * 2);
+                rowFrom = Arrays.copyOf(rowFrom, count * 2);
+                rowTo = Arrays.copyOf(rowTo, count * 2);
+            }
+            tier[count] = t;
+            bucket[count] = k;
+            rowFrom[count] = from;
+            rowTo[count] = to;
+            count++;
+        }
+    }
+
+    /**
+     * Covers the rows {@code [from, to)} with whole buckets of {@code chain[level]}, and the leftover
+     * rows at both ends with the finer tiers that follow it in the chain.
+     */
+    private static void cover(List<Tier> chain, int level, int from, int to, Segments segments) {
+        if (from >= to) {
+            return;
+        }
+        if (level == chain.size()) {
+            segments.add(null, -1, from, to);
+            return;
+        }
+        Tier tier = chain.get(level);
+        int first = tier.firstBucketFrom(from);
+        int end = tier.bucketsEndingBy(to);
+        if (first >= end) {
+            cover(chain, level + 1, from, to, segments);
+            return;
+        }
+        cover(chain, level + 1, from, tier.rowStart(first), segments);
+        for (int k = first; k < end; k++) {
+            segments.add(tier, k, tier.rowStart(k), tier.rowEnd(k));
+        }
+        cover(chain, level + 1, tier.rowEnd(end - 1), to, segments);
+    }
+}
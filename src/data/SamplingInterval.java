@@ -0,0 +1,184 @@
+package data;
+
+import java.util.Locale;
+
+/**
+ * A resampling interval such as "15 Minutes", "1 Day" or "3 Months".
+ * Buckets are aligned in UTC: fixed-length intervals on multiples of their length since
+ * 1970-01-01 00:00:00, weeks on Mondays and months on the first day of the month.
+ * Bucket boundaries are computed with integer arithmetic on epoch seconds.
+ */
+public final class SamplingInterval {
+
+    /**
+     * The units an interval can be expressed in.
+     */
+    public enum Unit {
+        SECOND(1L, "Second"),
+        MINUTE(60L, "Minute"),
+        HOUR(Timestamps.SECONDS_PER_HOUR, "Hour"),
+        DAY(Timestamps.SECONDS_PER_DAY, "Day"),
+        WEEK(7L * Timestamps.SECONDS_PER_DAY, "Week"),
+        MONTH(0L, "Month");
+
+        private final long seconds;
+        private final String label;
+
+        Unit(long seconds, String label) {
+            this.seconds = seconds;
+            this.label = label;
+        }
+    }
+
+    public static final SamplingInterval ONE_MINUTE = new SamplingInterval(1, Unit.MINUTE);
+    public static final SamplingInterval FIVE_MINUTES = new SamplingInterval(5, Unit.MINUTE);
+    public static final SamplingInterval FIFTEEN_MINUTES = new SamplingInterval(15, Unit.MINUTE);
+    public static final SamplingInterval ONE_HOUR = new SamplingInterval(1, Unit.HOUR);
+    public static final SamplingInterval ONE_DAY = new SamplingInterval(1, Unit.DAY);
+    public static final SamplingInterval ONE_WEEK = new SamplingInterval(1, Unit.WEEK);
+    public static final SamplingInterval ONE_MONTH = new SamplingInterval(1, Unit.MONTH);
+
+    /** 1970-01-05, the first Monday after the epoch, used to align weeks. */
+    private static final long FIRST_MONDAY = 4L * Timestamps.SECONDS_PER_DAY;
+
+    private final int amount;
+    private final Unit unit;
+
+    /**
+     * Creates an interval of a number of units.
+     *
+     * @param amount the number of units, at least 1
+     * @param unit   the unit
+     */
+    public SamplingInterval(int amount, Unit unit) {
+        if (amount < 1) {
+            throw new IllegalArgumentException("The amount of a sampling interval must be at least 1: " + amount);
+        }
+        this.amount = amount;
+        this.unit = unit;
+    }
+
+    /**
+     * Parses an interval written as an amount followed by a unit, such as "1 Hour", "5 Minutes",
+     * "15 min", "2 Days", "1 Week" or "1 Month". The unit may be singular or plural and is not case-sensitive.
+     *
+     * @param text the text to parse
+     * @return the interval
+     * @throws IllegalArgumentException if the text is not a valid interval
+     */
+    public static SamplingInterval parse(String text) {
+        String[] parts = text.trim().split("\\s+");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid sampling interval: \"" + text
+                    + "\". Expected an amount and a unit, for example 1 Hour, 15 Minutes or 1 Month.");
+        }
+        int amount;
+        try {
+            amount = Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sampling interval amount: \"" + parts[0] + "\"");
+        }
+        String unit = parts[1].toLowerCase(Locale.ROOT);
+        if (unit.endsWith("s") && unit.length() > 1) {
+            unit = unit.substring(0, unit.length() - 1);
+        }
+        switch (unit) {
+            case "sec":
+            case "second":
+                return new SamplingInterval(amount, Unit.SECOND);
+            case "min":
+            case "minute":
+                return new SamplingInterval(amount, Unit.MINUTE);
+            case "h":
+            case "hour":
+                return new SamplingInterval(amount, Unit.HOUR);
+            case "day":
+                return new SamplingInterval(amount, Unit.DAY);
+            case "week":
+                return new SamplingInterval(amount, Unit.WEEK);
+            case "month":
+                return new SamplingInterval(amount, Unit.MONTH);
+            default:
+                throw new IllegalArgumentException("Invalid sampling interval unit: \"" + parts[1]
+                        + "\". Valid units are: Second, Minute, Hour, Day, Week, Month.");
+        }
+    }
+
+    /**
+     * Gets the number of units of this interval.
+     *
+     * @return the amount
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * Gets the unit of this interval.
+     *
+     * @return the unit
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Gets the start of the bucket containing a time.
+     *
+     * @param epochSecond the time, as epoch seconds
+     * @return the start of its bucket, as epoch seconds
+     */
+    public long bucketStart(long epochSecond) {
+        if (unit == Unit.MONTH) {
+            long civil = Timestamps.civilFromDays(Math.floorDiv(epochSecond, Timestamps.SECONDS_PER_DAY));
+            long monthIndex = ((civil >> 16) - 1970) * 12 + ((civil >> 8) & 0xFF) - 1;
+            return startOfMonthIndex(Math.floorDiv(monthIndex, amount) * amount);
+        }
+        long length = amount * unit.seconds;
+        long anchor = unit == Unit.WEEK ? FIRST_MONDAY : 0L;
+        return Math.floorDiv(epochSecond - anchor, length) * length + anchor;
+    }
+
+    /**
+     * Gets the start of the bucket following the one starting at the given time.
+     *
+     * @param bucketStart the start of a bucket, as returned by {@link #bucketStart(long)}
+     * @return the start of the next bucket, as epoch seconds
+     */
+    public long nextBucketStart(long bucketStart) {
+        if (unit == Unit.MONTH) {
+            long civil = Timestamps.civilFromDays(Math.floorDiv(bucketStart, Timestamps.SECONDS_PER_DAY));
+            long monthIndex = ((civil >> 16) - 1970) * 12 + ((civil >> 8) & 0xFF) - 1;
+            return startOfMonthIndex(monthIndex + amount);
+        }
+        return bucketStart + amount * unit.seconds;
+    }
+
+    private static long startOfMonthIndex(long monthIndex) {
+        int year = (int) (1970 + Math.floorDiv(monthIndex, 12));
+        int month = (int) Math.floorMod(monthIndex, 12) + 1;
+        return Timestamps.daysFromCivil(year, month, 1) * Timestamps.SECONDS_PER_DAY;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SamplingInterval)) {
+            return false;
+        }
+        SamplingInterval interval = (SamplingInterval) other;
+        return amount == interval.amount && unit == interval.unit;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * amount + unit.hashCode();
+    }
+
+    /**
+     * Formats this interval the way {@link #parse(String)} reads it, for example "1 Hour" or "15 Minutes".
+     */
+    @Override
+    public String toString() {
+        return amount + " " + unit.label + (amount > 1 ? "s" : "");
+    }
+}
@@ -0,0 +1,95 @@
+package data;
+
+/**
+ * A read-only view of the samples of one variable of a container, reading its time index and its column in
+ * place, without copying them or boxing the values (see {@link DataContainer#getSeries(String)}).
+ * <p>
+ * Random access costs an array read for the columns held in memory, such as those of resampled data. The values
+ * of a compressed column are decoded from the start of their block, so a range of samples is better read in bulk
+ * with {@link #copyTimes} and {@link #copyValues}, which decode each block once.
+ */
+public final class SeriesView {
+
+    private final TimeIndex times;
+    private final Column column;
+    private final int offset;
+    private final int size;
+
+    SeriesView(TimeIndex times, Column column, int offset, int size) {
+        this.times = times;
+        this.column = column;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of samples.
+     *
+     * @return the number of samples of the container
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the time of a sample.
+     *
+     * @param index the sample index
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getTime(int index) {
+        return times.get(offset + index);
+    }
+
+    /**
+     * Gets the value of a sample. A sample missing or flagged by the quality checks is NaN.
+     *
+     * @param index the sample index
+     * @return the value
+     */
+    public double getValue(int index) {
+        return column.get(offset + index);
+    }
+
+    /**
+     * Copies the times of a range of samples.
+     *
+     * @param from            the index of the first sample
+     * @param destination     the array receiving the times, as epoch seconds (UTC)
+     * @param destinationFrom the index in the array of the first time
+     * @param length          the number of samples
+     */
+    public void copyTimes(int from, long[] destination, int destinationFrom, int length) {
+        checkRange(from, length);
+        times.copyTo(offset + from, destination, destinationFrom, length);
+    }
+
+    /**
+     * Copies the values of a range of samples. A sample missing or flagged by the quality checks is NaN.
+     *
+     * @param from            the index of the first sample
+     * @param destination     the array receiving the values
+     * @param destinationFrom the index in the array of the first value
+     * @param length          the number of samples
+     */
+    public void copyValues(int from, double[] destination, int destinationFrom, int length) {
+        checkRange(from, length);
+        column.copyTo(offset + from, destination, destinationFrom, length);
+    }
+
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from > size - length) {
+            throw new IndexOutOfBoundsException("Samples " + from + " to " + (from + length) + " of " + size);
+        }
+    }
+
+    /**
+     * Finds the first sample at or after a time.
+     *
+     * @param time the time to search for, as epoch seconds (UTC)
+     * @return the index of the sample, or {@link #size()} if all samples are earlier
+     */
+    public int lowerBound(long time) {
+        return times.lowerBound(offset, offset + size, time) - offset;
+    }
+}
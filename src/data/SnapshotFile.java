@@ -0,0 +1,382 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the binary columnar snapshot of a CSV file.
+ * <p>
+ * Layout (little-endian): the magic "GRSNAP", a format version, the modification time and size of the
+ * source CSV, the number of rows and variables, the variable names, the CRC32 of the time column and of every
+ * value column, a CRC32 of the header up to there, padding to an 8-byte boundary, then the time column as epoch
+ * seconds and one column of doubles per variable. A snapshot is only used when the recorded modification time and
+ * size still match the CSV file and the checksum of the header is correct.
+ * <p>
+ * Opening a snapshot verifies its header and the time column, which is copied to the heap. The checksum of a value
+ * column is verified when the column is first read: as it is copied when it is kept in memory, and on its first
+ * access when it is left in the file ({@link ColumnStorage#MAPPED}), so that opening a snapshot does not page in
+ * the columns and the columns that are never read are never checksummed. A snapshot with a corrupt column is
+ * rejected when it is opened if the column is copied, and deleted when the column is first read otherwise.
+ * <p>
+ * The columns are read into the requested {@link ColumnStorage}: copied into arrays or direct buffers,
+ * compressed from the file, or left in the file and accessed through read-only memory mappings.
+ */
+final class SnapshotFile {
+
+    private static final byte[] MAGIC = {'G', 'R', 'S', 'N', 'A', 'P'};
+    private static final short VERSION = 2;
+    /** Size of the mapping the header is read from; names longer than that make the snapshot invalid. */
+    private static final long HEADER_WINDOW = 1 << 24;
+
+    private static final Logger LOG = Logger.getLogger(SnapshotFile.class.getName());
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * The content of a snapshot. The column of a variable that was not read is null.
+     */
+    static final class Content {
+        final List<String> variableNames;
+        final long[] times;
+        final Column[] values;
+
+        Content(List<String> variableNames, long[] times, Column[] values) {
+            this.variableNames = variableNames;
+            this.times = times;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Writes a snapshot. The data is first written to a temporary file that is then moved over
+     * the snapshot, so a reader never sees a half-written file.
+     *
+     * @param snapshot      the snapshot file to write
+     * @param source        the CSV file the data was read from
+     * @param variableNames the variable names, in column order
+     * @param times         the time index
+     * @param values        one column per variable
+     * @param offset        the first row to write
+     * @param rows          the number of rows to write
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(Path snapshot, File source, List<String> variableNames, TimeIndex times, Column[] values,
+            int offset, int rows) throws IOException {
+        byte[][] names = new byte[variableNames.size()][];
+        int namesSize = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = variableNames.get(i).getBytes(StandardCharsets.UTF_8);
+            namesSize += 4 + names[i].length;
+        }
+        int checksumsStart = MAGIC.length + 2 + 8 + 8 + 4 + 4 + namesSize;
+        int headerSize = align(checksumsStart + 8 * (names.length + 1) + 8);
+        long[] checksums = new long[names.length + 1];
+
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // the columns are written first, after room for the header holding their checksums
+            channel.position(headerSize);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            TimeIndex.Reader timeReader = times.reader(offset);
+            for (int i = 0; i < rows; i++) {
+                if (!buffer.hasRemaining()) {
+                    writeAll(channel, buffer, crc);
+                }
+                buffer.putLong(timeReader.next());
+            }
+            writeAll(channel, buffer, crc);
+            checksums[0] = crc.getValue();
+            for (int v = 0; v < values.length; v++) {
+                crc.reset();
+                Column.Reader reader = values[v].reader(offset);
+                for (int i = 0; i < rows; i++) {
+                    if (!buffer.hasRemaining()) {
+                        writeAll(channel, buffer, crc);
+                    }
+                    buffer.putDouble(reader.next());
+                }
+                writeAll(channel, buffer, crc);
+                checksums[v + 1] = crc.getValue();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putShort(VERSION);
+            header.putLong(source.lastModified()).putLong(source.length());
+            header.putInt(rows).putInt(names.length);
+            for (byte[] name : names) {
+                header.putInt(name.length).put(name);
+            }
+            for (long checksum : checksums) {
+                header.putLong(checksum);
+            }
+            crc.reset();
+            crc.update(header.array(), 0, header.position());
+            header.putLong(crc.getValue());
+            header.position(headerSize).flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+        try {
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a snapshot. The checksum of the header is verified, then the time column is copied to the heap
+     * and every value column is either copied in bulk, after its checksum is verified, or mapped on its own,
+     * to be verified on first access.
+     *
+     * @param snapshot the snapshot file
+     * @param source   the CSV file the snapshot must have been made from
+     * @param storage  where to keep the value columns
+     * @return the content of the snapshot, or null if the snapshot is missing, stale or corrupt
+     * @throws IOException if the snapshot exists but cannot be read
+     */
+    static Content read(Path snapshot, File source, ColumnStorage storage) throws IOException {
+        return read(snapshot, source, storage, null);
+    }
+
+    /**
+     * Reads the columns of some variables from a snapshot, as {@link #read(Path, File, ColumnStorage)} does.
+     * The other columns are neither copied nor mapped, nor checksummed.
+     *
+     * @param snapshot  the snapshot file
+     * @param source    the CSV file the snapshot must have been made from
+     * @param storage   where to keep the value columns
+     * @param variables the variables to read, or null to read them all
+     * @return the content of the snapshot, or null if the snapshot is missing, stale or corrupt
+     * @throws IOException if the snapshot exists but cannot be read
+     * @throws IllegalArgumentException if a requested variable is not in the snapshot
+     */
+    static Content read(Path snapshot, File source, ColumnStorage storage, Collection<String> variables)
+            throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + 2 + 8 + 8 + 4 + 4 + 8 + 8) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_WINDOW))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    return null;
+                }
+            }
+            if (buffer.getShort() != VERSION
+                    || buffer.getLong() != source.lastModified()
+                    || buffer.getLong() != source.length()) {
+                return null;
+            }
+            int rows = buffer.getInt();
+            int variableCount = buffer.getInt();
+            if (rows < 0 || variableCount < 0) {
+                return null;
+            }
+
+            List<String> variableNames = new ArrayList<>(variableCount);
+            for (int i = 0; i < variableCount; i++) {
+                if (buffer.remaining() < 4) {
+                    return null;
+                }
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    return null;
+                }
+                byte[] name = new byte[length];
+                buffer.get(name);
+                variableNames.add(new String(name, StandardCharsets.UTF_8));
+            }
+            if (buffer.remaining() < 8L * (variableCount + 2)) {
+                return null;
+            }
+            long[] checksums = new long[variableCount + 1];
+            for (int i = 0; i < checksums.length; i++) {
+                checksums[i] = buffer.getLong();
+            }
+            CRC32 crc = new CRC32();
+            ByteBuffer headerBytes = buffer.duplicate();
+            headerBytes.flip();
+            crc.update(headerBytes);
+            if (crc.getValue() != buffer.getLong()) {
+                return null;
+            }
+            long dataStart = align(buffer.position());
+            long expectedSize = dataStart + 8L * rows * (variableCount + 1);
+            if (expectedSize != size) {
+                return null;
+            }
+
+            ByteBuffer timeColumn = map(channel, dataStart, rows);
+            if (!verify(timeColumn, checksums[0])) {
+                return null;
+            }
+            long[] times = new long[rows];
+            timeColumn.asLongBuffer().get(times);
+            boolean[] selected = CsvParser.select(variableNames.toArray(new String[0]), variables);
+            Column[] values = new Column[variableCount];
+            for (int v = 0; v < variableCount; v++) {
+                if (selected != null && !selected[v]) {
+                    continue;
+                }
+                ByteBuffer bytes = map(channel, dataStart + 8L * rows * (v + 1), rows);
+                if (storage == ColumnStorage.MAPPED) {
+                    values[v] = new MappedColumn(snapshot, variableNames.get(v), bytes, checksums[v + 1]);
+                    continue;
+                }
+                if (!verify(bytes, checksums[v + 1])) {
+                    return null;
+                }
+                DoubleBuffer mapped = bytes.asDoubleBuffer();
+                if (storage == ColumnStorage.COMPRESSED) {
+                    values[v] = CompressedColumn.encode(Column.of(mapped), rows);
+                } else if (storage == ColumnStorage.DIRECT) {
+                    values[v] = Column.of(mapped).copyOf(rows);
+                } else {
+                    double[] column = new double[rows];
+                    mapped.get(column);
+                    values[v] = Column.of(column);
+                }
+            }
+            return new Content(variableNames, times, values);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Checks the checksum of a mapped column, reading it once.
+     */
+    private static boolean verify(ByteBuffer column, long checksum) {
+        CRC32 crc = new CRC32();
+        crc.update(column.duplicate());
+        return crc.getValue() == checksum;
+    }
+
+    /**
+     * A column left in the snapshot file, whose checksum is verified when it is first read. A corrupt column
+     * deletes the snapshot, so that the CSV file is parsed again the next time it is opened.
+     */
+    private static final class MappedColumn extends Column {
+        private final Path snapshot;
+        private final String variable;
+        private final ByteBuffer bytes;
+        private final long checksum;
+        private final Column column;
+        private volatile boolean verified;
+
+        MappedColumn(Path snapshot, String variable, ByteBuffer bytes, long checksum) {
+            this.snapshot = snapshot;
+            this.variable = variable;
+            this.bytes = bytes;
+            this.checksum = checksum;
+            this.column = Column.of(bytes.asDoubleBuffer());
+        }
+
+        /**
+         * Verifies the checksum of the column the first time it is read.
+         *
+         * @return the mapped column
+         * @throws UncheckedIOException if the column does not match its checksum
+         */
+        private Column verified() {
+            if (!verified) {
+                synchronized (this) {
+                    if (!verified) {
+                        if (!verify(bytes, checksum)) {
+                            try {
+                                Files.deleteIfExists(snapshot);
+                            } catch (IOException e) {
+                                LOG.log(Level.WARNING, "Could not delete corrupt snapshot " + snapshot, e);
+                            }
+                            throw new UncheckedIOException(new IOException("Corrupt column \"" + variable
+                                    + "\" in snapshot " + snapshot + "; reopen the file to read it again"));
+                        }
+                        verified = true;
+                    }
+                }
+            }
+            return column;
+        }
+
+        @Override
+        double get(int index) {
+            return verified().get(index);
+        }
+
+        @Override
+        Reader reader(int from) {
+            return verified().reader(from);
+        }
+
+        @Override
+        void set(int index, double value) {
+            column.set(index, value);
+        }
+
+        @Override
+        int capacity() {
+            return column.capacity();
+        }
+
+        @Override
+        void copyTo(int from, double[] destination, int destinationFrom, int length) {
+            verified().copyTo(from, destination, destinationFrom, length);
+        }
+
+        @Override
+        Column copyOf(int capacity) {
+            return verified().copyOf(capacity);
+        }
+
+        @Override
+        long heapBytes() {
+            return column.heapBytes();
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    /**
+     * Writes the content of a buffer being filled and clears it.
+     */
+    private static void writeAll(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows a CSV file that is still being appended to, such as the export of a building management system.
+ * The file is polled at a fixed rate; only the bytes appended since the last poll are read, and the complete
+ * lines among them are appended to the data as a new version of the {@link DataContainer}. The rollups of the
+ * data are extended with the new rows instead of being rebuilt. If the file shrinks, it is assumed to have been
+ * replaced and is read again from the start.
+ * <p>
+ * Every version is an immutable {@link DataContainer} published atomically, so any number of threads can query
+ * the version they got from {@link #getCurrent()} while newer ones are read.
+ * Listeners are called on the polling thread with every new version of the data. A follower obtained from
+ * {@link DatasetRegistry#follow(String)} stops once its last listener is removed.
+ */
+public final class TailFollower implements AutoCloseable {
+
+    /** Default time between two polls of the file, in milliseconds. */
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+
+    private static final Logger LOG = Logger.getLogger(TailFollower.class.getName());
+
+    private final String csvFileName;
+    private final List<Consumer<DataContainer>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final LinkedHashMap<String, String> definitions = new LinkedHashMap<>();
+    private volatile DataContainer current;
+    private volatile Runnable onIdle;
+    private long position;
+
+    /**
+     * Reads a CSV file and starts following it.
+     *
+     * @param csvFileName the name of the CSV file
+     * @param pollMillis  the time between two polls of the file, in milliseconds
+     * @throws IOException if the file cannot be read
+     */
+    public TailFollower(String csvFileName, long pollMillis) throws IOException {
+        this.csvFileName = csvFileName;
+        reload();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TailFollower " + new File(csvFileName).getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Could not read new data from " + csvFileName, e);
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the latest version of the data.
+     *
+     * @return the data read so far
+     */
+    public DataContainer getCurrent() {
+        return current;
+    }
+
+    /**
+     * Defines a derived variable in the data (see {@link DataContainer#withDerived(String, String)}), from the
+     * current version on. The versions with appended rows keep it, and it is defined again if the file is read
+     * again from the start.
+     *
+     * @param name       the name of the derived variable
+     * @param expression the expression computing it
+     * @throws IllegalArgumentException if the expression is invalid or the name is already used
+     */
+    public synchronized void define(String name, String expression) {
+        current = current.withDerived(name, expression);
+        definitions.put(name, expression);
+    }
+
+    /**
+     * Registers a listener called with every new version of the data.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<DataContainer> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Consumer<DataContainer> listener) {
+        Runnable idle = onIdle;
+        if (listeners.remove(listener) && listeners.isEmpty() && idle != null) {
+            idle.run();
+        }
+    }
+
+    /**
+     * Sets the action run when the last listener is removed, such as stopping the follower.
+     *
+     * @param action the action
+     */
+    void onIdle(Runnable action) {
+        onIdle = action;
+    }
+
+    /**
+     * Tells whether any listener is registered.
+     *
+     * @return true if the follower has listeners
+     */
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Reads the lines appended to the file since the last poll. This is called periodically by the
+     * follower, but can also be called directly to pick up new data immediately.
+     *
+     * @return the number of rows added to the data
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized int poll() throws IOException {
+        int before = current.getNumberOfSamples();
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < position) {
+                reload();
+                notifyListeners();
+                return current.getNumberOfSamples();
+            }
+            if (size == position) {
+                return 0;
+            }
+            CsvParser.Columns rows = new CsvParser.Columns(current.getAvailableVariables().length, 16);
+            position = CsvParser.parseAppended(channel, position, size, rows);
+            if (rows.rows == 0) {
+                return 0;
+            }
+            current = current.append(rows);
+        }
+        notifyListeners();
+        return current.getNumberOfSamples() - before;
+    }
+
+    /**
+     * Stops following the file.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void reload() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFileName), StandardOpenOption.READ)) {
+            CsvParser.Header header = CsvParser.readHeader(channel);
+            CsvParser.Columns rows = new CsvParser.Columns(header.variableNames.length, 1024);
+            position = CsvParser.parseAppended(channel, header.dataOffset, channel.size(), rows);
+            DataContainer container = DataContainer.empty(Arrays.asList(header.variableNames), ColumnStorage.configured())
+                    .append(rows)
+                    .withRollups();
+            for (Map.Entry<String, String> definition : definitions.entrySet()) {
+                container = container.withDerived(definition.getKey(), definition.getValue());
+            }
+            current = container;
+        }
+    }
+
+    private void notifyListeners() {
+        DataContainer container = current;
+        for (Consumer<DataContainer> listener : listeners) {
+            listener.accept(container);
+        }
+    }
+}
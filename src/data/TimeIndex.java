@@ -0,0 +1,201 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * The time index of a dataset: the time of every row as epoch seconds (UTC), in increasing order.
+ * It is either a plain array or compressed with delta-of-delta encoding (see {@link ColumnStorage#COMPRESSED}).
+ */
+abstract class TimeIndex {
+
+    /**
+     * Reads the times of an index in order, from a starting row.
+     */
+    abstract static class Reader {
+        /**
+         * Reads the next time.
+         *
+         * @return the time, as epoch seconds
+         */
+        abstract long next();
+    }
+
+    /**
+     * Wraps an array in a time index, without copying it.
+     *
+     * @param times the times; the array may be longer than the rows in use
+     * @return the time index
+     */
+    static TimeIndex of(long[] times) {
+        return new ArrayTimeIndex(times);
+    }
+
+    /**
+     * Gets the time of a row.
+     *
+     * @param index the row
+     * @return the time, as epoch seconds
+     */
+    abstract long get(int index);
+
+    /**
+     * Gets the times of several rows, given in increasing order. The rows are read forward from one to the next
+     * when they are close, so a compressed index decodes each of its blocks at most once.
+     *
+     * @param rows the rows, in increasing order
+     * @return the times, as epoch seconds
+     */
+    long[] get(int[] rows) {
+        long[] result = new long[rows.length];
+        Reader reader = null;
+        int position = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            if (i > 0 && row == rows[i - 1]) {
+                result[i] = result[i - 1];
+                continue;
+            }
+            if (reader == null || row < position || row - position > CompressedColumn.BLOCK_SIZE) {
+                reader = reader(row);
+                position = row;
+            }
+            for (; position < row; position++) {
+                reader.next();
+            }
+            result[i] = reader.next();
+            position++;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a reader of the times of the index.
+     *
+     * @param from the row of the first time read
+     * @return the reader
+     */
+    abstract Reader reader(int from);
+
+    /**
+     * Copies a range of times to an array.
+     *
+     * @param from            the first row to copy
+     * @param destination     the array to copy to
+     * @param destinationFrom the first index written in the array
+     * @param length          the number of times to copy
+     */
+    void copyTo(int from, long[] destination, int destinationFrom, int length) {
+        Reader reader = reader(from);
+        for (int i = 0; i < length; i++) {
+            destination[destinationFrom + i] = reader.next();
+        }
+    }
+
+    /**
+     * Finds the first row in {@code [from, to)} whose time is at or after the given time.
+     *
+     * @param from the first row searched
+     * @param to   the row after the last one searched
+     * @param time the time to search for, as epoch seconds
+     * @return the row found, or {@code to} if all times are earlier
+     */
+    abstract int lowerBound(int from, int to, long time);
+
+    /**
+     * Gets the array holding the times, for an index that can be appended to in place.
+     *
+     * @return the array, or null if the index is compressed
+     */
+    long[] array() {
+        return null;
+    }
+
+    /**
+     * Copies the index into a new array, truncated or padded with zeros.
+     *
+     * @param capacity the length of the array
+     * @param rows     the number of rows in use
+     * @return the array
+     */
+    long[] toArray(int capacity, int rows) {
+        long[] times = new long[capacity];
+        copyTo(0, times, 0, Math.min(capacity, rows));
+        return times;
+    }
+
+    /**
+     * Estimates the heap memory used by the index.
+     *
+     * @return the estimated size in bytes
+     */
+    abstract long heapBytes();
+
+    private static final class ArrayTimeIndex extends TimeIndex {
+        private final long[] times;
+
+        ArrayTimeIndex(long[] times) {
+            this.times = times;
+        }
+
+        @Override
+        long get(int index) {
+            return times[index];
+        }
+
+        @Override
+        long[] get(int[] rows) {
+            long[] result = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                result[i] = times[rows[i]];
+            }
+            return result;
+        }
+
+        @Override
+        Reader reader(int from) {
+            return new Reader() {
+                private int index = from;
+
+                @Override
+                long next() {
+                    return times[index++];
+                }
+            };
+        }
+
+        @Override
+        void copyTo(int from, long[] destination, int destinationFrom, int length) {
+            System.arraycopy(times, from, destination, destinationFrom, length);
+        }
+
+        @Override
+        int lowerBound(int from, int to, long time) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        long[] array() {
+            return times;
+        }
+
+        @Override
+        long[] toArray(int capacity, int rows) {
+            return Arrays.copyOf(times, capacity);
+        }
+
+        @Override
+        long heapBytes() {
+            return 16L + 8L * times.length;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package data;
+
+/**
+ * A period of consecutive samples, such as one during which a variable exceeded a threshold
+ * (see {@link DataContainer#findAbove(String, double)}), or a gap of missing samples in a dataset
+ * (see {@link QualityReport#getGaps()}).
+ */
+public final class TimeRange {
+
+    private final long start;
+    private final long end;
+    private final int samples;
+
+    TimeRange(long start, long end, int samples) {
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+    }
+
+    /**
+     * Gets the time of the first sample of the period.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the time of the last sample of the period.
+     *
+     * @return the time, as epoch seconds (UTC)
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the time of the first sample of the period, formatted like the time strings of a container.
+     *
+     * @return the time in the format "yyyy-MM-dd HH:mm:ss+00:00"
+     */
+    public String getStartString() {
+        return Timestamps.format(start);
+    }
+
+    /**
+     * Gets the time of the last sample of the period, formatted like the time strings of a container.
+     *
+     * @return the time in the format "yyyy-MM-dd HH:mm:ss+00:00"
+     */
+    public String getEndString() {
+        return Timestamps.format(end);
+    }
+
+    /**
+     * Gets the number of samples in the period.
+     *
+     * @return the number of samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return getStartString() + " to " + getEndString() + " (" + samples + " samples)";
+    }
+}
@@ -0,0 +1,142 @@
+package data;
+
+import java.text.ParseException;
+
+/**
+ * Helper methods for converting between the "yyyy-MM-dd HH:mm:ss+00:00" timestamps used in the CSV files
+ * and epoch seconds. The conversion is done with plain integer arithmetic so that no Date, Calendar
+ * or SimpleDateFormat object is created per sample.
+ */
+final class Timestamps {
+
+    static final long SECONDS_PER_HOUR = 3600L;
+    static final long SECONDS_PER_DAY = 86400L;
+
+    private Timestamps() {
+    }
+
+    /**
+     * Parses a timestamp in the format "yyyy-MM-dd HH:mm:ss", optionally followed by an offset
+     * such as "+00:00", "-05:00" or "Z". Any text after the offset is ignored.
+     *
+     * @param text the timestamp to parse
+     * @return the number of seconds since 1970-01-01 00:00:00 UTC
+     * @throws ParseException if the text is not a valid timestamp
+     */
+    static long parse(CharSequence text) throws ParseException {
+        if (text.length() < 19
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != ' '
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            throw new ParseException("Unparseable date: \"" + text + "\"", 0);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            throw new ParseException("Unparseable date: \"" + text + "\"", 0);
+        }
+        long epochSecond = toEpochSecond(year, month, day, hour, minute, second);
+
+        if (text.length() >= 25 && (text.charAt(19) == '+' || text.charAt(19) == '-') && text.charAt(22) == ':') {
+            int offsetHours = digits(text, 20, 2);
+            int offsetMinutes = digits(text, 23, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                throw new ParseException("Unparseable date: \"" + text + "\"", 19);
+            }
+            long offset = offsetHours * SECONDS_PER_HOUR + offsetMinutes * 60L;
+            epochSecond -= text.charAt(19) == '+' ? offset : -offset;
+        }
+        return epochSecond;
+    }
+
+    /**
+     * Formats epoch seconds as "yyyy-MM-dd HH:mm:ss+00:00".
+     *
+     * @param epochSecond the number of seconds since 1970-01-01 00:00:00 UTC
+     * @return the formatted timestamp
+     */
+    static String format(long epochSecond) {
+        long days = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        long civil = civilFromDays(days);
+        int year = (int) (civil >> 16);
+        int month = (int) ((civil >> 8) & 0xFF);
+        int day = (int) (civil & 0xFF);
+
+        char[] chars = "0000-00-00 00:00:00+00:00".toCharArray();
+        put(chars, 0, year, 4);
+        put(chars, 5, month, 2);
+        put(chars, 8, day, 2);
+        put(chars, 11, secondOfDay / 3600, 2);
+        put(chars, 14, (secondOfDay / 60) % 60, 2);
+        put(chars, 17, secondOfDay % 60, 2);
+        return new String(chars);
+    }
+
+    /**
+     * Converts a UTC calendar date and time to epoch seconds.
+     */
+    static long toEpochSecond(int year, int month, int day, int hour, int minute, int second) {
+        return daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * SECONDS_PER_HOUR + minute * 60L + second;
+    }
+
+    /**
+     * Returns the epoch second of the first instant of the month containing the given epoch second.
+     */
+    static long startOfMonth(long epochSecond) {
+        long civil = civilFromDays(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+        return daysFromCivil((int) (civil >> 16), (int) ((civil >> 8) & 0xFF), 1) * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 for a proleptic Gregorian date
+     * (algorithm from Howard Hinnant's "chrono-compatible low-level date algorithms").
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    /**
+     * Inverse of {@link #daysFromCivil}. The result is packed as {@code year << 16 | month << 8 | day}.
+     */
+    static long civilFromDays(long days) {
+        days += 719468L;
+        long era = Math.floorDiv(days, 146097L);
+        int dayOfEra = (int) (days - era * 146097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 16 | (long) month << 8 | day;
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void put(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * The samples of a column flagged by its quality checks (see {@link QualityRules}), one bit per row.
+ * Missing values (NaN) are flagged too, so the mask is also the null bitmap of the column.
+ * A mask covers the first rows of a column and is extended, without changing the bits of these rows, when
+ * rows are appended: the state of the stuck check after the last row is kept for that.
+ * <p>
+ * {@link #apply(Column)} gives a view of a column in which the flagged samples read as missing values (NaN),
+ * which every aggregation skips, so the data is filtered without being copied.
+ */
+final class ValidityMask {
+
+    /** The mask of no row. */
+    static final ValidityMask EMPTY = new ValidityMask(new long[0], 0, 0, 0, Double.NaN, 0L);
+
+    private final long[] flags;
+    private final int rows;
+    private final int flagged;
+    private final int missing;
+    private final double runValue;
+    private final long runStart;
+
+    private ValidityMask(long[] flags, int rows, int flagged, int missing, double runValue, long runStart) {
+        this.flags = flags;
+        this.rows = rows;
+        this.flagged = flagged;
+        this.missing = missing;
+        this.runValue = runValue;
+        this.runStart = runStart;
+    }
+
+    /**
+     * Checks the rows after the ones covered by this mask, in one pass.
+     *
+     * @param rules  the checks of the variable
+     * @param column the column of the variable, whose rows covered by this mask are unchanged
+     * @param times  the time index
+     * @param to     the number of rows the new mask covers
+     * @return the new mask, or this one if it already covers the rows
+     */
+    ValidityMask extend(QualityRules rules, Column column, TimeIndex times, int to) {
+        if (to <= rows) {
+            return this;
+        }
+        long[] newFlags = Arrays.copyOf(flags, (to + 63) >>> 6);
+        int newFlagged = flagged;
+        int newMissing = missing;
+        double value = runValue;
+        long start = runStart;
+        long stuckSeconds = rules.stuckSeconds();
+        Column.Reader reader = column.reader(rows);
+        TimeIndex.Reader timeReader = times.reader(rows);
+        for (int i = rows; i < to; i++) {
+            double next = reader.next();
+            long time = timeReader.next();
+            // a missing value ends the run of equal values, and the next value starts a new one
+            if (next != value) {
+                value = next;
+                start = time;
+            }
+            boolean flag = next != next || rules.check(next) != null
+                    || stuckSeconds > 0 && time - start >= stuckSeconds;
+            if (next != next) {
+                newMissing++;
+            }
+            if (flag) {
+                newFlags[i >>> 6] |= 1L << i;
+                newFlagged++;
+            }
+        }
+        return new ValidityMask(newFlags, to, newFlagged, newMissing, value, start);
+    }
+
+    /**
+     * Gets the number of rows covered by the mask.
+     */
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of flagged rows.
+     */
+    int flaggedCount() {
+        return flagged;
+    }
+
+    /**
+     * Gets the number of rows whose value is missing (NaN), which are flagged.
+     */
+    int missingCount() {
+        return missing;
+    }
+
+    /**
+     * Tells whether a row is flagged. Rows after the ones covered by the mask are not.
+     *
+     * @param row the row
+     * @return true if the sample of the row failed a check
+     */
+    boolean isFlagged(int row) {
+        return row < rows && (flags[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Finds the next flagged row.
+     *
+     * @param from the first row searched
+     * @param to   the end of the rows searched (exclusive)
+     * @return the row, or {@code to} if none of the rows is flagged
+     */
+    int nextFlagged(int from, int to) {
+        int end = Math.min(to, rows);
+        if (from >= end) {
+            return to;
+        }
+        int word = from >>> 6;
+        long bits = flags[word] & -1L << from;
+        while (true) {
+            if (bits != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return row < end ? row : to;
+            }
+            if (++word << 6 >= end) {
+                return to;
+            }
+            bits = flags[word];
+        }
+    }
+
+    /**
+     * Gives a view of a column in which the flagged rows read as missing values (NaN).
+     *
+     * @param column the column the mask was computed from
+     * @return the read-only view
+     */
+    Column apply(Column column) {
+        return new CheckedColumn(column);
+    }
+
+    /**
+     * A column read through the mask.
+     */
+    private final class CheckedColumn extends Column {
+        private final Column column;
+
+        CheckedColumn(Column column) {
+            this.column = column;
+        }
+
+        @Override
+        double get(int index) {
+            return isFlagged(index) ? Double.NaN : column.get(index);
+        }
+
+        @Override
+        Reader reader(int from) {
+            Column.Reader values = column.reader(from);
+            return new Reader() {
+                private int row = from;
+
+                @Override
+                double next() {
+                    double value = values.next();
+                    int i = row++;
+                    return i < rows && (flags[i >>> 6] & 1L << i) != 0 ? Double.NaN : value;
+                }
+            };
+        }
+
+        @Override
+        void set(int index, double value) {
+            throw new UnsupportedOperationException("A checked column is read-only");
+        }
+
+        @Override
+        int capacity() {
+            return column.capacity();
+        }
+
+        @Override
+        void copyTo(int from, double[] destination, int destinationFrom, int length) {
+            column.copyTo(from, destination, destinationFrom, length);
+            for (int row = nextFlagged(from, from + length); row < from + length; row = nextFlagged(row + 1, from + length)) {
+                destination[destinationFrom + row - from] = Double.NaN;
+            }
+        }
+
+        @Override
+        Column copyOf(int capacity) {
+            double[] values = new double[capacity];
+            copyTo(0, values, 0, Math.min(capacity, column.capacity()));
+            return Column.of(values);
+        }
+
+        @Override
+        long heapBytes() {
+            return column.heapBytes() + 32L + 8L * flags.length;
+        }
+    }
+}
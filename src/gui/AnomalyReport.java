@@ -0,0 +1,136 @@
+package gui;
+
+import data.Anomaly;
+import data.AnomalyDetector;
+import data.DataContainer;
+import data.TailFollower;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JFrame that lists the anomalies found by anomaly detectors, such as the overconsumptions of a building.
+ * The report either covers a date range of a dataset, or follows a live file and adds the anomalies found
+ * in every new version of the data.
+ */
+public class AnomalyReport extends JFrame {
+
+    /** The number of anomalies listed per variable over a date range; the others are only counted. */
+    private static final int MAX_LISTED = 200;
+
+    private final JTextArea textArea = new JTextArea();
+
+    /**
+     * Creates a report with the given text, such as the anomalies over a date range listed by
+     * {@link #describe(List, DataContainer, long, long)}.
+     *
+     * @param title the title of the window
+     * @param text  the anomalies
+     */
+    public AnomalyReport(String title, String text) {
+        super(title);
+        textArea.setText(text);
+        display();
+    }
+
+    /**
+     * Creates a report of the anomalies of a followed file, from a given time on, which is updated with every new
+     * version of the data until the window is closed. The detectors are updated with each version on the thread
+     * that reads the file.
+     *
+     * @param title     the title of the window
+     * @param detectors the detectors of the variables to check, which have read the current version of the data
+     * @param follower  the follower of the file
+     * @param from      the time of the first anomalies to list, as epoch seconds (UTC)
+     * @param initial   the anomalies found in the current version, listed by
+     *                  {@link #describeNew(List, DataContainer, long)}
+     */
+    public AnomalyReport(String title, List<AnomalyDetector> detectors, TailFollower follower, long from,
+            String initial) {
+        super(title);
+        Consumer<DataContainer> listener = data -> {
+            String text = describeNew(detectors, data, from);
+            if (!text.isEmpty()) {
+                SwingUtilities.invokeLater(() -> textArea.append(text));
+            }
+        };
+        textArea.setText("Following live updates, new anomalies are added below.\n\n" + initial);
+        follower.addListener(listener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                follower.removeListener(listener);
+            }
+        });
+        display();
+    }
+
+    /**
+     * Lists the anomalies over a date range. The detectors read the whole dataset, so that the usual values at the
+     * start of the range are learned from the samples before it. This may take a while and should not be called on
+     * the event dispatch thread.
+     *
+     * @param detectors the detectors of the variables to check, which have not read any data yet
+     * @param data      the whole dataset
+     * @param from      the start of the range, as epoch seconds (UTC)
+     * @param to        the end of the range, as epoch seconds (UTC)
+     * @return the number of anomalies of each variable, followed by the first ones
+     */
+    public static String describe(List<AnomalyDetector> detectors, DataContainer data, long from, long to) {
+        StringBuilder text = new StringBuilder();
+        for (AnomalyDetector detector : detectors) {
+            int found = 0;
+            StringBuilder lines = new StringBuilder();
+            for (Anomaly anomaly : detector.update(data)) {
+                if (anomaly.getEnd() >= from && anomaly.getStart() <= to) {
+                    if (found < MAX_LISTED) {
+                        lines.append("    ").append(anomaly).append('\n');
+                    }
+                    found++;
+                }
+            }
+            text.append(detector.getVariableName().trim()).append(": ").append(found)
+                    .append(found == 1 ? " anomaly\n" : " anomalies\n").append(lines);
+            if (found > MAX_LISTED) {
+                text.append("    ... and ").append(found - MAX_LISTED).append(" more\n");
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Updates the detectors with a new version of the data and lists the anomalies they find from a given time on.
+     *
+     * @param detectors the detectors of the variables to check
+     * @param data      the new version of the data
+     * @param from      the time of the first anomalies to list, as epoch seconds (UTC)
+     * @return one line per anomaly, empty if none was found
+     */
+    public static String describeNew(List<AnomalyDetector> detectors, DataContainer data, long from) {
+        StringBuilder text = new StringBuilder();
+        for (AnomalyDetector detector : detectors) {
+            for (Anomaly anomaly : detector.update(data)) {
+                if (anomaly.getEnd() >= from) {
+                    text.append(detector.getVariableName().trim()).append(": ").append(anomaly).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private void display() {
+        setSize(1000, 500);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLocationRelativeTo(null);
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        textArea.setMargin(new Insets(10, 10, 10, 10));
+        add(new JScrollPane(textArea), BorderLayout.CENTER);
+        setVisible(true);
+    }
+}
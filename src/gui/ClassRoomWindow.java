@@ -1,10 +1,23 @@
 package gui;
 
 import javax.swing.*;
+import data.Aggregate;
+import data.AnomalyDetector;
 import data.DataContainer;
+import data.DatasetRegistry;
+import data.Extremum;
+import data.GapFill;
+import data.SamplingInterval;
+import data.TailFollower;
 import java.awt.*;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Represents the classroom data viewer window.
@@ -15,9 +28,16 @@ import java.util.Date;
  */
 
 public class ClassRoomWindow extends JFrame {
+    /** The sum of the electric power of the computers, computed from the power columns of the file. */
+    private static final String PUISSANCE_SUM_EXPRESSION = "sum(prefix:\" puissance_electrique\")";
+
     private JTextField startDateField, endDateField;
     private JCheckBox chaudCheckbox, froidCheckbox, ambianteCheckbox, outdoorTempCheckbox, radiationCheckbox, puissanceSumCheckbox;
     private JComboBox<String> samplingTimeComboBox;
+    private JComboBox<Aggregate> aggregateComboBox;
+    private JComboBox<GapFill> gapFillComboBox;
+    private JCheckBox liveCheckbox;
+    private final TaskRunner runner = new TaskRunner(this);
 
     /**
      * Constructs a ClassRoomWindow object.
@@ -29,7 +49,7 @@ public class ClassRoomWindow extends JFrame {
         super("Classroom Data Viewer");
 
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        setSize(new Dimension(1200, 600));
+        setSize(new Dimension(1200, 650));
         setResizable(false);
         setLocationRelativeTo(null);
 
@@ -55,13 +75,6 @@ public class ClassRoomWindow extends JFrame {
         variablePanel.add(radiationCheckbox);
         variablePanel.add(puissanceSumCheckbox);
 
-        chaudCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        froidCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        ambianteCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        outdoorTempCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        radiationCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        puissanceSumCheckbox.addActionListener(e -> adjustCheckboxSelection());
-
         c.gridx = 0;
         c.gridy = 0;
         c.gridheight = 3;
@@ -94,76 +107,86 @@ public class ClassRoomWindow extends JFrame {
         c.gridy = 4;
         contentPane.add(new JLabel("Select Sampling Time:"), c);
 
-        String[] samplingTimes = {"1 Hour", "1 Day", "1 Month"};
+        String[] samplingTimes = {"1 Hour", "1 Day", "1 Week", "1 Month"};
         samplingTimeComboBox = new JComboBox<>(samplingTimes);
         c.gridx = 2;
         c.gridy = 4;
         contentPane.add(samplingTimeComboBox, c);
 
+        c.gridx = 1;
+        c.gridy = 5;
+        contentPane.add(new JLabel("Select Aggregate per Interval:"), c);
+
+        aggregateComboBox = new JComboBox<>(Aggregate.values());
+        c.gridx = 2;
+        c.gridy = 5;
+        contentPane.add(aggregateComboBox, c);
+
+        c.gridx = 1;
+        c.gridy = 6;
+        contentPane.add(new JLabel("Fill Gaps:"), c);
+
+        gapFillComboBox = new JComboBox<>(GapFill.values());
+        c.gridx = 2;
+        c.gridy = 6;
+        contentPane.add(gapFillComboBox, c);
+
+        liveCheckbox = new JCheckBox("Follow live updates");
+        c.gridx = 0;
+        c.gridy = 7;
+        contentPane.add(liveCheckbox, c);
+
         JButton plotButton = new JButton("Plot");
         plotButton.addActionListener(e -> handlePlot());
         c.gridx = 1;
-        c.gridy = 5;
+        c.gridy = 7;
         c.gridwidth = 2;
         c.anchor = GridBagConstraints.CENTER;
         contentPane.add(plotButton, c);
 
+        JButton peakButton = new JButton("Peak in Range");
+        peakButton.addActionListener(e -> showPeaks());
+        c.gridx = 1;
+        c.gridy = 8;
+        c.gridwidth = 2;
+        c.anchor = GridBagConstraints.CENTER;
+        contentPane.add(peakButton, c);
+
+        JButton anomaliesButton = new JButton("Detect Power Anomalies");
+        anomaliesButton.addActionListener(e -> showAnomalies());
+        c.gridx = 1;
+        c.gridy = 9;
+        c.gridwidth = 2;
+        c.anchor = GridBagConstraints.CENTER;
+        contentPane.add(anomaliesButton, c);
+
         JButton backButton = new JButton("Back");
         backButton.addActionListener(e -> {
             parent.setVisible(true);
             dispose();
         });
         c.gridx = 0;
-        c.gridy = 6;
+        c.gridy = 8;
         c.gridwidth = 1;
         contentPane.add(backButton, c);
 
-        setVisible(true);
-    }
-
-    /**
-     * Adjusts the enabled state of checkboxes based on selected values.
-     */
-
-    private void adjustCheckboxSelection() {
-        boolean radiationSelected = radiationCheckbox.isSelected();
-        boolean puissanceSumSelected = puissanceSumCheckbox.isSelected();
-
-        if (radiationSelected || puissanceSumSelected) {
-            chaudCheckbox.setEnabled(false);
-            froidCheckbox.setEnabled(false);
-            ambianteCheckbox.setEnabled(false);
-            outdoorTempCheckbox.setEnabled(false);
-        } else {
-            chaudCheckbox.setEnabled(true);
-            froidCheckbox.setEnabled(true);
-            ambianteCheckbox.setEnabled(true);
-            outdoorTempCheckbox.setEnabled(true);
-        }
+        c.gridx = 0;
+        c.gridy = 10;
+        c.gridwidth = 3;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        contentPane.add(runner.getComponent(), c);
 
-        boolean anyTempSelected = chaudCheckbox.isSelected() || froidCheckbox.isSelected() || ambianteCheckbox.isSelected() || outdoorTempCheckbox.isSelected();
-        if (anyTempSelected) {
-            radiationCheckbox.setEnabled(false);
-            puissanceSumCheckbox.setEnabled(false);
-        } else {
-            radiationCheckbox.setEnabled(true);
-            puissanceSumCheckbox.setEnabled(true);
-        }
+        setVisible(true);
     }
 
     /**
-     * Handles the plot button click event, performing input validation and creating the appropriate plot
-     * based on selected variables and the date range. I think I did more if-elses than necessary in this method (it can be optimized)
+     * Shows the largest and smallest value of every selected variable over the date range, with their times.
      */
 
-    private void handlePlot() {
+    private void showPeaks() {
         try {
-            String startDate = startDateField.getText().trim();
-            String endDate = endDateField.getText().trim();
-            String samplingTime = (String) samplingTimeComboBox.getSelectedItem();
-
-            startDate = appendTimeZone(startDate);
-            endDate = appendTimeZone(endDate);
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
 
             if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
                 JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -180,157 +203,247 @@ public class ClassRoomWindow extends JFrame {
                 return;
             }
 
-            DataContainer dataContainer = new DataContainer("classRoom_4A020_data.csv");
-            dataContainer.computePuissanceElectriqueSum();
-            DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
-            DataContainer resampledData = filteredData.resampleData(samplingTime);
-
-            String selectedVariable = null;
-
-            if (ambianteCheckbox.isSelected() && chaudCheckbox.isSelected() && outdoorTempCheckbox.isSelected() && froidCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                plotTimeChart.createFourPlots(timeStrings, consigneChaudValues, consigneFroidValues, temperatureAmbienteValues, outdoorTempValues);
-                return;      
-            }
-
-            if (chaudCheckbox.isSelected() && froidCheckbox.isSelected() && ambianteCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                plotTimeChart.createThreePlots(timeStrings, consigneChaudValues, consigneFroidValues, temperatureAmbienteValues);
+            ArrayList<String> variables = selectedVariables();
+            if (variables.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Please select at least one variable.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
-            
             }
 
-            if (chaudCheckbox.isSelected() && froidCheckbox.isSelected() && outdoorTempCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                plotTimeChart.createThreePlots2(timeStrings, consigneChaudValues, consigneFroidValues, outdoorTempValues);
-                return;      
-            }
+            ArrayList<String> fileVariables = new ArrayList<>(variables);
+            fileVariables.remove("puissance_electrique_sum");
+            runner.submit("Finding the peaks", progress -> {
+                progress.step("Reading classRoom_4A020_data.csv", 0);
+                DataContainer dataContainer = DatasetRegistry.getShared().get("classRoom_4A020_data.csv", fileVariables)
+                        .withDerived("puissance_electrique_sum", PUISSANCE_SUM_EXPRESSION);
+                DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
+
+                StringBuilder message = new StringBuilder();
+                for (int v = 0; v < variables.size(); v++) {
+                    String variable = variables.get(v);
+                    progress.step("Finding the peaks of " + variable.trim(), 50 + 50 * v / variables.size());
+                    Extremum max = filteredData.max(variable);
+                    Extremum min = filteredData.min(variable);
+                    message.append(variable.trim()).append(":\n");
+                    if (max == null) {
+                        message.append("    no values in this range\n");
+                    } else {
+                        message.append("    Maximum: ").append(String.format("%.2f", max.getValue())).append(" at ").append(max.getTimeString()).append("\n");
+                        message.append("    Minimum: ").append(String.format("%.2f", min.getValue())).append(" at ").append(min.getTimeString()).append("\n");
+                    }
+                }
+                return message.toString();
+            }, message -> JOptionPane.showMessageDialog(this, message, "Peak in Range", JOptionPane.INFORMATION_MESSAGE));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-            if (ambianteCheckbox.isSelected() && froidCheckbox.isSelected() && outdoorTempCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                plotTimeChart.createThreePlots3(timeStrings, temperatureAmbienteValues, consigneFroidValues, outdoorTempValues);
-                return;      
-            }
+    /**
+     * Reports the samples that deviate from the usual values of their hour of the week over the date range,
+     * or from the start date on as the file grows if live updates are followed.
+     */
 
-            if (ambianteCheckbox.isSelected() && chaudCheckbox.isSelected() && outdoorTempCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                plotTimeChart.createThreePlots4(timeStrings, consigneChaudValues, consigneFroidValues, outdoorTempValues);
-                return;      
-            }
-                
-            else if (chaudCheckbox.isSelected()) {
-                selectedVariable = " consigne_temperature_chaude";
-            } else if (froidCheckbox.isSelected()) {
-                selectedVariable = " consigne_temperature_froide";
-            } else if (ambianteCheckbox.isSelected()) {
-                selectedVariable = " temperature_ambiante";
-            } else if (outdoorTempCheckbox.isSelected()) {
-                selectedVariable = " Current Outdoor Temperature";
-            } else if (radiationCheckbox.isSelected()) {
-                selectedVariable = " Global Radiation";
-            } else if (puissanceSumCheckbox.isSelected()) {
-                selectedVariable = "puissance_electrique_sum";
-            }
+    private void showAnomalies() {
+        try {
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
 
-            if (puissanceSumCheckbox.isSelected() && radiationCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] puissanceValues = resampledData.getData("puissance_electrique_sum");
-                Double[] radiationValues = resampledData.getData(" Global Radiation");
-                plotTimeChart.createTwoPlots2(timeStrings, puissanceValues, radiationValues);
+            if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
+                JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (outdoorTempCheckbox.isSelected() && ambianteCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                plotTimeChart.createTwoPlots3(timeStrings, outdoorTempValues, temperatureAmbienteValues);
+            if (!isDateInRange(startDate) || !isDateInRange(endDate)) {
+                JOptionPane.showMessageDialog(this, "Date must be within the range: 2022-09-01 00:00:00 to 2023-08-31 23:00:00", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (outdoorTempCheckbox.isSelected() && chaudCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                plotTimeChart.createTwoPlots4(timeStrings, outdoorTempValues, consigneChaudValues);
+            if (isStartDateAfterEndDate(startDate, endDate)) {
+                JOptionPane.showMessageDialog(this, "Start date must be before the end date.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (outdoorTempCheckbox.isSelected() && froidCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] outdoorTempValues = resampledData.getData(" Current Outdoor Temperature");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                plotTimeChart.createTwoPlots5(timeStrings, outdoorTempValues, consigneFroidValues);
+            long from = toEpochSecond(startDate);
+            long to = toEpochSecond(endDate);
+            boolean live = liveCheckbox.isSelected();
+            runner.submit("Detecting anomalies", progress -> {
+                progress.step("Reading classRoom_4A020_data.csv", 0);
+                // the power of every computer, and their sum
+                ArrayList<String> powerVariables = new ArrayList<>();
+                for (String variable : DatasetRegistry.getShared().get("classRoom_4A020_data.csv", new ArrayList<>()).getAvailableVariables()) {
+                    if (variable.startsWith(" puissance_electrique")) {
+                        powerVariables.add(variable);
+                    }
+                }
+                ArrayList<AnomalyDetector> detectors = new ArrayList<>();
+                detectors.add(new AnomalyDetector("puissance_electrique_sum"));
+                for (String variable : powerVariables) {
+                    detectors.add(new AnomalyDetector(variable));
+                }
+                if (live) {
+                    TailFollower follower = DatasetRegistry.getShared().follow("classRoom_4A020_data.csv");
+                    follower.define("puissance_electrique_sum", PUISSANCE_SUM_EXPRESSION);
+                    progress.step("Detecting anomalies", 50);
+                    String initial = AnomalyReport.describeNew(detectors, follower.getCurrent(), from);
+                    return (Runnable) () -> new AnomalyReport("Live Anomalies: Computer Power", detectors, follower, from, initial);
+                }
+                DataContainer dataContainer = DatasetRegistry.getShared().get("classRoom_4A020_data.csv", powerVariables)
+                        .withDerived("puissance_electrique_sum", PUISSANCE_SUM_EXPRESSION);
+                progress.step("Detecting anomalies", 50);
+                String text = AnomalyReport.describe(detectors, dataContainer, from, to);
+                return (Runnable) () -> new AnomalyReport("Anomalies: Computer Power", text);
+            }, Runnable::run);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Handles the plot button click event, performing input validation and plotting the selected variables
+     * over the date range. The data is read and resampled in the background, and the plot is opened once it is ready.
+     */
+
+    private void handlePlot() {
+        try {
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
+            String samplingTime = (String) samplingTimeComboBox.getSelectedItem();
+            Aggregate aggregate = (Aggregate) aggregateComboBox.getSelectedItem();
+            GapFill fill = (GapFill) gapFillComboBox.getSelectedItem();
+
+            if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
+                JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (chaudCheckbox.isSelected() && froidCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                plotTimeChart.createTwoPlots6(timeStrings, consigneChaudValues, consigneFroidValues);
+            if (!isDateInRange(startDate) || !isDateInRange(endDate)) {
+                JOptionPane.showMessageDialog(this, "Date must be within the range: 2022-09-01 00:00:00 to 2023-08-31 23:00:00", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (chaudCheckbox.isSelected() && ambianteCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneChaudValues = resampledData.getData(" consigne_temperature_chaude");
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                plotTimeChart.createTwoPlots7(timeStrings, consigneChaudValues, temperatureAmbienteValues);
+            if (isStartDateAfterEndDate(startDate, endDate)) {
+                JOptionPane.showMessageDialog(this, "Start date must be before the end date.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (froidCheckbox.isSelected() && ambianteCheckbox.isSelected()){
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consigneFroidValues = resampledData.getData(" consigne_temperature_froide");
-                Double [] temperatureAmbienteValues = resampledData.getData(" temperature_ambiante");
-                plotTimeChart.createTwoPlots8(timeStrings, consigneFroidValues, temperatureAmbienteValues);
+            if (liveCheckbox.isSelected()) {
+                handleLivePlot(startDate, endDate, SamplingInterval.parse(samplingTime), aggregate, fill);
                 return;
             }
 
-            if (selectedVariable == null) {
+            // only the plotted columns are read from the file; the power columns are loaded with the sum
+            ArrayList<String> variables = selectedVariables();
+            if (variables.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Please select at least one variable to plot.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-
-            PlotTimeChart plotTimeChart = new PlotTimeChart();
-            String[] timeStrings = resampledData.getTimeStrings();
-            Double[] values = resampledData.getData(selectedVariable);
-            plotTimeChart.createChart(timeStrings, values, selectedVariable);
+            ArrayList<String> fileVariables = new ArrayList<>(variables);
+            fileVariables.remove("puissance_electrique_sum");
+            SamplingInterval interval = SamplingInterval.parse(samplingTime);
+            runner.submit("Preparing the plot", progress -> {
+                progress.step("Reading classRoom_4A020_data.csv", 0);
+                DataContainer dataContainer = DatasetRegistry.getShared().get("classRoom_4A020_data.csv", fileVariables)
+                        .withDerived("puissance_electrique_sum", PUISSANCE_SUM_EXPRESSION);
+                progress.step("Resampling the data", 50);
+                return dataContainer.filterByDateRange(startDate, endDate)
+                        .resampleData(interval, EnumSet.of(aggregate), variables, fill)
+                        .get(aggregate);
+            }, resampledData -> plot(resampledData, variables, aggregate).createChart());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /**
+     * Describes the plot of resampled variables, each drawn against the axis of its unit.
+     *
+     * @param resampledData the resampled data
+     * @param variables     the plotted variables
+     * @param aggregate     the aggregate computed per interval
+     * @return the plot
+     */
+
+    private PlotTimeChart plot(DataContainer resampledData, List<String> variables, Aggregate aggregate) {
+        StringBuilder title = new StringBuilder();
+        for (String variable : variables) {
+            title.append(title.length() == 0 ? "" : ", ").append(variable.trim());
+        }
+        if (aggregate != Aggregate.MEAN) {
+            title.append(" (").append(aggregate).append(")");
+        }
+        PlotTimeChart plot = new PlotTimeChart(resampledData, title.toString());
+        for (String variable : variables) {
+            plot.series(variable, variable.trim(), axisOf(variable));
+        }
+        return plot;
+    }
+
+    /**
+     * Gets the label of the axis of a variable, shared by the variables measured in the same unit.
+     *
+     * @param variable the name of the variable
+     * @return the label of the axis
+     */
+
+    private static String axisOf(String variable) {
+        switch (variable) {
+            case " Global Radiation":
+                return "Global Radiation";
+            case "puissance_electrique_sum":
+                return "Electric Power";
+            default:
+                return "Temperature (°C)";
+        }
+    }
+
+    /**
+     * Opens a plot of the selected variables that is updated as new rows are appended to the CSV file.
+     */
+
+    private void handleLivePlot(String startDate, String endDate, SamplingInterval interval, Aggregate aggregate,
+            GapFill fill) {
+        ArrayList<String> variables = selectedVariables();
+
+        if (variables.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select at least one variable to plot.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        Function<DataContainer, DataContainer> pipeline = data -> {
+            try {
+                return data.withDerived("puissance_electrique_sum", PUISSANCE_SUM_EXPRESSION)
+                        .filterByDateRange(startDate, endDate)
+                        .resampleData(interval, EnumSet.of(aggregate), variables, fill)
+                        .get(aggregate);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        runner.submit("Following classRoom_4A020_data.csv", progress -> {
+            progress.step("Reading classRoom_4A020_data.csv", 0);
+            TailFollower follower = DatasetRegistry.getShared().follow("classRoom_4A020_data.csv");
+            progress.step("Resampling the data", 50);
+            return new AbstractMap.SimpleImmutableEntry<>(follower, pipeline.apply(follower.getCurrent()));
+        }, followed -> plot(followed.getValue(), variables, aggregate).createLiveChart(followed.getKey(), pipeline));
+    }
+
+    /**
+     * Gets the names of the variables whose checkbox is selected.
+     *
+     * @return the selected variables
+     */
+    private ArrayList<String> selectedVariables() {
+        ArrayList<String> variables = new ArrayList<>();
+        if (chaudCheckbox.isSelected()) variables.add(" consigne_temperature_chaude");
+        if (froidCheckbox.isSelected()) variables.add(" consigne_temperature_froide");
+        if (ambianteCheckbox.isSelected()) variables.add(" temperature_ambiante");
+        if (outdoorTempCheckbox.isSelected()) variables.add(" Current Outdoor Temperature");
+        if (radiationCheckbox.isSelected()) variables.add(" Global Radiation");
+        if (puissanceSumCheckbox.isSelected()) variables.add("puissance_electrique_sum");
+        return variables;
+    }
+
     /**
      * Appends the time zone to the date string if not already present.
      *
@@ -387,4 +500,17 @@ public class ClassRoomWindow extends JFrame {
             return false;
         }
     }
+
+    /**
+     * Converts a date string to epoch seconds.
+     *
+     * @param date the date string, with its time zone.
+     * @return the number of seconds since 1970-01-01 00:00:00 UTC.
+     * @throws ParseException if the date format is invalid.
+     */
+
+    private long toEpochSecond(String date) throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
+        return sdf.parse(date).getTime() / 1000L;
+    }
 }
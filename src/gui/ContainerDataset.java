@@ -0,0 +1,361 @@
+package gui;
+
+import data.DataContainer;
+import data.SeriesView;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.DomainInfo;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
+import org.jfree.data.xy.AbstractXYDataset;
+
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A JFreeChart dataset plotting variables of a {@link DataContainer}. The series share the time index of the
+ * container and read it and the columns in place through {@link SeriesView}s: building the dataset copies and
+ * parses nothing, and drawing a point allocates nothing.
+ * <p>
+ * A series holding more samples than the chart has pixels only shows about one sample per pixel, selected with
+ * the Largest-Triangle-Three-Buckets algorithm (Steinarsson, 2013) so that the shape and the peaks of the curve
+ * are kept. The samples shown are selected again when the chart is zoomed or resized, see
+ * {@link #track(ChartPanel)}, so that zooming in reveals the details of the visible range. The visible range is
+ * copied once per selection, which decodes a compressed column block by block instead of once per sample, and
+ * the selected samples are kept in arrays. Missing values (NaN) are never merged with valid ones: the gaps of the
+ * curve are kept as they are.
+ */
+public class ContainerDataset extends AbstractXYDataset implements DomainInfo {
+
+    /**
+     * A plotted variable.
+     */
+    private static final class Series {
+        final String key;
+        final String variable;
+        SeriesView view;
+        /** The times of the samples shown, as epoch seconds, or null if all of them are. */
+        long[] times;
+        /** The values of the samples shown, or null if all of them are. */
+        double[] values;
+
+        Series(String key, String variable) {
+            this.key = key;
+            this.variable = variable;
+        }
+    }
+
+    private final List<Series> series = new ArrayList<>();
+    private DataContainer data;
+    private long shownFrom = Long.MIN_VALUE;
+    private long shownTo = Long.MAX_VALUE;
+    private int shownWidth = ChartPanel.DEFAULT_WIDTH;
+
+    /**
+     * Creates a dataset without series.
+     *
+     * @param data the container holding the variables to plot
+     */
+    public ContainerDataset(DataContainer data) {
+        this.data = data;
+    }
+
+    /**
+     * Adds a variable of the container as a series.
+     *
+     * @param key      the name of the series, shown in the legend
+     * @param variable the name of the variable
+     */
+    public void addSeries(String key, String variable) {
+        Series added = new Series(key, variable);
+        added.view = data.getSeries(variable);
+        select(added);
+        series.add(added);
+        fireDatasetChanged();
+    }
+
+    /**
+     * Replaces the container of the plotted variables, such as a new version of a followed file.
+     *
+     * @param data the new container, holding the same variables
+     */
+    public void setData(DataContainer data) {
+        this.data = data;
+        for (Series s : series) {
+            s.view = data.getSeries(s.variable);
+            select(s);
+        }
+        fireDatasetChanged();
+    }
+
+    /**
+     * Selects the samples shown for a time range and a chart width.
+     *
+     * @param from  the start of the visible range, as epoch milliseconds, or {@link Long#MIN_VALUE}
+     * @param to    the end of the visible range, as epoch milliseconds, or {@link Long#MAX_VALUE}
+     * @param width the width of the chart, in pixels
+     */
+    public void show(long from, long to, int width) {
+        if (from == shownFrom && to == shownTo && width == shownWidth) {
+            return;
+        }
+        shownFrom = from;
+        shownTo = to;
+        shownWidth = width;
+        for (Series s : series) {
+            select(s);
+        }
+        fireDatasetChanged();
+    }
+
+    /**
+     * Selects the samples of a series shown in the visible range. All of them are shown if the range holds no more
+     * samples than the chart has pixels: the renderer then only draws those of the range, found by binary search.
+     */
+    private void select(Series s) {
+        SeriesView view = s.view;
+        // one more sample on each side, so that the curve reaches the edges of the chart
+        int first = shownFrom == Long.MIN_VALUE ? 0 : Math.max(0, view.lowerBound(Math.floorDiv(shownFrom, 1000L)) - 1);
+        int last = shownTo == Long.MAX_VALUE ? view.size()
+                : Math.min(view.size(), view.lowerBound(-Math.floorDiv(-shownTo, 1000L)) + 1);
+        if (last - first <= shownWidth) {
+            s.times = null;
+            s.values = null;
+            return;
+        }
+        long[] times = new long[last - first];
+        double[] values = new double[last - first];
+        view.copyTimes(first, times, 0, times.length);
+        view.copyValues(first, values, 0, values.length);
+        Rows rows = new Rows(shownWidth);
+        decimate(times, values, 0, times.length, shownWidth, rows);
+        s.times = new long[rows.size];
+        s.values = new double[rows.size];
+        for (int i = 0; i < rows.size; i++) {
+            s.times[i] = times[rows.rows[i]];
+            s.values[i] = values[rows.rows[i]];
+        }
+    }
+
+    /**
+     * The indices of the selected samples.
+     */
+    private static final class Rows implements IntConsumer {
+        int[] rows;
+        int size;
+
+        Rows(int capacity) {
+            rows = new int[capacity + 16];
+        }
+
+        @Override
+        public void accept(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+
+    /**
+     * Selects the samples of a curve to draw with about a given number of points. The curve is cut at its missing
+     * values: every run of valid samples gets a share of the points proportional to its length, and the first
+     * missing value of every gap is kept so that the curve stays broken there.
+     *
+     * @param times     the times of the samples, as epoch seconds
+     * @param values    the values of the samples
+     * @param from      the index of the first sample to consider
+     * @param to        the index after the last sample to consider
+     * @param threshold the number of points to draw
+     * @param keep      called with the index of every selected sample, in increasing order
+     */
+    static void decimate(long[] times, double[] values, int from, int to, int threshold, IntConsumer keep) {
+        int valid = 0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) {
+                valid++;
+            }
+        }
+        int i = from;
+        while (i < to) {
+            if (Double.isNaN(values[i])) {
+                keep.accept(i);
+                while (i < to && Double.isNaN(values[i])) {
+                    i++;
+                }
+                continue;
+            }
+            int end = i;
+            while (end < to && !Double.isNaN(values[end])) {
+                end++;
+            }
+            lttb(times, values, i, end, (int) ((long) threshold * (end - i) / valid), keep);
+            i = end;
+        }
+    }
+
+    /**
+     * Selects the samples of a run of valid values with the Largest-Triangle-Three-Buckets algorithm. The first and
+     * last samples are kept; the others are split into buckets of equal size, and the sample kept in each bucket is
+     * the one forming the largest triangle with the sample kept in the previous bucket and the mean of the next one.
+     */
+    private static void lttb(long[] times, double[] values, int from, int to, int threshold, IntConsumer keep) {
+        int n = to - from;
+        if (threshold >= n || threshold < 3) {
+            if (threshold >= n) {
+                for (int i = from; i < to; i++) {
+                    keep.accept(i);
+                }
+            } else {
+                keep.accept(from);
+                if (n > 1) {
+                    keep.accept(to - 1);
+                }
+            }
+            return;
+        }
+
+        // times are taken relative to the first sample, to keep the precision of the areas
+        long origin = times[from];
+        double every = (double) (n - 2) / (threshold - 2);
+        int previous = from;
+        keep.accept(from);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = from + 1 + (int) (bucket * every);
+            int end = from + 1 + (int) ((bucket + 1) * every);
+
+            int nextEnd = Math.min(from + 1 + (int) ((bucket + 2) * every), to);
+            double meanX = 0;
+            double meanY = 0;
+            for (int i = end; i < nextEnd; i++) {
+                meanX += times[i] - origin;
+                meanY += values[i];
+            }
+            if (nextEnd > end) {
+                meanX /= nextEnd - end;
+                meanY /= nextEnd - end;
+            } else {
+                meanX = times[to - 1] - origin;
+                meanY = values[to - 1];
+            }
+
+            double previousX = times[previous] - origin;
+            double previousY = values[previous];
+            double largest = -1;
+            int selected = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((previousX - meanX) * (values[i] - previousY)
+                        - (previousX - (times[i] - origin)) * (meanY - previousY));
+                if (area > largest) {
+                    largest = area;
+                    selected = i;
+                }
+            }
+            keep.accept(selected);
+            previous = selected;
+        }
+        keep.accept(to - 1);
+    }
+
+    /**
+     * Makes the datasets of a chart follow its zoom and size: whenever the time axis or the panel changes, the
+     * samples of the visible range are selected again for the width of the panel.
+     *
+     * @param panel the panel of a chart plotting container datasets
+     */
+    public static void track(ChartPanel panel) {
+        XYPlot plot = panel.getChart().getXYPlot();
+        ValueAxis axis = plot.getDomainAxis();
+        Runnable update = () -> {
+            int width = panel.getWidth() > 0 ? panel.getWidth() : ChartPanel.DEFAULT_WIDTH;
+            long from = axis.isAutoRange() ? Long.MIN_VALUE : (long) Math.floor(axis.getLowerBound());
+            long to = axis.isAutoRange() ? Long.MAX_VALUE : (long) Math.ceil(axis.getUpperBound());
+            for (int d = 0; d < plot.getDatasetCount(); d++) {
+                if (plot.getDataset(d) instanceof ContainerDataset) {
+                    ((ContainerDataset) plot.getDataset(d)).show(from, to, width);
+                }
+            }
+        };
+        axis.addChangeListener(e -> update.run());
+        panel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                update.run();
+            }
+        });
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return series.size();
+    }
+
+    @Override
+    public Comparable getSeriesKey(int s) {
+        return series.get(s).key;
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    @Override
+    public int getItemCount(int s) {
+        Series plotted = series.get(s);
+        return plotted.times == null ? plotted.view.size() : plotted.times.length;
+    }
+
+    @Override
+    public Number getX(int s, int item) {
+        return getXValue(s, item);
+    }
+
+    @Override
+    public double getXValue(int s, int item) {
+        Series plotted = series.get(s);
+        return (plotted.times == null ? plotted.view.getTime(item) : plotted.times[item]) * 1000.0;
+    }
+
+    @Override
+    public Number getY(int s, int item) {
+        return getYValue(s, item);
+    }
+
+    @Override
+    public double getYValue(int s, int item) {
+        Series plotted = series.get(s);
+        return plotted.values == null ? plotted.view.getValue(item) : plotted.values[item];
+    }
+
+    /**
+     * Gets the time of the first sample of the container, whatever the samples shown, so that the time axis
+     * covers all of them when it is not zoomed.
+     */
+    @Override
+    public double getDomainLowerBound(boolean includeInterval) {
+        return series.isEmpty() || data.getNumberOfSamples() == 0 ? Double.NaN : data.getTime(0) * 1000.0;
+    }
+
+    /**
+     * Gets the time of the last sample of the container.
+     */
+    @Override
+    public double getDomainUpperBound(boolean includeInterval) {
+        return series.isEmpty() || data.getNumberOfSamples() == 0 ? Double.NaN
+                : data.getTime(data.getNumberOfSamples() - 1) * 1000.0;
+    }
+
+    @Override
+    public Range getDomainBounds(boolean includeInterval) {
+        if (series.isEmpty() || data.getNumberOfSamples() == 0) {
+            return null;
+        }
+        return new Range(getDomainLowerBound(includeInterval), getDomainUpperBound(includeInterval));
+    }
+}
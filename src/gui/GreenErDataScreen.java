@@ -1,10 +1,24 @@
 package gui;
 
 import javax.swing.*;
+import data.Aggregate;
+import data.AnomalyDetector;
 import data.DataContainer;
+import data.DatasetRegistry;
+import data.Extremum;
+import data.GapFill;
+import data.SamplingInterval;
+import data.TailFollower;
 import java.awt.*;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * A graphical user interface (GUI) for displaying and processing GreenEr data.
@@ -13,9 +27,16 @@ import java.util.Date;
  */
 
 public class GreenErDataScreen extends JFrame {
+    private static final String CONSUMPTION_VARIABLE = "Green_Er_Consumption_kW";
+    private static final String PRODUCTION_VARIABLE = "Green_Er_Production_kW";
+
     private JTextField startDateField, endDateField;
     private JCheckBox consumptionCheckbox, productionCheckbox, temperatureCheckbox, radiationCheckbox;
     private JComboBox<String> samplingTimeComboBox;
+    private JComboBox<Aggregate> aggregateComboBox;
+    private JComboBox<GapFill> gapFillComboBox;
+    private JCheckBox liveCheckbox;
+    private final TaskRunner runner = new TaskRunner(this);
 
     /**
      * Constructs the GreenErDataScreen GUI.
@@ -27,7 +48,7 @@ public class GreenErDataScreen extends JFrame {
         super("Green-Er Data");
 
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        setSize(new Dimension(1200, 600));
+        setSize(new Dimension(1200, 650));
         setResizable(false);
         setLocationRelativeTo(null);
 
@@ -49,11 +70,6 @@ public class GreenErDataScreen extends JFrame {
         variablePanel.add(temperatureCheckbox);
         variablePanel.add(radiationCheckbox);
 
-        consumptionCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        productionCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        temperatureCheckbox.addActionListener(e -> adjustCheckboxSelection());
-        radiationCheckbox.addActionListener(e -> adjustCheckboxSelection());
-
         c.gridx = 0;
         c.gridy = 0;
         c.gridheight = 3;
@@ -86,16 +102,39 @@ public class GreenErDataScreen extends JFrame {
         c.gridy = 4;
         contentPane.add(new JLabel("Select Sampling Time:"), c);
 
-        String[] samplingTimes = {"1 Hour", "1 Day", "1 Month"};
+        String[] samplingTimes = {"1 Hour", "1 Day", "1 Week", "1 Month"};
         samplingTimeComboBox = new JComboBox<>(samplingTimes);
         c.gridx = 2;
         c.gridy = 4;
         contentPane.add(samplingTimeComboBox, c);
 
+        c.gridx = 1;
+        c.gridy = 5;
+        contentPane.add(new JLabel("Select Aggregate per Interval:"), c);
+
+        aggregateComboBox = new JComboBox<>(Aggregate.values());
+        c.gridx = 2;
+        c.gridy = 5;
+        contentPane.add(aggregateComboBox, c);
+
+        c.gridx = 1;
+        c.gridy = 6;
+        contentPane.add(new JLabel("Fill Gaps:"), c);
+
+        gapFillComboBox = new JComboBox<>(GapFill.values());
+        c.gridx = 2;
+        c.gridy = 6;
+        contentPane.add(gapFillComboBox, c);
+
+        liveCheckbox = new JCheckBox("Follow live updates");
+        c.gridx = 0;
+        c.gridy = 7;
+        contentPane.add(liveCheckbox, c);
+
         JButton plotButton = new JButton("Plot");
         plotButton.addActionListener(e -> handlePlot());
         c.gridx = 1;
-        c.gridy = 5;
+        c.gridy = 7;
         c.gridwidth = 2;
         c.anchor = GridBagConstraints.CENTER;
         contentPane.add(plotButton, c);
@@ -103,63 +142,55 @@ public class GreenErDataScreen extends JFrame {
         JButton energyPercentageButton = new JButton("Calculate Autonomous Energy Percentage");
         energyPercentageButton.addActionListener(e -> calculateAutonomousEnergyPercentage());
         c.gridx = 1;
-        c.gridy = 6;
+        c.gridy = 8;
         c.gridwidth = 2;
         c.anchor = GridBagConstraints.CENTER;
         contentPane.add(energyPercentageButton, c);
 
+        JButton peakButton = new JButton("Peak in Range");
+        peakButton.addActionListener(e -> showPeaks());
+        c.gridx = 1;
+        c.gridy = 9;
+        c.gridwidth = 2;
+        c.anchor = GridBagConstraints.CENTER;
+        contentPane.add(peakButton, c);
+
+        JButton anomaliesButton = new JButton("Detect Consumption Anomalies");
+        anomaliesButton.addActionListener(e -> showAnomalies());
+        c.gridx = 1;
+        c.gridy = 10;
+        c.gridwidth = 2;
+        c.anchor = GridBagConstraints.CENTER;
+        contentPane.add(anomaliesButton, c);
+
         JButton backButton = new JButton("Back");
         backButton.addActionListener(e -> {
             parent.setVisible(true);
             dispose();
         });
         c.gridx = 0;
-        c.gridy = 6;
+        c.gridy = 8;
         c.gridwidth = 1;
         contentPane.add(backButton, c);
 
-        setVisible(true);
-    }
-
-    /**
-     * Adjusts the state of checkboxes based on the user's selection to ensure correct variable selection.
-     */
-
-    private void adjustCheckboxSelection() {
-        boolean consumptionSelected = consumptionCheckbox.isSelected();
-        boolean productionSelected = productionCheckbox.isSelected();
-        boolean temperatureSelected = temperatureCheckbox.isSelected();
-        boolean radiationSelected = radiationCheckbox.isSelected();
-
-        if (temperatureSelected || radiationSelected) {
-            consumptionCheckbox.setEnabled(false);
-            productionCheckbox.setEnabled(false);
-            if (temperatureSelected) radiationCheckbox.setEnabled(false);
-            if (radiationSelected) temperatureCheckbox.setEnabled(false);
-        } else {
-            consumptionCheckbox.setEnabled(true);
-            productionCheckbox.setEnabled(true);
-            temperatureCheckbox.setEnabled(true);
-            radiationCheckbox.setEnabled(true);
-        }
+        c.gridx = 0;
+        c.gridy = 11;
+        c.gridwidth = 3;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        contentPane.add(runner.getComponent(), c);
 
-        if (consumptionSelected || productionSelected) {
-            temperatureCheckbox.setEnabled(false);
-            radiationCheckbox.setEnabled(false);
-        }
+        setVisible(true);
     }
 
     /**
      * Calculates and displays the percentage of autonomous energy based on the selected date range.
+     * The data is read and summed in the background.
      */
 
     private void calculateAutonomousEnergyPercentage() {
         try {
-            String startDate = startDateField.getText().trim();
-            String endDate = endDateField.getText().trim();
-    
-            startDate = appendTimeZone(startDate);
-            endDate = appendTimeZone(endDate);
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
     
             if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
                 JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -176,35 +207,132 @@ public class GreenErDataScreen extends JFrame {
                 return;
             }
     
-            DataContainer dataContainer = new DataContainer("GreenEr_data.csv");
-            DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
-    
-            Double totalEnergy = 0.0;
-            Double autonomousEnergy = 0.0;
-    
-            for (String variable : filteredData.getAvailableVariables()) {
-                if (variable.startsWith("Green_Er_Consumption_kW")) {
-                    Double[] consumptionValues = filteredData.getData(variable);
-                    for (Double value : consumptionValues) {
-                        totalEnergy += value;
-                    }
+            runner.submit("Calculating the autonomous energy percentage", progress -> {
+                progress.step("Reading GreenEr_data.csv", 0);
+                DataContainer dataContainer = DatasetRegistry.getShared().get("GreenEr_data.csv",
+                        Arrays.asList(CONSUMPTION_VARIABLE, PRODUCTION_VARIABLE));
+                progress.step("Summing the energy", 60);
+                DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
+                return new double[] {filteredData.sum(CONSUMPTION_VARIABLE), filteredData.sum(PRODUCTION_VARIABLE)};
+            }, sums -> {
+                double totalEnergy = sums[0];
+                double autonomousEnergy = sums[1];
+
+                if (totalEnergy == 0) {
+                    JOptionPane.showMessageDialog(this, "Total energy is zero, unable to calculate percentage.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
-                if (variable.startsWith("Green_Er_Production_kW")) {
-                    Double[] autonomousValues = filteredData.getData(variable);
-                    for (Double value : autonomousValues) {
-                        autonomousEnergy += value;
+
+                double percentage = (autonomousEnergy / totalEnergy) * 100;
+
+                JOptionPane.showMessageDialog(this, "Autonomous Energy Percentage: " + String.format("%.2f", percentage) + "%", "Result", JOptionPane.INFORMATION_MESSAGE);
+            });
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Shows the largest and smallest value of every selected variable over the date range, with their times.
+     */
+
+    private void showPeaks() {
+        try {
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
+
+            if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
+                JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            if (!isDateInRange(startDate) || !isDateInRange(endDate)) {
+                JOptionPane.showMessageDialog(this, "Date must be within the range: 2022-09-01 00:00:00 to 2023-08-31 23:00:00", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            if (isStartDateAfterEndDate(startDate, endDate)) {
+                JOptionPane.showMessageDialog(this, "Start date must be before the end date.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            ArrayList<String> variables = selectedVariables();
+            if (variables.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Please select at least one variable.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            runner.submit("Finding the peaks", progress -> {
+                progress.step("Reading GreenEr_data.csv", 0);
+                DataContainer dataContainer = DatasetRegistry.getShared().get("GreenEr_data.csv", variables);
+                DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
+
+                StringBuilder message = new StringBuilder();
+                for (int v = 0; v < variables.size(); v++) {
+                    String variable = variables.get(v);
+                    progress.step("Finding the peaks of " + variable.trim(), 50 + 50 * v / variables.size());
+                    Extremum max = filteredData.max(variable);
+                    Extremum min = filteredData.min(variable);
+                    message.append(variable.trim()).append(":\n");
+                    if (max == null) {
+                        message.append("    no values in this range\n");
+                    } else {
+                        message.append("    Maximum: ").append(String.format("%.2f", max.getValue())).append(" at ").append(max.getTimeString()).append("\n");
+                        message.append("    Minimum: ").append(String.format("%.2f", min.getValue())).append(" at ").append(min.getTimeString()).append("\n");
                     }
                 }
+                return message.toString();
+            }, message -> JOptionPane.showMessageDialog(this, message, "Peak in Range", JOptionPane.INFORMATION_MESSAGE));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Reports the samples that deviate from the usual values of their hour of the week over the date range,
+     * or from the start date on as the file grows if live updates are followed.
+     */
+
+    private void showAnomalies() {
+        try {
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
+
+            if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
+                JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
-    
-            if (totalEnergy == 0) {
-                JOptionPane.showMessageDialog(this, "Total energy is zero, unable to calculate percentage.", "Error", JOptionPane.ERROR_MESSAGE);
+
+            if (!isDateInRange(startDate) || !isDateInRange(endDate)) {
+                JOptionPane.showMessageDialog(this, "Date must be within the range: 2022-09-01 00:00:00 to 2023-08-31 23:00:00", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-    
-            double percentage = (autonomousEnergy / totalEnergy) * 100;
-    
-            JOptionPane.showMessageDialog(this, "Autonomous Energy Percentage: " + String.format("%.2f", percentage) + "%", "Result", JOptionPane.INFORMATION_MESSAGE);
+
+            if (isStartDateAfterEndDate(startDate, endDate)) {
+                JOptionPane.showMessageDialog(this, "Start date must be before the end date.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            long from = toEpochSecond(startDate);
+            long to = toEpochSecond(endDate);
+            List<AnomalyDetector> detectors = Arrays.asList(new AnomalyDetector(CONSUMPTION_VARIABLE));
+            if (liveCheckbox.isSelected()) {
+                runner.submit("Following GreenEr_data.csv", progress -> {
+                    progress.step("Reading GreenEr_data.csv", 0);
+                    TailFollower follower = DatasetRegistry.getShared().follow("GreenEr_data.csv");
+                    progress.step("Detecting anomalies", 50);
+                    String initial = AnomalyReport.describeNew(detectors, follower.getCurrent(), from);
+                    return new AbstractMap.SimpleImmutableEntry<>(follower, initial);
+                }, followed -> new AnomalyReport("Live Anomalies: Green_Er_Consumption_kW", detectors,
+                        followed.getKey(), from, followed.getValue()));
+            } else {
+                runner.submit("Detecting anomalies", progress -> {
+                    progress.step("Reading GreenEr_data.csv", 0);
+                    DataContainer dataContainer = DatasetRegistry.getShared().get("GreenEr_data.csv", Arrays.asList(CONSUMPTION_VARIABLE));
+                    progress.step("Detecting anomalies", 50);
+                    return AnomalyReport.describe(detectors, dataContainer, from, to);
+                }, text -> new AnomalyReport("Anomalies: Green_Er_Consumption_kW", text));
+            }
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -212,16 +340,16 @@ public class GreenErDataScreen extends JFrame {
 
      /**
      * Handles the plot request by validating the date range, selected variables, and sampling time.
+     * The data is read and resampled in the background, and the plot is opened once it is ready.
      */
 
     private void handlePlot() {
         try {
-            String startDate = startDateField.getText().trim();
-            String endDate = endDateField.getText().trim();
+            String startDate = appendTimeZone(startDateField.getText().trim());
+            String endDate = appendTimeZone(endDateField.getText().trim());
             String samplingTime = (String) samplingTimeComboBox.getSelectedItem();
-
-            startDate = appendTimeZone(startDate);
-            endDate = appendTimeZone(endDate);
+            Aggregate aggregate = (Aggregate) aggregateComboBox.getSelectedItem();
+            GapFill fill = (GapFill) gapFillComboBox.getSelectedItem();
 
             if (!isValidDateFormat(startDate) || !isValidDateFormat(endDate)) {
                 JOptionPane.showMessageDialog(this, "Wrong date format, please try again!", "Error", JOptionPane.ERROR_MESSAGE);
@@ -238,43 +366,118 @@ public class GreenErDataScreen extends JFrame {
                 return;
             }
 
-            DataContainer dataContainer = new DataContainer("GreenEr_data.csv");
-            DataContainer filteredData = dataContainer.filterByDateRange(startDate, endDate);
-            DataContainer resampledData = filteredData.resampleData(samplingTime);
-
-            String selectedVariable = null;
-            if (consumptionCheckbox.isSelected() && productionCheckbox.isSelected()) {
-                PlotTimeChart plotTimeChart = new PlotTimeChart();
-                String[] timeStrings = resampledData.getTimeStrings();
-                Double[] consumptionValues = resampledData.getData("Green_Er_Consumption_kW");
-                Double[] productionValues = resampledData.getData("Green_Er_Production_kW");
-                plotTimeChart.createTwoPlots(timeStrings, consumptionValues, productionValues);
+            if (liveCheckbox.isSelected()) {
+                handleLivePlot(startDate, endDate, SamplingInterval.parse(samplingTime), aggregate, fill);
                 return;
-            } else if (consumptionCheckbox.isSelected()) {
-                selectedVariable = "Green_Er_Consumption_kW";
-            } else if (productionCheckbox.isSelected()) {
-                selectedVariable = "Green_Er_Production_kW";
-            } else if (temperatureCheckbox.isSelected()) {
-                selectedVariable = "Outdoor Temperature";
-            } else if (radiationCheckbox.isSelected()) {
-                selectedVariable = "Global Radiation";
             }
 
-            if (selectedVariable == null) {
+            // only the plotted columns are read from the file and resampled
+            ArrayList<String> variables = selectedVariables();
+            if (variables.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Please select at least one variable to plot.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-
-            PlotTimeChart plotTimeChart = new PlotTimeChart();
-            String[] timeStrings = resampledData.getTimeStrings();
-            Double[] values = resampledData.getData(selectedVariable);
-            plotTimeChart.createChart(timeStrings, values, selectedVariable);
+            SamplingInterval interval = SamplingInterval.parse(samplingTime);
+            runner.submit("Preparing the plot", progress -> {
+                progress.step("Reading GreenEr_data.csv", 0);
+                DataContainer dataContainer = DatasetRegistry.getShared().get("GreenEr_data.csv", variables);
+                progress.step("Resampling the data", 50);
+                return dataContainer.filterByDateRange(startDate, endDate)
+                        .resampleData(interval, EnumSet.of(aggregate), variables, fill)
+                        .get(aggregate);
+            }, resampledData -> plot(resampledData, variables, aggregate).createChart());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /**
+     * Opens a plot of the selected variables that is updated as new rows are appended to the CSV file.
+     */
+
+    private void handleLivePlot(String startDate, String endDate, SamplingInterval interval, Aggregate aggregate,
+            GapFill fill) {
+        ArrayList<String> variables = selectedVariables();
+
+        if (variables.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select at least one variable to plot.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        Function<DataContainer, DataContainer> pipeline = data -> {
+            try {
+                return data.filterByDateRange(startDate, endDate)
+                        .resampleData(interval, EnumSet.of(aggregate), variables, fill)
+                        .get(aggregate);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        runner.submit("Following GreenEr_data.csv", progress -> {
+            progress.step("Reading GreenEr_data.csv", 0);
+            TailFollower follower = DatasetRegistry.getShared().follow("GreenEr_data.csv");
+            progress.step("Resampling the data", 50);
+            return new AbstractMap.SimpleImmutableEntry<>(follower, pipeline.apply(follower.getCurrent()));
+        }, followed -> plot(followed.getValue(), variables, aggregate).createLiveChart(followed.getKey(), pipeline));
+    }
+
+    /**
+     * Describes the plot of resampled variables, each drawn against the axis of its unit.
+     *
+     * @param resampledData the resampled data
+     * @param variables     the plotted variables
+     * @param aggregate     the aggregate computed per interval
+     * @return the plot
+     */
+
+    private PlotTimeChart plot(DataContainer resampledData, List<String> variables, Aggregate aggregate) {
+        StringBuilder title = new StringBuilder();
+        for (String variable : variables) {
+            title.append(title.length() == 0 ? "" : ", ").append(variable.trim());
+        }
+        if (aggregate != Aggregate.MEAN) {
+            title.append(" (").append(aggregate).append(")");
+        }
+        PlotTimeChart plot = new PlotTimeChart(resampledData, title.toString());
+        for (String variable : variables) {
+            plot.series(variable, variable.trim(), axisOf(variable));
+        }
+        return plot;
+    }
+
+    /**
+     * Gets the label of the axis of a variable, shared by the variables measured in the same unit.
+     *
+     * @param variable the name of the variable
+     * @return the label of the axis
+     */
+
+    private static String axisOf(String variable) {
+        switch (variable) {
+            case "Outdoor Temperature":
+                return "Temperature (°C)";
+            case "Global Radiation":
+                return "Global Radiation";
+            default:
+                return "Power (kW)";
+        }
+    }
+
+    /**
+     * Gets the names of the variables whose checkbox is selected.
+     *
+     * @return the selected variables
+     */
+    private ArrayList<String> selectedVariables() {
+        ArrayList<String> variables = new ArrayList<>();
+        if (consumptionCheckbox.isSelected()) variables.add("Green_Er_Consumption_kW");
+        if (productionCheckbox.isSelected()) variables.add("Green_Er_Production_kW");
+        if (temperatureCheckbox.isSelected()) variables.add("Outdoor Temperature");
+        if (radiationCheckbox.isSelected()) variables.add("Global Radiation");
+        return variables;
+    }
+
     /**
      * Helper method to append time zone information to a date string.
      *
@@ -331,4 +534,17 @@ public class GreenErDataScreen extends JFrame {
             return false;
         }
     }
+
+    /**
+     * Converts a date string to epoch seconds.
+     *
+     * @param date the date string, with its time zone.
+     * @return the number of seconds since 1970-01-01 00:00:00 UTC.
+     * @throws ParseException if the date format is invalid.
+     */
+
+    private long toEpochSecond(String date) throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
+        return sdf.parse(date).getTime() / 1000L;
+    }
 }
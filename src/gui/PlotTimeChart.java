@@ -3,623 +3,175 @@ package gui;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
-import org.jfree.data.time.Hour;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+
+import data.DataContainer;
+import data.TailFollower;
 
 import javax.swing.*;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * This class provides methods to create and display time series plots using JFreeChart.
- * It supports creating single, two, or three time series plots with custom data.
+ * A plot shows any number of variables of a container over its time index, added with
+ * {@link #series(String, String, String)}. Variables measured in different units are drawn against their own
+ * axes. The series read the container in place and long series are decimated to about one point per pixel of the
+ * chart width, see {@link ContainerDataset}, so that a plot of many variables costs about as much as one.
  */
 
 public class PlotTimeChart {
 
     /**
-     * Creates a single time series plot with data provided as time strings and corresponding values.
-     * The plot is displayed in a new JFrame.
-     *
-     * @param timeStrings An array of time strings in the format "yyyy-MM-dd HH:mm:ssXXX"
-     * @param values      An array of Double values corresponding to the times
-     * @param variableName The name of the variable represented by the time series
+     * A variable added to the plot.
      */
+    private static final class Series {
+        final String variable;
+        final String label;
+        final String axis;
 
-    public void createChart(String[] timeStrings, Double[] values, String variableName) {
-        try {
-            TimeSeries series = new TimeSeries(variableName);
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                series.addOrUpdate(new Hour(date), values[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection(series);
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: " + variableName,
-                    "Time",
-                    variableName,
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
+        Series(String variable, String label, String axis) {
+            this.variable = variable;
+            this.label = label;
+            this.axis = axis;
         }
     }
 
-     /**
-     * Creates a time series plot with two series: one for consumption and one for production.
-     * The plot is displayed in a new JFrame.
+    private final DataContainer data;
+    private final String title;
+    private final List<Series> series = new ArrayList<>();
+
+    /**
+     * Creates an empty plot of the variables of a container.
      *
-     * @param timeStrings An array of time strings in the format "yyyy-MM-dd HH:mm:ssXXX"
-     * @param consumptionValues An array of Double values representing consumption at the given times
-     * @param productionValues  An array of Double values representing production at the given times
+     * @param data  The container holding the variables, or the first version of the data for a live plot
+     * @param title The title of the plot
      */
 
-    public void createTwoPlots(String[] timeStrings, Double[] consumptionValues, Double[] productionValues) {
-        try {
-            TimeSeries consumptionSeries = new TimeSeries("Green_Er_Consumption_kW");
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                consumptionSeries.addOrUpdate(new Hour(date), consumptionValues[i]);
-            }
-
-            TimeSeries productionSeries = new TimeSeries("Green_Er_production_kW");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                productionSeries.addOrUpdate(new Hour(date), productionValues[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection();
-            dataset.addSeries(consumptionSeries);
-            dataset.addSeries(productionSeries);
-
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Consumption and Production",
-                    "Time",
-                    "Values (kW)",
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public PlotTimeChart(DataContainer data, String title) {
+        this.data = data;
+        this.title = title;
     }
 
     /**
-     * Creates a time series plot with three series: one for "Consigne Temperature Chaude",
-     * one for "Consigne Temperature Froide", and one for "Temperature Ambiante".
-     * The plot is displayed in a new JFrame.
+     * Adds a variable to the plot. The variables with the same axis label share an axis: the first one is drawn
+     * on the left of the plot, the others on the right.
      *
-     * @param timeStrings An array of time strings in the format "yyyy-MM-dd HH:mm:ssXXX"
-     * @param consigneTempChaude An array of Double values for "Consigne Temperature Chaude"
-     * @param consigneTempFroide An array of Double values for "Consigne Temperature Froide"
-     * @param temperatureAmbiante An array of Double values for "Temperature Ambiante"
+     * @param variable The name of the variable in the container
+     * @param label    The name of the series, shown in the legend
+     * @param axis     The label of the value axis of the series
+     * @return this plot
      */
 
-    public void createThreePlots(String[] timeStrings, Double[] consigneTempChaude, Double[] consigneTempFroide, Double[] temperatureAmbiante) {
-        try {
-            TimeSeries tempChaudeSeries = new TimeSeries("Consigne Temperature Chaude");
-            TimeSeries tempFroideSeries = new TimeSeries("Consigne Temperature Froide");
-            TimeSeries tempAmbianteSeries = new TimeSeries("Température Ambiante");
-
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                tempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-                tempFroideSeries.addOrUpdate(new Hour(date), consigneTempFroide[i]);
-                tempAmbianteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection();
-            dataset.addSeries(tempChaudeSeries);
-            dataset.addSeries(tempFroideSeries);
-            dataset.addSeries(tempAmbianteSeries);
-
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-    public void createThreePlots2(String[] timeStrings, Double[] consigneTempChaude, Double[] consigneTempFroide, Double[] outDoorTemperature) {
-        try {
-            TimeSeries tempChaudeSeries = new TimeSeries("Consigne Temperature Chaude");
-            TimeSeries tempFroideSeries = new TimeSeries("Consigne Temperature Froide");
-            TimeSeries outdoorTempSeries = new TimeSeries("Current Outdoor Temperature");
-
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                tempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-                tempFroideSeries.addOrUpdate(new Hour(date), consigneTempFroide[i]);
-                outdoorTempSeries.addOrUpdate(new Hour(date), outDoorTemperature[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection();
-            dataset.addSeries(tempChaudeSeries);
-            dataset.addSeries(tempFroideSeries);
-            dataset.addSeries(outdoorTempSeries);
-
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void createThreePlots3(String[] timeStrings, Double[] temperatureAmbiante, Double[] consigneTempFroide, Double[] outDoorTemperature) {
-        try {
-            TimeSeries tempAmbianteSeries = new TimeSeries("Température Ambiante");
-            TimeSeries tempFroideSeries = new TimeSeries("Consigne Temperature Froide");
-            TimeSeries outdoorTempSeries = new TimeSeries("Current Outdoor Temperature");
-
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                tempAmbianteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-                tempFroideSeries.addOrUpdate(new Hour(date), consigneTempFroide[i]);
-                outdoorTempSeries.addOrUpdate(new Hour(date), outDoorTemperature[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection();
-            dataset.addSeries(tempAmbianteSeries);
-            dataset.addSeries(tempFroideSeries);
-            dataset.addSeries(outdoorTempSeries);
-
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void createThreePlots4(String[] timeStrings, Double[] temperatureAmbiante, Double[] consigneTempChaude, Double[] outDoorTemperature) {
-        try {
-            TimeSeries tempAmbianteSeries = new TimeSeries("Température Ambiante");
-            TimeSeries tempChaudSeries = new TimeSeries("Consigne Temperature Chaude");
-            TimeSeries outdoorTempSeries = new TimeSeries("Current Outdoor Temperature");
-
-            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-            for (int i = 0; i < timeStrings.length; i++) {
-                Date date = format.parse(timeStrings[i]);
-                tempAmbianteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-                tempChaudSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-                outdoorTempSeries.addOrUpdate(new Hour(date), outDoorTemperature[i]);
-            }
-
-            TimeSeriesCollection dataset = new TimeSeriesCollection();
-            dataset.addSeries(tempAmbianteSeries);
-            dataset.addSeries(tempChaudSeries);
-            dataset.addSeries(outdoorTempSeries);
-
-            JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-            );
-
-            JFrame frame = new JFrame("Plot");
-            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-            frame.add(new ChartPanel(chart));
-            frame.pack();
-            frame.setVisible(true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public PlotTimeChart series(String variable, String label, String axis) {
+        series.add(new Series(variable, label, axis));
+        return this;
     }
 
-public void createTwoPlots2(String[] timeStrings, Double[] puissanceValues, Double[] radiationValues) {
-    try {
-        TimeSeries puissanceSeries = new TimeSeries("puissance_electrique_sum");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
+    /**
+     * Creates the chart, with one dataset per value axis. All the datasets share the time index of the container.
+     *
+     * @param chartTitle The title shown above the chart
+     * @return the chart
+     */
 
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            puissanceSeries.addOrUpdate(new Hour(date), puissanceValues[i]);
+    private JFreeChart build(String chartTitle) {
+        Map<String, ContainerDataset> datasets = new LinkedHashMap<>();
+        for (Series s : series) {
+            datasets.computeIfAbsent(s.axis, axis -> new ContainerDataset(data)).addSeries(s.label, s.variable);
         }
-
-        TimeSeries radiationSeries = new TimeSeries(" Global Radiation");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            radiationSeries.addOrUpdate(new Hour(date), radiationValues[i]);
+        if (datasets.isEmpty()) {
+            throw new IllegalArgumentException("No variable to plot");
         }
 
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(puissanceSeries);
-        dataset.addSeries(radiationSeries);
-
+        List<String> axes = new ArrayList<>(datasets.keySet());
         JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                "Data Plot: Radiation and Puissance",
+                chartTitle,
                 "Time",
-                "Values (kW)",
-                dataset,
+                axes.get(0),
+                datasets.get(axes.get(0)),
                 true,
                 true,
                 false
         );
 
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-public void createTwoPlots3(String[] timeStrings, Double[] outdoorTemperature, Double[] temperatureAmbiante) {
-    try {
-        TimeSeries outdoorTemperatureSeries = new TimeSeries(" Current Outdoor Temperature");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            outdoorTemperatureSeries.addOrUpdate(new Hour(date), outdoorTemperature[i]);
-        }
-
-        TimeSeries temperatureAmbienteSeries = new TimeSeries(" temperature_ambiante");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            temperatureAmbienteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(outdoorTemperatureSeries);
-        dataset.addSeries(temperatureAmbienteSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
-
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-public void createTwoPlots4(String[] timeStrings, Double[] outdoorTemperature, Double[] consigneTempChaude) {
-    try {
-        TimeSeries outdoorTemperatureSeries = new TimeSeries(" Current Outdoor Temperature");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            outdoorTemperatureSeries.addOrUpdate(new Hour(date), outdoorTemperature[i]);
-        }
-
-        TimeSeries consigneTempChaudeSeries = new TimeSeries(" consigne_temperature_chaude");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(outdoorTemperatureSeries);
-        dataset.addSeries(consigneTempChaudeSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
-
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-public void createTwoPlots5(String[] timeStrings, Double[] outdoorTemperature, Double[] consigneTempFroid) {
-    try {
-        TimeSeries outdoorTemperatureSeries = new TimeSeries(" Current Outdoor Temperature");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            outdoorTemperatureSeries.addOrUpdate(new Hour(date), outdoorTemperature[i]);
-        }
-
-        TimeSeries consigneTempFroidSeries = new TimeSeries(" consigne_temperature_froide");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempFroidSeries.addOrUpdate(new Hour(date), consigneTempFroid[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(outdoorTemperatureSeries);
-        dataset.addSeries(consigneTempFroidSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
-
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-public void createTwoPlots6(String[] timeStrings, Double[] consigneTempChaude, Double[] consigneTempFroid) {
-    try {
-        TimeSeries consigneTempChaudeSeries = new TimeSeries(" consigne_temperature_chaude");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-        }
-
-        TimeSeries consigneTempFroidSeries = new TimeSeries(" consigne_temperature_froide");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempFroidSeries.addOrUpdate(new Hour(date), consigneTempFroid[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(consigneTempChaudeSeries);
-        dataset.addSeries(consigneTempFroidSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
-
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-    }
-}
-
-public void createTwoPlots7(String[] timeStrings, Double[] consigneTempChaude, Double[] temperatureAmbiante) {
-    try {
-        TimeSeries consigneTempChaudeSeries = new TimeSeries(" consigne_temperature_chaude");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-        }
-
-        TimeSeries temperatureAmbienteSeries = new TimeSeries(" temperature_ambiante");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            temperatureAmbienteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(consigneTempChaudeSeries);
-        dataset.addSeries(temperatureAmbienteSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
-
-        JFrame frame = new JFrame("Plot");
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
-        frame.pack();
-        frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
+        XYPlot plot = chart.getXYPlot();
+        for (int i = 1; i < axes.size(); i++) {
+            NumberAxis axis = new NumberAxis(axes.get(i));
+            axis.setAutoRangeIncludesZero(false);
+            XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, false);
+            renderer.setBaseToolTipGenerator(plot.getRenderer().getBaseToolTipGenerator());
+            plot.setRangeAxis(i, axis);
+            plot.setDataset(i, datasets.get(axes.get(i)));
+            plot.mapDatasetToRangeAxis(i, i);
+            plot.setRenderer(i, renderer);
+        }
+        return chart;
     }
-}
-
-public void createTwoPlots8(String[] timeStrings, Double[] consigneTempFroide, Double[] temperatureAmbiante) {
-    try {
-        TimeSeries consigneTempFroideSeries = new TimeSeries(" consigne_temperature_froide");
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
 
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            consigneTempFroideSeries.addOrUpdate(new Hour(date), consigneTempFroide[i]);
-        }
-
-        TimeSeries temperatureAmbienteSeries = new TimeSeries(" temperature_ambiante");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            temperatureAmbienteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(consigneTempFroideSeries);
-        dataset.addSeries(temperatureAmbienteSeries);
+    /**
+     * Creates the time series plot and displays it in a new JFrame.
+     */
 
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                    "Data Plot: Temperatures",
-                    "Time",
-                    "Temperature (°C)",
-                    dataset,
-                    true,
-                    true,
-                    false
-        );
+    public void createChart() {
+        JFreeChart chart = build("Data Plot: " + title);
 
         JFrame frame = new JFrame("Plot");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
+        ChartPanel chartPanel = new ChartPanel(chart);
+        ContainerDataset.track(chartPanel);
+        frame.add(chartPanel);
         frame.pack();
         frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
     }
-}
-
-public void createFourPlots(String[] timeStrings, Double[] consigneTempChaude, Double[] consigneTempFroide, Double[] temperatureAmbiante, Double[] outdoorTempValues) {
-    try {
-        TimeSeries tempChaudeSeries = new TimeSeries(" consigne_temperature_chaude");
-        TimeSeries tempFroideSeries = new TimeSeries(" consigne_temperature_froide");
-        TimeSeries tempAmbianteSeries = new TimeSeries(" temperature_ambiante");
-        TimeSeries outdoorTempSeries = new TimeSeries(" Current Outdoor Temperature");
 
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssXXX");
-
-        for (int i = 0; i < timeStrings.length; i++) {
-            Date date = format.parse(timeStrings[i]);
-            tempChaudeSeries.addOrUpdate(new Hour(date), consigneTempChaude[i]);
-            tempFroideSeries.addOrUpdate(new Hour(date), consigneTempFroide[i]);
-            tempAmbianteSeries.addOrUpdate(new Hour(date), temperatureAmbiante[i]);
-            outdoorTempSeries.addOrUpdate(new Hour(date), outdoorTempValues[i]);
-        }
-
-        TimeSeriesCollection dataset = new TimeSeriesCollection();
-        dataset.addSeries(tempChaudeSeries);
-        dataset.addSeries(tempFroideSeries);
-        dataset.addSeries(tempAmbianteSeries);
-        dataset.addSeries(outdoorTempSeries);
-
-        JFreeChart chart = ChartFactory.createTimeSeriesChart(
-                "Data Plot: Temperatures",
-                "Time",
-                "Temperature (°C)",
-                dataset,
-                true,
-                true,
-                false
-        );
+    /**
+     * Creates a time series plot that follows a growing CSV file. Every time new rows are read, the data is
+     * passed through the pipeline (for example a date range filter followed by a resampling) and the series
+     * are replaced with the result. The plot stops listening when its window is closed, and the follower of the
+     * registry stops reading the file once no window listens to it (see {@link data.DatasetRegistry#follow(String)}).
+     * <p>
+     * The pipeline runs on the thread that reads the file, not on the event dispatch thread; the first version,
+     * the container of this plot, is processed by the caller, likewise off the event dispatch thread.
+     *
+     * @param follower  the follower of the CSV file
+     * @param pipeline  the processing applied to each new version of the data before plotting
+     */
 
-        JFrame frame = new JFrame("Plot");
+    public void createLiveChart(TailFollower follower, Function<DataContainer, DataContainer> pipeline) {
+        JFreeChart chart = build("Live Plot: " + title);
+
+        XYPlot plot = chart.getXYPlot();
+        Consumer<DataContainer> listener = data -> {
+            DataContainer plotted = pipeline.apply(data);
+            SwingUtilities.invokeLater(() -> {
+                for (int i = 0; i < plot.getDatasetCount(); i++) {
+                    ((ContainerDataset) plot.getDataset(i)).setData(plotted);
+                }
+            });
+        };
+        follower.addListener(listener);
+
+        JFrame frame = new JFrame("Live Plot");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new ChartPanel(chart));
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                follower.removeListener(listener);
+            }
+        });
+        ChartPanel chartPanel = new ChartPanel(chart);
+        ContainerDataset.track(chartPanel);
+        frame.add(chartPanel);
         frame.pack();
         frame.setVisible(true);
-
-    } catch (Exception e) {
-        e.printStackTrace();
     }
 }
-}
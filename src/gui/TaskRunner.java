@@ -0,0 +1,209 @@
+package gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs the work of the buttons of a window, such as loading, filtering and resampling data, on a background
+ * thread with a {@link SwingWorker}, so that the window stays responsive. The runner shows a progress bar and a
+ * button to cancel the running task; its component is added to the window like any other.
+ * <p>
+ * A window runs one task at a time. A click while a task runs cancels it and queues the new task, which starts
+ * as soon as the cancelled one stops, so repeated clicks are coalesced into the last one instead of piling up.
+ * Cancellation is cooperative: a task stops at its next call to {@link Progress#step}, and the result of a
+ * cancelled task is discarded.
+ */
+public class TaskRunner {
+
+    /**
+     * Work run on the background thread. It must not touch Swing components.
+     *
+     * @param <T> the type of the result
+     */
+    public interface Task<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /**
+     * The progress of a running task, shown in the progress bar.
+     */
+    public interface Progress {
+        /**
+         * Reports the step the task is starting.
+         *
+         * @param message the description of the step
+         * @param percent the share of the work done, from 0 to 100
+         * @throws CancellationException if the task was cancelled, to stop it
+         */
+        void step(String message, int percent);
+    }
+
+    private final Component owner;
+    private final JPanel panel = new JPanel(new BorderLayout(10, 0));
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton cancelButton = new JButton("Cancel");
+    private Worker<?> running;
+    private Worker<?> pending;
+
+    /**
+     * Creates the runner of a window.
+     *
+     * @param owner the window, over which errors are shown
+     */
+    public TaskRunner(Component owner) {
+        this.owner = owner;
+        progressBar.setStringPainted(true);
+        progressBar.setPreferredSize(new Dimension(400, progressBar.getPreferredSize().height));
+        cancelButton.addActionListener(e -> cancel());
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.EAST);
+        idle();
+    }
+
+    /**
+     * Gets the progress bar and cancel button.
+     *
+     * @return the component to add to the window
+     */
+    public JComponent getComponent() {
+        return panel;
+    }
+
+    /**
+     * Runs a task in the background, after cancelling the running one if any. Called on the event dispatch thread.
+     *
+     * @param description the description shown until the task reports its first step
+     * @param task        the work, run on a background thread
+     * @param onSuccess   called with the result on the event dispatch thread, unless the task was cancelled
+     * @param <T>         the type of the result
+     */
+    public <T> void submit(String description, Task<T> task, Consumer<T> onSuccess) {
+        Worker<T> worker = new Worker<>(description, task, onSuccess);
+        if (running == null) {
+            start(worker);
+        } else {
+            pending = worker;
+            showProgress(description + " (waiting for the previous task to stop)", 0);
+            running.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the running task and the one waiting for it, if any.
+     */
+    public void cancel() {
+        pending = null;
+        if (running != null) {
+            showProgress("Cancelling...", progressBar.getValue());
+            running.cancel(false);
+        }
+    }
+
+    private void start(Worker<?> worker) {
+        running = worker;
+        showProgress(worker.description, 0);
+        cancelButton.setEnabled(true);
+        worker.execute();
+    }
+
+    private void idle() {
+        showProgress("", 0);
+        cancelButton.setEnabled(false);
+    }
+
+    private void showProgress(String message, int percent) {
+        progressBar.setValue(percent);
+        progressBar.setString(message);
+    }
+
+    /**
+     * Called on the event dispatch thread once a worker has stopped, whether it completed, failed or was cancelled.
+     */
+    private void finished(Worker<?> worker) {
+        if (worker != running) {
+            return;
+        }
+        running = null;
+        Worker<?> next = pending;
+        pending = null;
+        if (next != null) {
+            start(next);
+        } else {
+            idle();
+        }
+        if (!worker.isCancelled()) {
+            worker.deliver();
+        }
+    }
+
+    /**
+     * Runs a task. The end of the task is not detected with {@link SwingWorker#done()} alone because it is called as
+     * soon as the worker is cancelled, while the task may still be running: the task reports its end itself once it
+     * has started, and done() reports it for a worker cancelled before its task started, which never runs.
+     */
+    private final class Worker<T> extends SwingWorker<T, Void> implements Progress {
+        private final String description;
+        private final Task<T> task;
+        private final Consumer<T> onSuccess;
+        private volatile T result;
+        private volatile Exception failure;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        Worker(String description, Task<T> task, Consumer<T> onSuccess) {
+            this.description = description;
+            this.task = task;
+            this.onSuccess = onSuccess;
+        }
+
+        @Override
+        protected T doInBackground() {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                result = task.run(this);
+            } catch (CancellationException e) {
+                // stopped at a step
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                SwingUtilities.invokeLater(() -> finished(this));
+            }
+            return result;
+        }
+
+        @Override
+        protected void done() {
+            if (started.compareAndSet(false, true)) {
+                finished(this);
+            }
+        }
+
+        @Override
+        public void step(String message, int percent) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (running == this) {
+                    showProgress(message, percent);
+                }
+            });
+        }
+
+        void deliver() {
+            if (failure != null) {
+                JOptionPane.showMessageDialog(owner, "Error: " + failure.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                try {
+                    onSuccess.accept(result);
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(owner, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+    }
+}
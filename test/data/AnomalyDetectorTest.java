@@ -0,0 +1,146 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnomalyDetectorTest {
+
+    private static final String CONSUMPTION = " Green_Er_Consumption_kW";
+    private static final int HOURS_PER_WEEK = 168;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reportsTheOverconsumptionsAndDropsOnceAnHourIsWarmedUp() throws Exception {
+        // a spike before the warm-up, two spikes a week apart at the same hours, and a drop at another hour
+        int early = 2 * HOURS_PER_WEEK + 60;
+        int spike = 12 * HOURS_PER_WEEK + 40;
+        int drop = 15 * HOURS_PER_WEEK + 90;
+        DataContainer data = consumption("spikes.csv", 20, row -> {
+            if (row >= early && row < early + 3 || row >= spike && row < spike + 3
+                    || row >= spike + HOURS_PER_WEEK && row < spike + HOURS_PER_WEEK + 3) {
+                return usual(row) + 200.0;
+            }
+            return row == drop ? 0.0 : usual(row);
+        });
+        List<Anomaly> anomalies = new AnomalyDetector(CONSUMPTION).update(data);
+
+        assertEquals(anomalies.toString(), 3, anomalies.size());
+        for (int a = 0; a < 2; a++) {
+            // the first spike is clipped when it is learned, so the band does not widen to hide the second one
+            int start = spike + a * HOURS_PER_WEEK;
+            Anomaly anomaly = anomalies.get(a);
+            assertEquals(time(start), anomaly.getStart());
+            assertEquals(time(start + 2), anomaly.getEnd());
+            assertEquals(3, anomaly.getSamples());
+            assertTrue(anomaly.isAbove());
+            assertEquals(usual(anomaly.getPeakTime()) + 200.0, anomaly.getPeakValue(), 0.0);
+            assertEquals(usual(anomaly.getPeakTime()), anomaly.getExpected(), 2.0);
+        }
+        Anomaly below = anomalies.get(2);
+        assertEquals(time(drop), below.getStart());
+        assertEquals(1, below.getSamples());
+        assertFalse(below.isAbove());
+        assertTrue(below.getScore() < -AnomalyDetector.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void learnsALastingChangeOfTheUsualValues() throws Exception {
+        int change = 10 * HOURS_PER_WEEK;
+        DataContainer data = consumption("change.csv", 40, row -> usual(row) + (row >= change ? 30.0 : 0.0));
+        AnomalyDetector detector = new AnomalyDetector(CONSUMPTION, AnomalyDetector.DEFAULT_THRESHOLD,
+                AnomalyDetector.DEFAULT_WARM_UP, 2 * 7 * Timestamps.SECONDS_PER_DAY);
+
+        assertFalse(detector.update(data.filterByTimeRange(time(0), time(change + 2 * HOURS_PER_WEEK))).isEmpty());
+        detector.update(data.filterByTimeRange(time(0), time(30 * HOURS_PER_WEEK)));
+        assertEquals(new ArrayList<Anomaly>(), detector.update(data));
+        long last = data.getTime(data.getNumberOfSamples() - 1);
+        for (long time = last - 7 * Timestamps.SECONDS_PER_DAY; time < last; time += Timestamps.SECONDS_PER_HOUR) {
+            assertEquals(usual(time) + 30.0, detector.getExpected(time), 2.0);
+            assertTrue(detector.getStandardDeviation(time) < 5.0);
+        }
+    }
+
+    @Test
+    public void readsOnlyTheRowsAppendedSinceTheLastUpdate() throws Exception {
+        int spike = 10 * HOURS_PER_WEEK + 100;
+        DataContainer data = consumption("live.csv", 16, row -> row >= spike && row < spike + 4
+                ? usual(row) * 3 + 50.0 : usual(row));
+
+        AnomalyDetector whole = new AnomalyDetector(CONSUMPTION);
+        List<Anomaly> expected = whole.update(data);
+        AnomalyDetector live = new AnomalyDetector(CONSUMPTION);
+        List<Anomaly> found = new ArrayList<>();
+        int rows = data.getNumberOfSamples();
+        for (int end = 500; end < rows + 500; end += 500) {
+            // every version holds the rows read before and the ones appended since
+            DataContainer version = data.filterByTimeRange(time(0), time(Math.min(end, rows - 1)));
+            found.addAll(live.update(version));
+            assertTrue(live.update(version).isEmpty());
+        }
+
+        assertEquals(1, expected.size());
+        assertEquals(expected.toString(), found.toString());
+        for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+            long time = time(hour);
+            assertEquals(whole.getExpected(time), live.getExpected(time), 0.0);
+            assertEquals(whole.getStandardDeviation(time), live.getStandardDeviation(time), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveThreshold() {
+        new AnomalyDetector(CONSUMPTION, 0.0, AnomalyDetector.DEFAULT_WARM_UP);
+    }
+
+    private static long time(int row) {
+        return TestData.START + Timestamps.SECONDS_PER_HOUR * row;
+    }
+
+    private static double usual(int row) {
+        return usual(time(row));
+    }
+
+    /**
+     * Gets the usual consumption of a building at a time: high during the working hours of the weekdays, with a
+     * noise cycling through the same five values at each hour of the week.
+     */
+    private static double usual(long time) {
+        long hours = Math.floorDiv(time, Timestamps.SECONDS_PER_HOUR);
+        long days = Math.floorDiv(hours, 24);
+        int hourOfDay = (int) Math.floorMod(hours, 24);
+        // 1970-01-01 was a Thursday
+        int dayOfWeek = (int) Math.floorMod(days + 3, 7);
+        boolean working = dayOfWeek < 5 && hourOfDay >= 8 && hourOfDay < 18;
+        long week = Math.floorDiv(days + 3, 7);
+        return (working ? 60.0 : 15.0) + Math.floorMod(week * 7 + hourOfDay, 5) - 2.0;
+    }
+
+    /**
+     * Writes hourly readings of the consumption of a building over some weeks.
+     */
+    private DataContainer consumption(String name, int weeks, IntToDoubleFunction value) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time," + CONSUMPTION + "\n");
+            for (int row = 0; row < weeks * HOURS_PER_WEEK; row++) {
+                writer.write(Timestamps.format(time(row)) + ", " + value.applyAsDouble(row) + "\n");
+            }
+        }
+        return new DataContainer(file.toString());
+    }
+}
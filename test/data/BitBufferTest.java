@@ -0,0 +1,54 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitBufferTest {
+
+    @Test
+    public void readsBackValuesOfEveryWidth() {
+        Random random = new Random(1);
+        BitBuffer buffer = new BitBuffer();
+        long[] values = new long[5000];
+        int[] widths = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = i % 65;
+            values[i] = widths[i] == 64 ? random.nextLong() : random.nextLong() & ((1L << widths[i]) - 1);
+            buffer.write(values[i], widths[i]);
+        }
+        long[] words = buffer.toWords();
+        long position = 0;
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("value " + i, values[i], BitBuffer.read(words, position, widths[i]));
+            position += widths[i];
+        }
+        assertEquals(position, buffer.size());
+    }
+
+    @Test
+    public void writesOnlyTheLowBits() {
+        BitBuffer buffer = new BitBuffer();
+        buffer.write(-1L, 3);
+        buffer.write(0L, 2);
+        long[] words = buffer.toWords();
+        assertEquals(0b111, BitBuffer.read(words, 0, 3));
+        assertEquals(0, BitBuffer.read(words, 3, 2));
+        assertEquals(5, buffer.size());
+    }
+
+    @Test
+    public void readsSignedValuesAndBits() {
+        BitBuffer buffer = new BitBuffer();
+        for (long value = -40; value <= 40; value++) {
+            buffer.write(value, 7);
+        }
+        long[] words = buffer.toWords();
+        for (long value = -40, position = 0; value <= 40; value++, position += 7) {
+            assertEquals(value, BitBuffer.readSigned(words, position, 7));
+            assertEquals(value < 0, BitBuffer.bit(words, position));
+        }
+    }
+}
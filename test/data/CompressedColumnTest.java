@@ -0,0 +1,124 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedColumnTest {
+
+    private static final int BLOCK = CompressedColumn.BLOCK_SIZE;
+
+    @Test
+    public void roundTripsMissingValuesAndSignedZeros() {
+        double[] values = new double[3000];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 7) {
+                case 0:
+                    values[i] = Double.NaN;
+                    break;
+                case 1:
+                    values[i] = 0.0;
+                    break;
+                case 2:
+                    values[i] = -0.0;
+                    break;
+                case 3:
+                    values[i] = Double.longBitsToDouble(0x7ff8000000000001L);
+                    break;
+                case 4:
+                    values[i] = i % 2 == 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                    break;
+                case 5:
+                    values[i] = i % 2 == 0 ? Double.MIN_VALUE : -Double.MAX_VALUE;
+                    break;
+                default:
+                    values[i] = i * 0.1;
+            }
+        }
+        assertRoundTrip(values);
+    }
+
+    @Test
+    public void roundTripsConstantRuns() {
+        double[] values = new double[5 * BLOCK];
+        Arrays.fill(values, 0, 2 * BLOCK + 17, 131.0720062);
+        Arrays.fill(values, 2 * BLOCK + 17, 4 * BLOCK, Double.NaN);
+        Arrays.fill(values, 4 * BLOCK, values.length, 3276.799984);
+        CompressedColumn column = assertRoundTrip(values);
+        assertTrue("constant runs should take about a bit per value", column.heapBytes() < values.length);
+    }
+
+    @Test
+    public void roundTripsAroundBlockBoundaries() {
+        Random random = new Random(7);
+        for (int rows : new int[]{0, 1, 2, BLOCK - 1, BLOCK, BLOCK + 1, 3 * BLOCK + 5}) {
+            double[] values = new double[rows];
+            double level = 20.0;
+            for (int i = 0; i < rows; i++) {
+                level += random.nextGaussian();
+                values[i] = Math.round(level * 100) / 100.0;
+            }
+            assertRoundTrip(values);
+        }
+    }
+
+    @Test
+    public void roundTripsRandomBits() {
+        Random random = new Random(11);
+        double[] values = new double[2 * BLOCK + 100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.longBitsToDouble(random.nextLong());
+        }
+        assertRoundTrip(values);
+    }
+
+    @Test
+    public void copyOfGivesAWritableColumn() {
+        double[] values = {1.5, Double.NaN, -0.0, 4.0};
+        Column copy = CompressedColumn.encode(Column.of(values), values.length).copyOf(6);
+        copy.set(5, 9.0);
+        assertEquals(6, copy.capacity());
+        assertSameBits(-0.0, copy.get(2), "row 2");
+        assertEquals(9.0, copy.get(5), 0.0);
+        assertEquals(0.0, copy.get(4), 0.0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void isReadOnly() {
+        CompressedColumn.encode(Column.of(new double[]{1.0}), 1).set(0, 2.0);
+    }
+
+    /**
+     * Checks that every way of reading the compressed column gives back the bits of the values.
+     */
+    private static CompressedColumn assertRoundTrip(double[] values) {
+        CompressedColumn column = CompressedColumn.encode(Column.of(values), values.length);
+        assertEquals(values.length, column.capacity());
+        for (int i = 0; i < values.length; i++) {
+            assertSameBits(values[i], column.get(i), "get(" + i + ")");
+        }
+        for (int from : new int[]{0, 1, BLOCK - 1, BLOCK, BLOCK + 1, values.length / 2}) {
+            if (from >= values.length) {
+                continue;
+            }
+            Column.Reader reader = column.reader(from);
+            for (int i = from; i < values.length; i++) {
+                assertSameBits(values[i], reader.next(), "reader(" + from + ") at " + i);
+            }
+            double[] copy = new double[values.length - from + 2];
+            column.copyTo(from, copy, 2, values.length - from);
+            for (int i = from; i < values.length; i++) {
+                assertSameBits(values[i], copy[i - from + 2], "copyTo(" + from + ") at " + i);
+            }
+        }
+        return column;
+    }
+
+    private static void assertSameBits(double expected, double actual, String where) {
+        assertEquals(where, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+}
@@ -0,0 +1,101 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedTimeIndexTest {
+
+    private static final int BLOCK = CompressedColumn.BLOCK_SIZE;
+    private static final long START = 1661990400L;
+
+    @Test
+    public void roundTripsRegularTimes() {
+        for (int rows : new int[]{0, 1, 2, BLOCK - 1, BLOCK, BLOCK + 1, 4 * BLOCK + 3}) {
+            long[] times = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                times[i] = START + 3600L * i;
+            }
+            CompressedTimeIndex index = assertRoundTrip(times);
+            if (rows > 2 * BLOCK) {
+                assertTrue("a regular index should take about a bit per row", index.heapBytes() < rows);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsIrregularTimes() {
+        Random random = new Random(3);
+        long[] times = new long[3 * BLOCK + 17];
+        long time = START;
+        for (int i = 0; i < times.length; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    // a repeated timestamp
+                    break;
+                case 1:
+                    time += 1 + random.nextInt(60);
+                    break;
+                case 2:
+                    time += 600 + random.nextInt(300);
+                    break;
+                case 3:
+                    // a gap of days, beyond the short encodings
+                    time += 86400L * (1 + random.nextInt(30));
+                    break;
+                default:
+                    time += 3600;
+            }
+            times[i] = time;
+        }
+        assertRoundTrip(times);
+    }
+
+    @Test
+    public void roundTripsExtremeSteps() {
+        long[] times = {Long.MIN_VALUE / 4, -1, 0, 1, Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, Long.MAX_VALUE / 2};
+        assertRoundTrip(times);
+    }
+
+    @Test
+    public void findsTimesLikeTheUncompressedIndex() {
+        long[] times = new long[2 * BLOCK + 50];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = START + 60L * (i - i % 3);
+        }
+        TimeIndex plain = TimeIndex.of(times);
+        CompressedTimeIndex index = CompressedTimeIndex.encode(plain, times.length);
+        int[][] ranges = {{0, times.length}, {1, BLOCK + 1}, {BLOCK - 1, BLOCK + 2}, {BLOCK, 2 * BLOCK + 50}, {5, 5}};
+        for (int[] range : ranges) {
+            for (long time = times[0] - 61; time <= times[times.length - 1] + 61; time += 30) {
+                assertEquals("lowerBound(" + range[0] + ", " + range[1] + ", " + time + ")",
+                        plain.lowerBound(range[0], range[1], time), index.lowerBound(range[0], range[1], time));
+            }
+        }
+    }
+
+    private static CompressedTimeIndex assertRoundTrip(long[] times) {
+        CompressedTimeIndex index = CompressedTimeIndex.encode(TimeIndex.of(times), times.length);
+        for (int i = 0; i < times.length; i++) {
+            assertEquals("get(" + i + ")", times[i], index.get(i));
+        }
+        for (int from : new int[]{0, 1, BLOCK - 1, BLOCK, BLOCK + 1, times.length / 2}) {
+            if (from >= times.length) {
+                continue;
+            }
+            TimeIndex.Reader reader = index.reader(from);
+            for (int i = from; i < times.length; i++) {
+                assertEquals("reader(" + from + ") at " + i, times[i], reader.next());
+            }
+            long[] copy = new long[times.length - from];
+            index.copyTo(from, copy, 0, copy.length);
+            for (int i = from; i < times.length; i++) {
+                assertEquals("copyTo(" + from + ") at " + i, times[i], copy[i - from]);
+            }
+        }
+        return index;
+    }
+}
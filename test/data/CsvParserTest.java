@@ -0,0 +1,122 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CsvParserTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stitchesTheChunksOfAParallelParse() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("large.csv");
+        // several chunks of at least MIN_PARALLEL_SIZE bytes each
+        TestData.writeCsv(file, 120_000, 4, 13);
+        assertTrue(Files.size(file) > 4 * CsvParser.MIN_PARALLEL_SIZE);
+
+        ArrayList<String> header = new ArrayList<>();
+        CsvParser.Columns expected = CsvParser.parseFile(file.toString(), header);
+        for (int parallelism : new int[]{2, 3, 8}) {
+            ArrayList<String> parallelHeader = new ArrayList<>();
+            CsvParser.Columns actual = CsvParser.parseFileParallel(file.toString(), parallelHeader, parallelism);
+            assertEquals(header, parallelHeader);
+            assertSameColumns(expected, actual);
+        }
+    }
+
+    @Test
+    public void sortsRowsOutOfOrderAcrossChunks() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("shuffled.csv");
+        int rows = 100_000;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time, a, b\n");
+            // the second half of the file holds the earlier rows
+            for (int half = 1; half >= 0; half--) {
+                for (int i = half * rows / 2; i < (half + 1) * rows / 2; i++) {
+                    writer.write(Timestamps.format(TestData.START + 60L * i) + ", " + i + ", " + (i % 7 == 0 ? "" : "-" + i)
+                            + "\n");
+                }
+            }
+        }
+        assertTrue(Files.size(file) > 2 * CsvParser.MIN_PARALLEL_SIZE);
+        CsvParser.Columns columns = CsvParser.parseFileParallel(file.toString(), new ArrayList<>(), 4);
+        assertEquals(rows, columns.rows);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(TestData.START + 60L * i, columns.times[i]);
+            assertEquals(i, columns.values[0][i], 0.0);
+            assertEquals(i % 7 == 0 ? Double.NaN : -i, columns.values[1][i], 0.0);
+        }
+    }
+
+    @Test
+    public void sortsTheRowsOfASmallUnsortedFile() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("unsorted.csv");
+        int[] order = {3, 0, 4, 1, 1, 2, 5};
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time, a\n");
+            for (int i = 0; i < order.length; i++) {
+                writer.write(Timestamps.format(TestData.START + 3600L * order[i]) + ", " + i + "\n");
+            }
+        }
+        assertTrue(Files.size(file) < CsvParser.MIN_PARALLEL_SIZE);
+        long[] times = new long[6];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = TestData.START + 3600L * i;
+        }
+        long[] expectedTimes = {times[0], times[1], times[1], times[2], times[3], times[4], times[5]};
+        // the rows of equal times stay in file order
+        double[] expectedValues = {1, 3, 4, 5, 0, 2, 6};
+        for (CsvParser.Columns columns : new CsvParser.Columns[]{
+                CsvParser.parseFile(file.toString(), null),
+                CsvParser.parseFileParallel(file.toString(), null, 4)}) {
+            assertArrayEquals(expectedTimes, Arrays.copyOf(columns.times, columns.rows));
+            assertArrayEquals(expectedValues, Arrays.copyOf(columns.values[0], columns.rows), 0.0);
+        }
+
+        DataContainer data = new DataContainer(file.toString());
+        assertEquals(3, data.filterByTimeRange(times[1], times[2]).getNumberOfSamples());
+        assertEquals(3.0 + 4.0 + 5.0, data.sum(" a", times[1], times[2]), 0.0);
+    }
+
+    @Test
+    public void parsesOnlyTheSelectedVariablesInParallel() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("selected.csv");
+        TestData.writeCsv(file, 60_000, 3, 29);
+        ArrayList<String> header = new ArrayList<>();
+        CsvParser.Columns all = CsvParser.parseFile(file.toString(), header);
+        // the names keep the spaces that follow the separators in the file
+        String b = header.get(header.size() - 2);
+        assertEquals("b", b.trim());
+        CsvParser.Columns selected = CsvParser.parseFileParallel(file.toString(), new ArrayList<>(), 4,
+                Collections.singletonList(b));
+        assertArrayEquals(Arrays.copyOf(all.times, all.rows), Arrays.copyOf(selected.times, selected.rows));
+        assertNull(selected.values[0]);
+        assertArrayEquals(Arrays.copyOf(all.values[1], all.rows), Arrays.copyOf(selected.values[1], selected.rows), 0.0);
+        assertNull(selected.values[2]);
+    }
+
+    private static void assertSameColumns(CsvParser.Columns expected, CsvParser.Columns actual) {
+        assertEquals(expected.rows, actual.rows);
+        assertArrayEquals(Arrays.copyOf(expected.times, expected.rows), Arrays.copyOf(actual.times, actual.rows));
+        assertEquals(expected.values.length, actual.values.length);
+        for (int v = 0; v < expected.values.length; v++) {
+            assertArrayEquals("variable " + v, Arrays.copyOf(expected.values[v], expected.rows),
+                    Arrays.copyOf(actual.values[v], actual.rows), 0.0);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataContainerTest {
+
+    private static final String SOCKET = " puissance_electrique_p161";
+    private static final String TEMPERATURE = " temperature_ambiante";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void opensOnlyTheRequestedColumns() throws Exception {
+        String csv = csv("projection.csv", 5000, 4);
+        DataContainer all = new DataContainer(csv);
+        String[] variables = all.getAvailableVariables();
+
+        DataContainer some = DataContainer.open(csv, Collections.singletonList(variables[1]));
+        assertArrayEquals(variables, some.getAvailableVariables());
+        assertTrue(some.estimateMemoryBytes() < all.estimateMemoryBytes() / 2);
+        assertArrayEquals(all.getValues(variables[1]), some.getValues(variables[1]), 0.0);
+        // a projection does not leave a snapshot holding only some of the columns
+        assertFalse(DataContainer.snapshotPath(csv).toFile().exists());
+
+        // the other columns are loaded on first use, once for the dataset and its views
+        DataContainer view = some.filterByTimeRange(some.getTime(100), some.getTime(4000));
+        assertTrue(view.loadVariables(Collections.singletonList(variables[2])));
+        assertFalse(some.loadVariables(Collections.singletonList(variables[2])));
+        assertArrayEquals(all.getValues(variables[2]), some.getValues(variables[2]), 0.0);
+        assertArrayEquals(all.getValues(variables[3]), some.getValues(variables[3]), 0.0);
+        assertEquals(all.sum(variables[0]), some.sum(variables[0]), 1e-9 * Math.abs(all.sum(variables[0])));
+    }
+
+    @Test
+    public void opensOnlyTheRequestedColumnsOfASnapshot() throws Exception {
+        String csv = csv("snapshot.csv", 5000, 3);
+        DataContainer all = DataContainer.open(csv);
+        assertTrue(DataContainer.snapshotPath(csv).toFile().exists());
+        String[] variables = all.getAvailableVariables();
+
+        DataContainer some = DataContainer.open(csv, Arrays.asList(variables[2], variables[0]));
+        assertArrayEquals(variables, some.getAvailableVariables());
+        for (String variable : variables) {
+            assertArrayEquals(variable, all.getValues(variable), some.getValues(variable), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownVariable() throws Exception {
+        DataContainer.open(csv("unknown.csv", 100, 2), Collections.singletonList("unknown"));
+    }
+
+    @Test
+    public void resamplesTheSumAndCountOfAFlaggedVariable() throws Exception {
+        DataContainer data = new DataContainer(sensorCsv("sensors.csv", 30));
+        List<String> variables = Arrays.asList(SOCKET, TEMPERATURE);
+        EnumMap<Aggregate, DataContainer> daily = data.resampleData(SamplingInterval.ONE_DAY,
+                EnumSet.of(Aggregate.SUM, Aggregate.COUNT), variables);
+        double[] counts = daily.get(Aggregate.COUNT).getValues(SOCKET);
+        double[] sums = daily.get(Aggregate.SUM).getValues(SOCKET);
+        double[] temperatures = daily.get(Aggregate.SUM).getValues(TEMPERATURE);
+        assertEquals(30, counts.length);
+        for (int day = 0; day < 30; day++) {
+            // the saturated meter values of the second day are skipped, and the constant counts are not stuck
+            double expected = 0;
+            for (int hour = 0; hour < 24; hour++) {
+                int row = 24 * day + hour;
+                expected += row == 30 || row == 31 ? 0 : socket(row);
+            }
+            assertEquals("count of day " + day, day == 1 ? 22 : 24, counts[day], 0.0);
+            assertEquals("sum of day " + day, expected, sums[day], 1e-9);
+            // a daily sum of temperatures is far above the range of a temperature, and is not out of range
+            assertEquals("temperatures of day " + day, 24 * 20.0 + 23, temperatures[day], 1e-9);
+        }
+        assertEquals(2, data.getQualityReport().getCount(SOCKET, QualityIssue.SENTINEL));
+        assertEquals(0, daily.get(Aggregate.COUNT).getQualityReport().getCount(SOCKET, QualityIssue.STUCK));
+    }
+
+    @Test
+    public void readsTheFlaggedSamplesAsTheyAreButSkipsThemInAggregations() throws Exception {
+        DataContainer data = new DataContainer(sensorCsv("flagged.csv", 3));
+        assertEquals(QualityRules.SATURATED_METER, data.getValue(SOCKET, 30), 0.0);
+        assertEquals(QualityRules.SATURATED_METER, data.getValues(SOCKET)[31], 0.0);
+        assertEquals(QualityRules.SATURATED_METER, data.getData(SOCKET)[30], 0.0);
+        assertEquals(QualityRules.SATURATED_METER, data.getSeries(SOCKET).getValue(31), 0.0);
+
+        double sum = 0;
+        for (int row = 0; row < 72; row++) {
+            sum += row == 30 || row == 31 ? 0 : socket(row);
+        }
+        assertEquals(sum, data.sum(SOCKET), 1e-9);
+        assertEquals(140.0, data.max(SOCKET).getValue(), 0.0);
+        assertTrue(data.findAbove(SOCKET, 1000.0).isEmpty());
+        DataContainer derived = data.withDerived("kilowatts", "scale(" + SOCKET + ", 0.001)");
+        assertTrue(Double.isNaN(derived.getValue("kilowatts", 30)));
+        assertEquals(socket(29) * 0.001, derived.getValue("kilowatts", 29), 1e-12);
+    }
+
+    @Test
+    public void fillsTheEmptyBucketsOfEachMode() throws Exception {
+        DataContainer data = new DataContainer(gapCsv("gaps.csv"));
+        List<String> variables = Collections.singletonList(SOCKET);
+        for (GapFill fill : GapFill.values()) {
+            EnumMap<Aggregate, DataContainer> hourly = data.resampleData(SamplingInterval.ONE_HOUR,
+                    EnumSet.of(Aggregate.MEAN, Aggregate.COUNT), variables, fill);
+            DataContainer means = hourly.get(Aggregate.MEAN);
+            assertEquals(fill.toString(), 240, means.getNumberOfSamples());
+            double[] values = means.getValues(SOCKET);
+            double[] counts = hourly.get(Aggregate.COUNT).getValues(SOCKET);
+            for (int row = 0; row < 240; row++) {
+                String what = fill + " at " + row;
+                assertEquals(what, TestData.START + 3600L * row, means.getTime(row));
+                if (!isEmpty(row)) {
+                    // the constant count of one sample per hour does not make the buckets empty
+                    assertEquals(what, 1.0, counts[row], 0.0);
+                    assertEquals(what, socket(row), values[row], 0.0);
+                    continue;
+                }
+                assertEquals(what, 0.0, counts[row], 0.0);
+                int before = row - 1;
+                int after = row + 1;
+                while (isEmpty(before)) {
+                    before--;
+                }
+                while (isEmpty(after)) {
+                    after++;
+                }
+                double expected = fill == GapFill.EMPTY ? Double.NaN
+                        : fill == GapFill.FORWARD ? socket(before)
+                        : socket(before) + (socket(after) - socket(before)) * (row - before) / (after - before);
+                assertEquals(what, expected, values[row], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void leavesTheContainerUnchangedByItsQueriesAndTheirResults() throws Exception {
+        String csv = csv("immutable.csv", 4000, 3);
+        DataContainer data = DataContainer.open(csv);
+        String[] variables = data.getAvailableVariables();
+        long[] times = data.getTimes();
+        double[] values = data.getValues(variables[0]);
+
+        DataContainer view = data.filterByTimeRange(data.getTime(100), data.getTime(3000));
+        DataContainer derived = view.withDerived("difference", variables[0] + " - " + variables[1]);
+        EnumMap<Aggregate, DataContainer> daily = derived.resampleData(SamplingInterval.ONE_DAY,
+                EnumSet.of(Aggregate.MEAN, Aggregate.MAX), Arrays.asList(variables[0], "difference"));
+        CsvParser.Columns rows = new CsvParser.Columns(variables.length, 1);
+        rows.times[0] = times[times.length - 1] + 3600;
+        rows.rows = 1;
+        DataContainer appended = data.append(rows);
+        // the arrays handed out are copies
+        data.getTimes()[0] = 0;
+        data.getValues(variables[0])[0] = -1;
+        data.getAvailableVariables()[0] = "renamed";
+        daily.get(Aggregate.MEAN).getAvailableVariables()[0] = "renamed";
+
+        assertArrayEquals(variables, data.getAvailableVariables());
+        assertArrayEquals(times, data.getTimes());
+        assertArrayEquals(values, data.getValues(variables[0]), 0.0);
+        assertEquals(0, data.getDerivedVariables().length);
+        assertEquals(0, view.getDerivedVariables().length);
+        assertArrayEquals(variables, view.getAvailableVariables());
+        assertArrayEquals(new String[]{variables[0], "difference"}, daily.get(Aggregate.MAX).getAvailableVariables());
+        assertArrayEquals(new String[]{variables[0], "difference"}, daily.get(Aggregate.MEAN).getAvailableVariables());
+        assertEquals(times.length, data.getNumberOfSamples());
+        assertEquals(times.length + 1, appended.getNumberOfSamples());
+        assertArrayEquals(values, Arrays.copyOf(appended.getValues(variables[0]), times.length), 0.0);
+    }
+
+    @Test
+    public void answersConcurrentQueriesLikeOneThread() throws Exception {
+        DataContainer data = DataContainer.open(csv("shared.csv", 6000, 3));
+        String[] variables = data.getAvailableVariables();
+        Callable<List<Object>> queries = () -> {
+            List<Object> answers = new ArrayList<>();
+            for (String variable : variables) {
+                long from = data.getTime(500);
+                long to = data.getTime(5000);
+                answers.add(data.sum(variable, from, to));
+                answers.add(data.max(variable, from, to).getValue());
+                answers.add(data.findAbove(variable, 20.0).size());
+                DataContainer view = data.filterByTimeRange(from, to).withDerived("twice", "scale(" + variable + ", 2)");
+                answers.add(Arrays.toString(view.resampleData(SamplingInterval.ONE_WEEK,
+                        EnumSet.of(Aggregate.SUM, Aggregate.STDDEV), Arrays.asList(variable, "twice"))
+                        .get(Aggregate.SUM).getValues("twice")));
+                answers.add(Arrays.toString(data.resampleData(SamplingInterval.ONE_DAY).getValues(variable)));
+            }
+            return answers;
+        };
+        List<Object> expected = queries.call();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<List<Object>> answers : executor.invokeAll(Collections.nCopies(32, queries))) {
+                assertEquals(expected, answers.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertArrayEquals(variables, data.getAvailableVariables());
+    }
+
+    /**
+     * Tells whether the socket of {@link #gapCsv(String)} has no value in an hour: its meter saturates, its cells
+     * are empty or the logger wrote no row.
+     */
+    private static boolean isEmpty(int row) {
+        return row == 30 || row == 31 || row >= 100 && row < 105 || row >= 150 && row < 153;
+    }
+
+    /**
+     * Writes ten days of hourly readings of a classroom socket, without a value in the hours told by
+     * {@link #isEmpty(int)}.
+     */
+    private String gapCsv(String name) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time," + SOCKET + "\n");
+            for (int row = 0; row < 240; row++) {
+                if (row >= 100 && row < 105) {
+                    continue;
+                }
+                String value = row == 30 || row == 31 ? Double.toString(QualityRules.SATURATED_METER)
+                        : isEmpty(row) ? "" : Double.toString(socket(row));
+                writer.write(Timestamps.format(TestData.START + 3600L * row) + ", " + value + "\n");
+            }
+        }
+        return file.toString();
+    }
+
+    private static double socket(int row) {
+        return 100.0 + row % 5 * 10.0;
+    }
+
+    /**
+     * Writes hourly readings of a classroom socket, whose meter saturates at two samples of the second day, and of
+     * a temperature.
+     */
+    private String sensorCsv(String name, int days) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time," + SOCKET + "," + TEMPERATURE + "\n");
+            for (int row = 0; row < 24 * days; row++) {
+                double socket = row == 30 || row == 31 ? QualityRules.SATURATED_METER : socket(row);
+                writer.write(Timestamps.format(TestData.START + 3600L * row) + ", " + socket + ", "
+                        + (row % 24 == 0 ? 43.0 : 20.0) + "\n");
+            }
+        }
+        return file.toString();
+    }
+
+    private String csv(String name, int rows, int variables) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        TestData.writeCsv(file, rows, variables, name.hashCode());
+        return file.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package data;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that defining a derived variable returns a new container and leaves the containers sharing its data
+ * unchanged.
+ */
+public class DerivedColumnsTest {
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static String csv;
+    private static String a;
+    private static String b;
+
+    @BeforeClass
+    public static void writeData() throws Exception {
+        Path file = FOLDER.getRoot().toPath().resolve("derived.csv");
+        TestData.writeCsv(file, 3000, 2, 57);
+        csv = file.toString();
+        String[] variables = new DataContainer(csv).getAvailableVariables();
+        a = variables[0];
+        b = variables[1];
+    }
+
+    @Test
+    public void leavesTheParentAndItsViewsUnchanged() throws Exception {
+        DataContainer parent = new DataContainer(csv);
+        DataContainer view = parent.filterByTimeRange(parent.getTime(100), parent.getTime(2000));
+        String[] variables = parent.getAvailableVariables();
+        String[] viewVariables = view.getAvailableVariables();
+
+        DataContainer child = parent.withDerived("total", "sum(prefix:\"" + a.substring(0, 2) + "\")");
+        DataContainer viewChild = view.withDerived("difference", a + " - " + b);
+
+        assertNotSame(parent, child);
+        assertArrayEquals(variables, parent.getAvailableVariables());
+        assertArrayEquals(viewVariables, view.getAvailableVariables());
+        assertEquals(0, parent.getDerivedVariables().length);
+        assertEquals(0, view.getDerivedVariables().length);
+        assertEquals(Arrays.asList("total"), Arrays.asList(child.getDerivedVariables()));
+        assertEquals(Arrays.asList("difference"), Arrays.asList(viewChild.getDerivedVariables()));
+        assertEquals(parent.getNumberOfSamples(), child.getNumberOfSamples());
+        assertSame(child, child.withDerived("total", "sum(prefix:\"" + a.substring(0, 2) + "\")"));
+    }
+
+    @Test
+    public void leavesTheCachedContainerUnchanged() throws Exception {
+        DatasetRegistry registry = new DatasetRegistry(Long.MAX_VALUE);
+        DataContainer cached = registry.get(csv);
+        cached.withDerived("scaled", "scale(" + a + ", 0.001)");
+        DataContainer again = registry.get(csv);
+        assertSame(cached, again);
+        assertEquals(0, again.getDerivedVariables().length);
+    }
+
+    @Test
+    public void keepsVariantsOfTheSameNameApart() throws Exception {
+        DataContainer parent = new DataContainer(csv);
+        DataContainer difference = parent.withDerived("net", a + " - " + b);
+        DataContainer scaled = parent.withDerived("net", "scale(" + a + ", 0.001)");
+        double[] av = parent.getValues(a);
+        double[] bv = parent.getValues(b);
+        double[] net = difference.getValues("net");
+        double[] kilo = scaled.getValues("net");
+        for (int i = 0; i < av.length; i++) {
+            assertEquals(av[i] - bv[i], net[i], 1e-9);
+            assertEquals(av[i] * 0.001, kilo[i], 1e-12);
+        }
+        long from = parent.getTime(0);
+        long to = parent.getTime(parent.getNumberOfSamples() - 1);
+        assertEquals(sum(net), difference.sum("net", from, to), 1e-6);
+        assertEquals(sum(kilo), scaled.sum("net", from, to), 1e-9);
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrefixSumsTest {
+
+    @Test
+    public void sumsAndCountsRangesLikeTheRows() {
+        double[] values = TestData.values(5000, 0.05, 17);
+        Column column = Column.of(values);
+        PrefixSums sums = new PrefixSums();
+        Random random = new Random(5);
+        for (int k = 0; k < 2000; k++) {
+            int from = random.nextInt(values.length + 1);
+            int to = from + random.nextInt(values.length + 1 - from);
+            assertRange(sums, column, values, from, to);
+        }
+        assertRange(sums, column, values, 0, values.length);
+        assertRange(sums, column, values, values.length, values.length);
+    }
+
+    @Test
+    public void countsRowsOfAColumnWithoutMissingValues() {
+        double[] values = TestData.values(300, 0.0, 2);
+        PrefixSums sums = new PrefixSums();
+        assertEquals(200, sums.count("a", Column.of(values), 50, 250));
+    }
+
+    @Test
+    public void extendsTheSumsOfAGrowingColumn() {
+        double[] values = TestData.values(4000, 0.02, 9);
+        Column column = Column.of(values);
+        PrefixSums sums = new PrefixSums();
+        // the first query only computes the sums of the first rows, as for a container before an append
+        assertRange(sums, column, values, 10, 1000);
+        PrefixSums appended = sums.copy();
+        assertRange(appended, column, values, 500, 4000);
+        assertRange(appended, column, values, 0, 3999);
+        assertRange(sums, column, values, 0, 1000);
+    }
+
+    @Test
+    public void keepsTheSumsOfDifferentKeysApart() {
+        double[] ones = new double[100];
+        double[] twos = new double[100];
+        Arrays.fill(ones, 1.0);
+        Arrays.fill(twos, 2.0);
+        PrefixSums sums = new PrefixSums();
+        assertEquals(100.0, sums.sum("x\n1", Column.of(ones), 0, 100), 0.0);
+        assertEquals(200.0, sums.sum("x\n2", Column.of(twos), 0, 100), 0.0);
+        assertEquals(100.0, sums.sum("x\n1", Column.of(ones), 0, 100), 0.0);
+    }
+
+    private static void assertRange(PrefixSums sums, Column column, double[] values, int from, int to) {
+        double sum = 0;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                count++;
+            }
+        }
+        String range = "[" + from + ", " + to + ")";
+        assertEquals("sum " + range, sum, sums.sum("a", column, from, to), 1e-9 * Math.max(1, Math.abs(sum)));
+        assertEquals("count " + range, count, sums.count("a", column, from, to));
+    }
+}
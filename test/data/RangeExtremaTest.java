@@ -0,0 +1,132 @@
+package data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RangeExtremaTest {
+
+    private static final int BLOCK = RangeExtrema.BLOCK_SIZE;
+    private static final int ZONE = RangeExtrema.ZONE_SIZE;
+
+    @Test
+    public void findsTheExtremaOfRangesLikeTheRows() {
+        double[] values = TestData.values(5 * ZONE + 37, 0.03, 23);
+        Column column = Column.of(values);
+        RangeExtrema extrema = new RangeExtrema();
+        Random random = new Random(8);
+        for (int k = 0; k < 3000; k++) {
+            int from = random.nextInt(values.length);
+            int to = from + 1 + random.nextInt(values.length - from);
+            assertRange(extrema, column, values, from, to);
+        }
+        int[][] ranges = {{0, values.length}, {BLOCK - 1, BLOCK + 1}, {BLOCK, 2 * BLOCK}, {ZONE - 1, 3 * ZONE + 1},
+                {0, 1}, {values.length - 1, values.length}};
+        for (int[] range : ranges) {
+            assertRange(extrema, column, values, range[0], range[1]);
+        }
+    }
+
+    @Test
+    public void returnsTheFirstOfEqualValues() {
+        double[] values = new double[3 * BLOCK];
+        Arrays.fill(values, 5.0);
+        values[BLOCK + 3] = 7.0;
+        values[2 * BLOCK + 9] = 7.0;
+        values[10] = 1.0;
+        values[BLOCK + 20] = 1.0;
+        Column column = Column.of(values);
+        RangeExtrema extrema = new RangeExtrema();
+        assertEquals(BLOCK + 3, extrema.max("a", column, 0, values.length));
+        assertEquals(2 * BLOCK + 9, extrema.max("a", column, BLOCK + 4, values.length));
+        assertEquals(10, extrema.min("a", column, 0, values.length));
+        assertEquals(1, extrema.max("b", Column.of(new double[]{Double.NaN, 3.0, 3.0}), 0, 3));
+    }
+
+    @Test
+    public void findsNoValueInMissingValues() {
+        double[] values = new double[2 * BLOCK];
+        Arrays.fill(values, Double.NaN);
+        values[BLOCK + 5] = -2.0;
+        Column column = Column.of(values);
+        RangeExtrema extrema = new RangeExtrema();
+        assertEquals(-1, extrema.max("a", column, 0, BLOCK));
+        assertEquals(-1, extrema.min("a", column, 0, BLOCK));
+        assertEquals(BLOCK + 5, extrema.max("a", column, 0, values.length));
+    }
+
+    @Test
+    public void findsTheRunsOutsideABandLikeTheRows() {
+        double[] values = TestData.values(6 * ZONE + 11, 0.02, 31);
+        Column column = Column.of(values);
+        RangeExtrema extrema = new RangeExtrema();
+        double[][] bands = {{0.0, 40.0}, {Double.NEGATIVE_INFINITY, 25.0}, {10.0, Double.POSITIVE_INFINITY},
+                {-1000.0, 1000.0}, {20.0, 20.0}};
+        int[][] ranges = {{0, values.length}, {ZONE - 3, 4 * ZONE + 70}, {BLOCK + 1, BLOCK + 2}};
+        for (double[] band : bands) {
+            for (int[] range : ranges) {
+                assertArrayEquals(Arrays.toString(band) + " over " + Arrays.toString(range),
+                        outside(values, range[0], range[1], band[0], band[1]),
+                        extrema.outside("a", column, range[0], range[1], band[0], band[1]));
+            }
+        }
+    }
+
+    @Test
+    public void rebuildsTheIndexOfAGrowingColumn() {
+        double[] values = TestData.values(3 * ZONE, 0.0, 4);
+        Column column = Column.of(values);
+        RangeExtrema extrema = new RangeExtrema();
+        assertRange(extrema, column, values, 0, ZONE);
+        assertRange(extrema.copy(), column, values, 0, values.length);
+    }
+
+    private static void assertRange(RangeExtrema extrema, Column column, double[] values, int from, int to) {
+        int max = -1;
+        int min = -1;
+        for (int i = from; i < to; i++) {
+            if (Double.isNaN(values[i])) {
+                continue;
+            }
+            if (max < 0 || values[i] > values[max]) {
+                max = i;
+            }
+            if (min < 0 || values[i] < values[min]) {
+                min = i;
+            }
+        }
+        String range = "[" + from + ", " + to + ")";
+        assertEquals("max " + range, max, extrema.max("a", column, from, to));
+        assertEquals("min " + range, min, extrema.min("a", column, from, to));
+    }
+
+    private static int[] outside(double[] values, int from, int to, double low, double high) {
+        List<Integer> runs = new ArrayList<>();
+        int start = -1;
+        for (int i = from; i < to; i++) {
+            boolean out = values[i] < low || values[i] > high;
+            if (out && start < 0) {
+                start = i;
+            } else if (!out && start >= 0) {
+                runs.add(start);
+                runs.add(i);
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            runs.add(start);
+            runs.add(to);
+        }
+        int[] result = new int[runs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = runs.get(i);
+        }
+        return result;
+    }
+}
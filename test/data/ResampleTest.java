@@ -0,0 +1,194 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the buckets of {@link DataContainer#resampleData(SamplingInterval)} against buckets grouped row by row.
+ */
+public class ResampleTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void startsTheBucketsOnTheirCalendarBoundaries() {
+        long time = Timestamps.toEpochSecond(2022, 11, 16, 10, 37, 20);
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 16, 10, 37, 0), SamplingInterval.ONE_MINUTE.bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 16, 10, 35, 0), SamplingInterval.FIVE_MINUTES.bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 16, 10, 30, 0),
+                SamplingInterval.FIFTEEN_MINUTES.bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 16, 9, 0, 0), SamplingInterval.parse("3 Hours").bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 16, 0, 0, 0), SamplingInterval.ONE_DAY.bucketStart(time));
+        // weeks start on Mondays, also before the epoch
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 14, 0, 0, 0), SamplingInterval.ONE_WEEK.bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(1969, 12, 29, 0, 0, 0),
+                SamplingInterval.ONE_WEEK.bucketStart(Timestamps.toEpochSecond(1969, 12, 31, 12, 0, 0)));
+        assertEquals(Timestamps.toEpochSecond(2022, 11, 1, 0, 0, 0), SamplingInterval.ONE_MONTH.bucketStart(time));
+        assertEquals(Timestamps.toEpochSecond(2022, 10, 1, 0, 0, 0), SamplingInterval.parse("3 Months").bucketStart(time));
+
+        long leapDay = Timestamps.toEpochSecond(2024, 2, 29, 23, 59, 59);
+        long february = SamplingInterval.ONE_MONTH.bucketStart(leapDay);
+        assertEquals(Timestamps.toEpochSecond(2024, 2, 1, 0, 0, 0), february);
+        assertEquals(Timestamps.toEpochSecond(2024, 3, 1, 0, 0, 0), SamplingInterval.ONE_MONTH.nextBucketStart(february));
+        assertEquals(Timestamps.toEpochSecond(2025, 1, 1, 0, 0, 0),
+                SamplingInterval.parse("3 Months").nextBucketStart(Timestamps.toEpochSecond(2024, 10, 1, 0, 0, 0)));
+    }
+
+    @Test
+    public void coversEveryTimeWithOneBucket() {
+        for (SamplingInterval interval : intervals()) {
+            for (long time = TestData.START - 400 * 86400L; time < TestData.START + 400 * 86400L; time += 86400L + 617) {
+                long start = interval.bucketStart(time);
+                long next = interval.nextBucketStart(start);
+                String what = interval + " at " + Timestamps.format(time);
+                assertTrue(what, start <= time && time < next);
+                assertEquals(what, start, interval.bucketStart(start));
+                assertEquals(what, next, interval.bucketStart(next));
+            }
+        }
+    }
+
+    @Test
+    public void parsesTheIntervalsItFormats() {
+        for (SamplingInterval interval : intervals()) {
+            assertEquals(interval, SamplingInterval.parse(interval.toString()));
+        }
+        assertEquals(SamplingInterval.FIFTEEN_MINUTES, SamplingInterval.parse(" 15 min "));
+        assertEquals(new SamplingInterval(2, SamplingInterval.Unit.DAY), SamplingInterval.parse("2 DAYS"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownUnit() {
+        SamplingInterval.parse("2 Fortnights");
+    }
+
+    @Test
+    public void labelsEachBucketWithItsStartAndSkipsTheHoursWithoutSamples() throws Exception {
+        // a sample every five minutes for three days, with nothing logged for two and a half hours
+        Path file = folder.getRoot().toPath().resolve("minutes.csv");
+        List<Long> times = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time, power\n");
+            for (int row = 0; row < 3 * 288; row++) {
+                if (row >= 400 && row < 430) {
+                    continue;
+                }
+                long time = TestData.START + 300L * row;
+                double value = row % 7 * 1.5;
+                times.add(time);
+                values.add(value);
+                writer.write(Timestamps.format(time) + ", " + value + "\n");
+            }
+        }
+        DataContainer data = new DataContainer(file.toString());
+        String variable = data.getAvailableVariables()[0];
+        for (SamplingInterval interval : intervals()) {
+            Map<Long, List<Double>> expected = new LinkedHashMap<>();
+            for (int i = 0; i < times.size(); i++) {
+                expected.computeIfAbsent(interval.bucketStart(times.get(i)), bucket -> new ArrayList<>())
+                        .add(values.get(i));
+            }
+            DataContainer resampled = data.resampleData(interval);
+            long[] starts = new long[expected.size()];
+            double[] means = new double[expected.size()];
+            int b = 0;
+            for (Map.Entry<Long, List<Double>> bucket : expected.entrySet()) {
+                starts[b] = bucket.getKey();
+                means[b] = bucket.getValue().stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+                b++;
+            }
+            assertArrayEquals(interval.toString(), starts, resampled.getTimes());
+            assertArrayEquals(interval.toString(), means, resampled.getValues(variable), 1e-9);
+        }
+        // a sample on the boundary of a bucket starts the next one
+        double[] quarters = data.resampleData(SamplingInterval.FIFTEEN_MINUTES).getValues(variable);
+        assertEquals((0 + 1.5 + 3.0) / 3, quarters[0], 1e-12);
+        assertEquals((4.5 + 6.0 + 7.5) / 3, quarters[1], 1e-12);
+    }
+
+    @Test
+    public void computesEveryAggregateOfABucketLikeSeparateCalls() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("aggregates.csv");
+        TestData.writeCsv(file, 3000, 2, 83);
+        DataContainer data = new DataContainer(file.toString());
+        for (SamplingInterval interval : new SamplingInterval[]{SamplingInterval.parse("3 Hours"),
+                SamplingInterval.ONE_DAY, SamplingInterval.ONE_WEEK, SamplingInterval.ONE_MONTH}) {
+            EnumMap<Aggregate, DataContainer> all = data.resampleData(interval, EnumSet.allOf(Aggregate.class));
+            for (String variable : data.getAvailableVariables()) {
+                Map<Long, List<Double>> buckets = new LinkedHashMap<>();
+                double[] values = data.getValues(variable);
+                for (int i = 0; i < values.length; i++) {
+                    buckets.computeIfAbsent(interval.bucketStart(data.getTime(i)), bucket -> new ArrayList<>())
+                            .add(values[i]);
+                }
+                for (Aggregate aggregate : Aggregate.values()) {
+                    String what = aggregate + " of " + variable + " by " + interval;
+                    double[] expected = new double[buckets.size()];
+                    int b = 0;
+                    for (List<Double> bucket : buckets.values()) {
+                        expected[b++] = aggregate(aggregate, bucket);
+                    }
+                    DataContainer resampled = all.get(aggregate);
+                    assertArrayEquals(what, expected, resampled.getValues(variable), 1e-9);
+                    assertArrayEquals(what, data.resampleData(interval, EnumSet.of(aggregate)).get(aggregate)
+                            .getValues(variable), resampled.getValues(variable), 0.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes an aggregate of the values of a bucket, skipping the missing ones.
+     */
+    private static double aggregate(Aggregate aggregate, List<Double> bucket) {
+        double[] values = bucket.stream().mapToDouble(Double::doubleValue).filter(value -> !Double.isNaN(value))
+                .toArray();
+        double mean = Arrays.stream(values).sum() / values.length;
+        switch (aggregate) {
+            case MEAN:
+                return mean;
+            case MIN:
+                return values.length == 0 ? Double.NaN : Arrays.stream(values).min().getAsDouble();
+            case MAX:
+                return values.length == 0 ? Double.NaN : Arrays.stream(values).max().getAsDouble();
+            case SUM:
+                return Arrays.stream(values).sum();
+            case COUNT:
+                return values.length;
+            case STDDEV:
+                return Math.sqrt(Arrays.stream(values).map(value -> (value - mean) * (value - mean)).sum()
+                        / values.length);
+            case LAST:
+                return values.length == 0 ? Double.NaN : values[values.length - 1];
+            default:
+                throw new AssertionError(aggregate);
+        }
+    }
+
+    private static SamplingInterval[] intervals() {
+        return new SamplingInterval[]{
+                SamplingInterval.ONE_MINUTE, SamplingInterval.FIVE_MINUTES, SamplingInterval.FIFTEEN_MINUTES,
+                SamplingInterval.ONE_HOUR, SamplingInterval.parse("3 Hours"), SamplingInterval.ONE_DAY,
+                SamplingInterval.parse("2 Days"), SamplingInterval.ONE_WEEK, SamplingInterval.ONE_MONTH,
+                SamplingInterval.parse("3 Months")};
+    }
+}
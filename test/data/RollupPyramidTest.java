@@ -0,0 +1,76 @@
+package data;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the resampling answered from the rollups of {@link DataContainer#open(String)} gives the same
+ * buckets as the resampling of the rows, done by a container read without rollups.
+ */
+public class RollupPyramidTest {
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static final Set<Aggregate> AGGREGATES = EnumSet.complementOf(EnumSet.of(Aggregate.STDDEV));
+
+    private static DataContainer rollups;
+    private static DataContainer rows;
+
+    @BeforeClass
+    public static void readData() throws Exception {
+        Path csv = FOLDER.getRoot().toPath().resolve("rollups.csv");
+        TestData.writeCsv(csv, 6000, 3, 41);
+        rollups = DataContainer.open(csv.toString());
+        rows = new DataContainer(csv.toString());
+    }
+
+    @Test
+    public void resamplesTheWholeDataLikeTheRows() {
+        for (String interval : new String[]{"1 Hour", "6 Hour", "1 Day", "1 Week", "1 Month"}) {
+            assertSameBuckets(interval, rollups, rows);
+        }
+    }
+
+    @Test
+    public void resamplesAFilteredViewLikeTheRows() {
+        long from = rows.getTime(37) + 1800;
+        long to = rows.getTime(rows.getNumberOfSamples() - 101);
+        for (String interval : new String[]{"1 Hour", "1 Day", "1 Week", "1 Month"}) {
+            assertSameBuckets(interval, rollups.filterByTimeRange(from, to), rows.filterByTimeRange(from, to));
+        }
+    }
+
+    private static void assertSameBuckets(String interval, DataContainer fast, DataContainer slow) {
+        SamplingInterval samplingInterval = SamplingInterval.parse(interval);
+        EnumMap<Aggregate, DataContainer> expected = slow.resampleData(samplingInterval, AGGREGATES);
+        EnumMap<Aggregate, DataContainer> actual = fast.resampleData(samplingInterval, AGGREGATES);
+        for (Aggregate aggregate : AGGREGATES) {
+            DataContainer e = expected.get(aggregate);
+            DataContainer a = actual.get(aggregate);
+            String what = aggregate + " per " + interval;
+            assertArrayEquals(what + " times", e.getTimes(), a.getTimes());
+            assertEquals(what + " variables", Arrays.asList(e.getAvailableVariables()),
+                    Arrays.asList(a.getAvailableVariables()));
+            for (String variable : e.getAvailableVariables()) {
+                double[] ev = e.getValues(variable);
+                double[] av = a.getValues(variable);
+                for (int i = 0; i < ev.length; i++) {
+                    assertEquals(what + " of " + variable + " at " + i, ev[i], av[i],
+                            1e-9 * Math.max(1, Math.abs(ev[i])));
+                }
+            }
+        }
+    }
+}
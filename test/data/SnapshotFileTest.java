@@ -0,0 +1,109 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SnapshotFileTest {
+
+    private static final int ROWS = 3000;
+    private static final int VARIABLES = 3;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackTheColumnsInEveryStorage() throws Exception {
+        File csv = csv();
+        DataContainer data = new DataContainer(csv.getPath());
+        Path snapshot = DataContainer.snapshotPath(csv.getPath());
+        data.writeSnapshot(snapshot.toString(), csv.getPath());
+        String[] variables = data.getAvailableVariables();
+        for (ColumnStorage storage : ColumnStorage.values()) {
+            SnapshotFile.Content content = SnapshotFile.read(snapshot, csv, storage);
+            assertNotNull(storage.toString(), content);
+            assertArrayEquals(data.getTimes(), content.times);
+            for (int v = 0; v < VARIABLES; v++) {
+                double[] values = new double[ROWS];
+                content.values[v].copyTo(0, values, 0, ROWS);
+                assertArrayEquals(storage + " " + variables[v], data.getValues(variables[v]), values, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void ignoresAStaleOrCorruptHeader() throws Exception {
+        File csv = csv();
+        Path snapshot = DataContainer.snapshotPath(csv.getPath());
+        new DataContainer(csv.getPath()).writeSnapshot(snapshot.toString(), csv.getPath());
+
+        corrupt(snapshot, 20);
+        assertNull(SnapshotFile.read(snapshot, csv, ColumnStorage.MAPPED));
+        assertNull(SnapshotFile.read(folder.getRoot().toPath().resolve("none.snapshot"), csv, ColumnStorage.HEAP));
+    }
+
+    @Test
+    public void rejectsACorruptColumnWhenItIsCopied() throws Exception {
+        File csv = csv();
+        Path snapshot = writeWithCorruptColumn(csv, 1);
+        assertNull(SnapshotFile.read(snapshot, csv, ColumnStorage.HEAP));
+        assertNull(SnapshotFile.read(snapshot, csv, ColumnStorage.COMPRESSED));
+    }
+
+    @Test
+    public void verifiesAMappedColumnOnItsFirstAccess() throws Exception {
+        File csv = csv();
+        Path snapshot = writeWithCorruptColumn(csv, 1);
+        // the corrupt column is not read when the snapshot is opened
+        SnapshotFile.Content content = SnapshotFile.read(snapshot, csv, ColumnStorage.MAPPED);
+        assertNotNull(content);
+        assertEquals(ROWS, content.values[1].capacity());
+        content.values[0].get(10);
+        content.values[2].reader(0).next();
+        try {
+            content.values[1].get(0);
+            fail("The corrupt column was read");
+        } catch (UncheckedIOException e) {
+            assertFalse(Files.exists(snapshot));
+        }
+    }
+
+    private File csv() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("snapshot.csv");
+        TestData.writeCsv(file, ROWS, VARIABLES, 3);
+        return file.toFile();
+    }
+
+    /**
+     * Writes the snapshot of a file and changes one byte in the middle of one of its value columns.
+     */
+    private static Path writeWithCorruptColumn(File csv, int variable) throws Exception {
+        Path snapshot = DataContainer.snapshotPath(csv.getPath());
+        new DataContainer(csv.getPath()).writeSnapshot(snapshot.toString(), csv.getPath());
+        long columnStart = Files.size(snapshot) - 8L * ROWS * (VARIABLES - variable);
+        corrupt(snapshot, columnStart + 8L * (ROWS / 2));
+        return snapshot;
+    }
+
+    private static void corrupt(Path file, long position) throws Exception {
+        try (RandomAccessFile access = new RandomAccessFile(file.toFile(), "rw")) {
+            access.seek(position);
+            int value = access.read();
+            access.seek(position);
+            access.write(value ^ 0x55);
+        }
+    }
+}
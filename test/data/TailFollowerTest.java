@@ -0,0 +1,208 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TailFollowerTest {
+
+    /** Long enough for the follower never to poll by itself during a test. */
+    private static final long POLL_MILLIS = 3_600_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendsTheCompleteLinesWrittenSinceTheLastPoll() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("followed.csv");
+        writeRows(file, 0, 500, true);
+        try (TailFollower follower = new TailFollower(file.toString(), POLL_MILLIS)) {
+            follower.define("double", "scale(" + follower.getCurrent().getAvailableVariables()[0] + ", 2)");
+            DataContainer first = follower.getCurrent();
+            List<DataContainer> published = new ArrayList<>();
+            follower.addListener(published::add);
+
+            writeRows(file, 500, 600, false);
+            // a line still being written is left for the next poll
+            Files.write(file, Timestamps.format(time(600)).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            assertEquals(100, follower.poll());
+            assertEquals(0, follower.poll());
+            Files.write(file, (", 1.5, 2.5\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            assertEquals(1, follower.poll());
+
+            DataContainer current = follower.getCurrent();
+            assertEquals(2, published.size());
+            assertEquals(600, published.get(0).getNumberOfSamples());
+            assertSame(current, published.get(1));
+            assertEquals(500, first.getNumberOfSamples());
+            assertEquals(601, current.getNumberOfSamples());
+            DataContainer read = new DataContainer(file.toString());
+            assertArrayEquals(read.getTimes(), current.getTimes());
+            for (String variable : read.getAvailableVariables()) {
+                assertArrayEquals(read.getValues(variable), current.getValues(variable), 0.0);
+            }
+            double[] doubled = current.getValues("double");
+            assertEquals(2 * current.getValue(read.getAvailableVariables()[0], 550), doubled[550], 0.0);
+            assertRollupsMatchRows(current);
+            assertRollupsMatchRows(first);
+        }
+    }
+
+    @Test
+    public void keepsEveryVersionAppendedToTheSameOne() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("versions.csv");
+        writeRows(file, 0, 300, true);
+        DataContainer first;
+        try (TailFollower follower = new TailFollower(file.toString(), POLL_MILLIS)) {
+            first = follower.getCurrent();
+        }
+        // versions appended to one version, from many threads at once or later, never see each other's rows
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                // a version appended to another one has spare capacity in its columns and rollups
+                DataContainer base = first.append(rows(300, 400, 7.0));
+                CyclicBarrier start = new CyclicBarrier(8);
+                List<Callable<DataContainer>> tasks = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int rows = 10 + 5 * t;
+                    double level = 100.0 * (t + 2);
+                    tasks.add(() -> {
+                        start.await();
+                        return base.append(rows(400, 400 + rows, level));
+                    });
+                }
+                List<Future<DataContainer>> versions = executor.invokeAll(tasks);
+                DataContainer later = base.append(rows(400, 430, 1.0));
+                for (int t = 0; t < versions.size(); t++) {
+                    assertVersion(versions.get(t).get(), base, 100.0 * (t + 2));
+                }
+                assertVersion(later, base, 1.0);
+                assertEquals(400, base.getNumberOfSamples());
+                assertRollupsMatchRows(base);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(300, first.getNumberOfSamples());
+    }
+
+    @Test
+    public void sharesOneFollowerPerFileAndStopsItWithItsLastListener() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("registry.csv");
+        writeRows(file, 0, 200, true);
+        DatasetRegistry registry = new DatasetRegistry(Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<TailFollower>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(() -> registry.follow(file.toString()));
+            }
+            List<Future<TailFollower>> followers = executor.invokeAll(tasks);
+            TailFollower follower = followers.get(0).get();
+            for (Future<TailFollower> other : followers) {
+                assertSame(follower, other.get());
+            }
+            assertSame(follower.getCurrent(), registry.get(file.toString()));
+
+            Consumer<DataContainer> listener = data -> { };
+            follower.addListener(listener);
+            follower.removeListener(listener);
+            assertNotSame(follower.getCurrent(), registry.get(file.toString()));
+            assertNotSame(follower, registry.follow(file.toString()));
+            registry.unfollow(file.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Checks a version made of the rows of a base version followed by rows of a constant level.
+     */
+    private static void assertVersion(DataContainer version, DataContainer base, double level) {
+        String variable = base.getAvailableVariables()[0];
+        int appended = version.getNumberOfSamples() - base.getNumberOfSamples();
+        assertTrue(appended > 0);
+        double[] values = version.getValues(variable);
+        assertArrayEquals(base.getValues(variable), Arrays.copyOf(values, base.getNumberOfSamples()), 0.0);
+        for (int i = base.getNumberOfSamples(); i < values.length; i++) {
+            assertEquals("row " + i + " of level " + level, level, values[i], 0.0);
+            assertEquals(time(i), version.getTime(i));
+        }
+        assertRollupsMatchRows(version);
+    }
+
+    /**
+     * Compares the daily sums answered from the rollups with the ones resampled from the rows, which the rollups
+     * cannot answer with a standard deviation.
+     */
+    private static void assertRollupsMatchRows(DataContainer data) {
+        List<String> variables = Arrays.asList(data.getAvailableVariables());
+        for (SamplingInterval interval : new SamplingInterval[]{SamplingInterval.ONE_DAY, SamplingInterval.ONE_WEEK}) {
+            EnumMap<Aggregate, DataContainer> rollups = data.resampleData(interval,
+                    EnumSet.of(Aggregate.SUM, Aggregate.MAX), variables);
+            EnumMap<Aggregate, DataContainer> rows = data.resampleData(interval,
+                    EnumSet.of(Aggregate.SUM, Aggregate.MAX, Aggregate.STDDEV), variables);
+            for (Aggregate aggregate : EnumSet.of(Aggregate.SUM, Aggregate.MAX)) {
+                assertArrayEquals(rows.get(aggregate).getTimes(), rollups.get(aggregate).getTimes());
+                for (String variable : variables) {
+                    assertArrayEquals(aggregate + " of " + variable, rows.get(aggregate).getValues(variable),
+                            rollups.get(aggregate).getValues(variable), 1e-6);
+                }
+            }
+        }
+    }
+
+    private static long time(int row) {
+        return TestData.START + 3600L * row;
+    }
+
+    /**
+     * Decodes rows of two variables at the times of the rows {@code [from, to)}, all at the same level.
+     */
+    private static CsvParser.Columns rows(int from, int to, double level) {
+        CsvParser.Columns rows = new CsvParser.Columns(2, to - from);
+        for (int i = from; i < to; i++) {
+            rows.times[i - from] = time(i);
+            rows.values[0][i - from] = level;
+            rows.values[1][i - from] = -level;
+        }
+        rows.rows = to - from;
+        return rows;
+    }
+
+    private static void writeRows(Path file, int from, int to, boolean header) throws Exception {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write("time, a, b\n");
+            }
+            for (int i = from; i < to; i++) {
+                writer.write(Timestamps.format(time(i)) + ", " + (i % 37) + ", " + (i % 11 == 0 ? "" : "-" + i) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package data;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates the data of the tests.
+ */
+final class TestData {
+
+    /** 2022-09-01 00:00:00 UTC, the start of the GreenEr datasets. */
+    static final long START = 1661990400L;
+
+    private TestData() {
+    }
+
+    /**
+     * Generates a random walk rounded to two decimals, so that equal values occur, with runs of missing values.
+     *
+     * @param rows    the number of values
+     * @param missing the probability that a run of missing values starts at a row
+     * @param seed    the seed of the generator
+     * @return the values
+     */
+    static double[] values(int rows, double missing, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[rows];
+        double level = 20.0;
+        for (int i = 0; i < rows; i++) {
+            if (random.nextDouble() < missing) {
+                int end = Math.min(rows, i + 1 + random.nextInt(20));
+                for (; i < end; i++) {
+                    values[i] = Double.NaN;
+                }
+                i--;
+                continue;
+            }
+            level += random.nextGaussian();
+            values[i] = Math.round(level * 100) / 100.0;
+        }
+        return values;
+    }
+
+    /**
+     * Writes a CSV file in the format of the GreenEr datasets: a time column followed by the variables, with
+     * roughly hourly samples, a few gaps of several days and empty cells.
+     *
+     * @param file      the file to write
+     * @param rows      the number of rows
+     * @param variables the number of variables, named "a", "b", ...
+     * @param seed      the seed of the generator
+     * @throws IOException if the file cannot be written
+     */
+    static void writeCsv(Path file, int rows, int variables, long seed) throws IOException {
+        Random random = new Random(seed);
+        double[][] columns = new double[variables][];
+        for (int v = 0; v < variables; v++) {
+            columns[v] = values(rows, 0.01, seed + v);
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("time");
+            for (int v = 0; v < variables; v++) {
+                writer.write(", " + (char) ('a' + v));
+            }
+            writer.write('\n');
+            long time = START;
+            for (int i = 0; i < rows; i++) {
+                writer.write(Timestamps.format(time));
+                for (int v = 0; v < variables; v++) {
+                    writer.write(", ");
+                    if (!Double.isNaN(columns[v][i])) {
+                        writer.write(Double.toString(columns[v][i]));
+                    }
+                }
+                writer.write('\n');
+                time += random.nextInt(200) == 0 ? 86400L * (1 + random.nextInt(5)) : 3600L;
+            }
+        }
+    }
+}
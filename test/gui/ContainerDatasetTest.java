@@ -0,0 +1,122 @@
+package gui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerDatasetTest {
+
+    @Test
+    public void keepsEverySampleBelowTheThreshold() {
+        double[] values = walk(500, 3);
+        List<Integer> kept = decimate(times(values.length), values, 0, values.length, 500);
+        assertEquals(500, kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals(i, (int) kept.get(i));
+        }
+    }
+
+    @Test
+    public void keepsTheEndsAndAboutThresholdSamplesInOrder() {
+        double[] values = walk(100_000, 7);
+        long[] times = times(values.length);
+        for (int threshold : new int[]{3, 10, 800, 4000}) {
+            List<Integer> kept = decimate(times, values, 0, values.length, threshold);
+            assertEquals(threshold, kept.size());
+            assertEquals(0, (int) kept.get(0));
+            assertEquals(values.length - 1, (int) kept.get(kept.size() - 1));
+            assertIncreasing(kept);
+        }
+        List<Integer> kept = decimate(times, values, 1000, 5000, 200);
+        assertEquals(1000, (int) kept.get(0));
+        assertEquals(4999, (int) kept.get(kept.size() - 1));
+        assertEquals(200, kept.size());
+    }
+
+    @Test
+    public void keepsIsolatedSpikes() {
+        double[] values = new double[50_000];
+        values[12_345] = 100.0;
+        values[31_000] = -100.0;
+        List<Integer> kept = decimate(times(values.length), values, 0, values.length, 500);
+        assertTrue(kept.contains(12_345));
+        assertTrue(kept.contains(31_000));
+    }
+
+    @Test
+    public void keepsTheFirstMissingValueOfEveryGap() {
+        double[] values = walk(30_000, 11);
+        int[][] gaps = {{0, 5}, {1000, 1001}, {10_000, 12_000}, {29_990, 30_000}};
+        for (int[] gap : gaps) {
+            for (int i = gap[0]; i < gap[1]; i++) {
+                values[i] = Double.NaN;
+            }
+        }
+        List<Integer> kept = decimate(times(values.length), values, 0, values.length, 300);
+        assertIncreasing(kept);
+        for (int[] gap : gaps) {
+            assertTrue("gap at " + gap[0], kept.contains(gap[0]));
+            for (int i = gap[0] + 1; i < gap[1]; i++) {
+                assertTrue("missing value " + i, !kept.contains(i));
+            }
+        }
+        // the runs of valid values keep their ends
+        assertTrue(kept.contains(5));
+        assertTrue(kept.contains(999));
+        assertTrue(kept.contains(1001));
+        assertTrue(kept.contains(12_000));
+        assertTrue(kept.contains(29_989));
+        assertTrue(kept.size() <= 300 + 2 * gaps.length);
+    }
+
+    @Test
+    public void handlesIrregularTimes() {
+        double[] values = walk(20_000, 5);
+        long[] times = new long[values.length];
+        Random random = new Random(1);
+        long time = 1661990400L;
+        for (int i = 0; i < times.length; i++) {
+            times[i] = time;
+            time += random.nextInt(100) == 0 ? 86400L * 3 : random.nextInt(3) * 1800L;
+        }
+        List<Integer> kept = decimate(times, values, 0, values.length, 1000);
+        assertEquals(1000, kept.size());
+        assertIncreasing(kept);
+    }
+
+    private static List<Integer> decimate(long[] times, double[] values, int from, int to, int threshold) {
+        List<Integer> kept = new ArrayList<>();
+        ContainerDataset.decimate(times, values, from, to, threshold, kept::add);
+        return kept;
+    }
+
+    private static void assertIncreasing(List<Integer> kept) {
+        for (int i = 1; i < kept.size(); i++) {
+            assertTrue("index " + kept.get(i) + " after " + kept.get(i - 1), kept.get(i) > kept.get(i - 1));
+        }
+    }
+
+    private static long[] times(int rows) {
+        long[] times = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            times[i] = 1661990400L + 3600L * i;
+        }
+        return times;
+    }
+
+    private static double[] walk(int rows, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[rows];
+        double level = 0;
+        for (int i = 0; i < rows; i++) {
+            level += random.nextGaussian();
+            values[i] = level;
+        }
+        return values;
+    }
+}